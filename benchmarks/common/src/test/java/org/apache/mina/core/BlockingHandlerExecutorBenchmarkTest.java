@@ -0,0 +1,172 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.core;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.service.executor.IoHandlerExecutor;
+import org.apache.mina.service.executor.OrderedHandlerExecutor;
+import org.apache.mina.service.executor.OrderedWorkStealingHandlerExecutor;
+import org.apache.mina.service.executor.UnorderHandlerExecutor;
+import org.apache.mina.service.executor.VirtualThreadHandlerExecutor;
+import org.apache.mina.transport.nio.FixedSelectorLoopPool;
+import org.apache.mina.transport.nio.NioTcpServer;
+import org.junit.Test;
+
+/**
+ * Handler executors benchmark : the server handler simulates a blocking call to a downstream store by sleeping for
+ * each message, and each client sends a byte and waits for the reply, a number of times. We report the number of
+ * messages per second handled with each {@link IoHandlerExecutor}.
+ *
+ * The parameters can be set with system properties : <code>benchmarks.blockingSessions</code> (default to 200
+ * clients), <code>benchmarks.blockingMessages</code> (default to 20 messages per client),
+ * <code>benchmarks.blockingLatency</code> (default to 5 ms per message) and <code>benchmarks.handlerThreads</code>
+ * (default to 16 threads for the platform thread executors). The virtual thread executor is only measured on Java 21
+ * or later.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class BlockingHandlerExecutorBenchmarkTest {
+    private static final int SESSIONS = Integer.getInteger("benchmarks.blockingSessions", 200);
+
+    private static final int MESSAGES = Integer.getInteger("benchmarks.blockingMessages", 20);
+
+    private static final int LATENCY = Integer.getInteger("benchmarks.blockingLatency", 5);
+
+    /** the build sets the handler threads to 0 for the other benchmarks, meaning no executor */
+    private static final int THREADS = Integer.getInteger("benchmarks.handlerThreads", 0) > 0 ? Integer
+            .getInteger("benchmarks.handlerThreads") : 16;
+
+    @Test
+    public void benchmark() throws Exception {
+        System.out.println("-------------- " + SESSIONS + " sessions, " + MESSAGES + " messages each, " + LATENCY
+                + " ms blocking handler, " + THREADS + " platform threads");
+
+        report("OrderedHandlerExecutor", new OrderedHandlerExecutor(THREADS, 1024));
+        report("UnorderHandlerExecutor", new UnorderHandlerExecutor(Executors.newFixedThreadPool(THREADS)));
+        report("OrderedWorkStealingHandlerExecutor", new OrderedWorkStealingHandlerExecutor(THREADS, 1024));
+
+        if (VirtualThreadHandlerExecutor.isSupported()) {
+            VirtualThreadHandlerExecutor executor = new VirtualThreadHandlerExecutor(1024, 10 * LATENCY);
+            report("VirtualThreadHandlerExecutor", executor);
+            executor.shutdown();
+            System.out.println("stalled events : " + executor.getStalledEventCount());
+        } else {
+            System.out.println("VirtualThreadHandlerExecutor : no virtual threads in this JVM");
+        }
+    }
+
+    private static void report(String name, IoHandlerExecutor executor) throws Exception {
+        long duration = measure(executor);
+        long rate = (SESSIONS * MESSAGES * 1000L) / Math.max(1, duration);
+
+        System.out.println(name + " : " + duration + " ms, " + rate + " messages/s");
+    }
+
+    /**
+     * Run the clients against a server using the given executor
+     *
+     * @return the time taken by all the clients, in milliseconds
+     */
+    private static long measure(IoHandlerExecutor executor) throws Exception {
+        NioTcpServer server = new NioTcpServer(new FixedSelectorLoopPool("Server", 1), executor);
+        server.getSessionConfig().setTcpNoDelay(true);
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                ByteBuffer buffer = (ByteBuffer) message;
+
+                try {
+                    // the blocking call to a downstream store
+                    Thread.sleep(LATENCY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                session.write(ByteBuffer.wrap(new byte[buffer.remaining()]));
+            }
+        });
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(SESSIONS);
+
+        for (int i = 0; i < SESSIONS; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runClient(port, start);
+                        done.countDown();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            }).start();
+        }
+
+        long begin = System.currentTimeMillis();
+        start.countDown();
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        long duration = System.currentTimeMillis() - begin;
+
+        server.unbind();
+
+        return duration;
+    }
+
+    /**
+     * Send a byte and wait for the reply, for each message
+     */
+    private static void runClient(int port, CountDownLatch start) throws IOException, InterruptedException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+        channel.socket().setTcpNoDelay(true);
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+
+        try {
+            start.await();
+
+            for (int i = 0; i < MESSAGES; i++) {
+                buffer.clear();
+                channel.write(buffer);
+                buffer.clear();
+
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("connection closed by the server");
+                    }
+                }
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.transport.nio.NioTcpServer;
+import org.junit.Test;
+
+/**
+ * Memory footprint benchmark : we open a number of idle connections to a MINA server, and report the number of heap
+ * and direct memory bytes used per connection. The same measure done with a plain NIO server gives the cost of the
+ * sockets themselves, so that the difference is the cost of a MINA session. The MINA sessions are measured twice, with
+ * the default configuration : never written, and after a message written from a foreign thread, which goes through
+ * the write queue of the session.
+ * 
+ * The number of connections can be set with the <code>benchmarks.footprintConnections</code> system property (default
+ * to 2000), each connection using two file descriptors.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class Mina3ServerTcpFootprintBenchmarkTest {
+    private static final int CONNECTIONS = Integer.getInteger("benchmarks.footprintConnections", 2000);
+
+    @Test
+    public void benchmark() throws Exception {
+        // warm up : load the classes, and create the selector loop buffers
+        measurePlainNio(100);
+        measureMina(100, false);
+        measureMina(100, true);
+
+        long[] plain = measurePlainNio(CONNECTIONS);
+        long[] mina = measureMina(CONNECTIONS, false);
+        long[] written = measureMina(CONNECTIONS, true);
+
+        System.out.println("-------------- footprint for " + CONNECTIONS + " idle connections");
+        System.out.println("plain NIO : " + plain[0] + " heap bytes, " + plain[1] + " direct bytes per connection");
+        System.out.println("MINA      : " + mina[0] + " heap bytes, " + mina[1] + " direct bytes per connection");
+        System.out.println("MINA session : " + (mina[0] - plain[0]) + " heap bytes, " + (mina[1] - plain[1])
+                + " direct bytes per session");
+        System.out.println("MINA session after a write : " + (written[0] - plain[0]) + " heap bytes, "
+                + (written[1] - plain[1]) + " direct bytes per session");
+    }
+
+    /**
+     * Measure the memory used by connections accepted by a plain NIO server socket
+     * 
+     * @return the heap and direct bytes used per connection
+     */
+    private static long[] measurePlainNio(int count) throws IOException, InterruptedException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = serverChannel.socket().getLocalPort();
+        List<SocketChannel> accepted = new ArrayList<SocketChannel>(count);
+        List<SocketChannel> clients = new ArrayList<SocketChannel>(count);
+
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+
+        for (int i = 0; i < count; i++) {
+            clients.add(SocketChannel.open(new InetSocketAddress("127.0.0.1", port)));
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            accepted.add(channel);
+        }
+
+        long[] result = new long[] { (usedHeap() - heapBefore) / count, (usedDirect() - directBefore) / count };
+
+        close(clients);
+        close(accepted);
+        serverChannel.close();
+
+        return result;
+    }
+
+    /**
+     * Measure the memory used by connections accepted by a MINA server
+     * 
+     * @param write <code>true</code> for writing a message to each session before the measure
+     * @return the heap and direct bytes used per connection
+     */
+    private static long[] measureMina(int count, boolean write) throws IOException, InterruptedException {
+        NioTcpServer server = new NioTcpServer();
+        server.setIoHandler(new AbstractIoHandler() {
+        });
+        server.bind(new InetSocketAddress("127.0.0.1", 0));
+        int port = server.getServerSocketChannel().socket().getLocalPort();
+        List<SocketChannel> clients = new ArrayList<SocketChannel>(count);
+
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+
+        for (int i = 0; i < count; i++) {
+            clients.add(SocketChannel.open(new InetSocketAddress("127.0.0.1", port)));
+        }
+
+        // wait for the server to open all the sessions
+        for (int i = 0; (i < 1000) && (server.getManagedSessions().size() < count); i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(count, server.getManagedSessions().size());
+
+        if (write) {
+            // written from this thread : the messages are queued, and flushed by the selector loops
+            for (IoSession session : server.getManagedSessions().values()) {
+                session.write(ByteBuffer.wrap(new byte[16]));
+            }
+
+            Thread.sleep(500);
+        }
+
+        long[] result = new long[] { (usedHeap() - heapBefore) / count, (usedDirect() - directBefore) / count };
+
+        close(clients);
+        server.unbind();
+
+        return result;
+    }
+
+    private static void close(List<SocketChannel> channels) throws IOException {
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+
+        return 0;
+    }
+}
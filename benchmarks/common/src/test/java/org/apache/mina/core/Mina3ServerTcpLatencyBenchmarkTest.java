@@ -0,0 +1,152 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.nio.tcp.Mina3TcpBenchmarkServer;
+import org.apache.mina.transport.nio.SelectStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Request/response latency benchmark : a blocking client sends a message and waits for the server ack before sending
+ * the next one, and we report the round trip time percentiles for each selector loop {@link SelectStrategy}.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+@RunWith(Parameterized.class)
+public class Mina3ServerTcpLatencyBenchmarkTest {
+    private final String name;
+
+    private final SelectStrategy selectStrategy;
+
+    private final int numberOfMessages;
+
+    private final int warmupMessages;
+
+    private final int messageSize;
+
+    private BenchmarkServer server;
+
+    private Socket socket;
+
+    public Mina3ServerTcpLatencyBenchmarkTest(String name, SelectStrategy selectStrategy, int numberOfMessages,
+            int warmupMessages, int messageSize) {
+        this.name = name;
+        this.selectStrategy = selectStrategy;
+        this.numberOfMessages = numberOfMessages;
+        this.warmupMessages = warmupMessages;
+        this.messageSize = messageSize;
+    }
+
+    @Parameters(name = "{0} : {2} messages of size {4}")
+    public static Collection<Object[]> getParameters() {
+        SelectStrategy spin = SelectStrategy.busyPoll(100, TimeUnit.MICROSECONDS, 0, false);
+        SelectStrategy spinForever = SelectStrategy.busyPoll(0, TimeUnit.MICROSECONDS, 0, false);
+
+        Object[][] parameters = new Object[][] { 
+                { "blocking", SelectStrategy.BLOCKING, 100000, 20000, 10 },
+                { "spin 100us", spin, 100000, 20000, 10 }, 
+                { "busy poll", spinForever, 100000, 20000, 10 },
+                { "blocking", SelectStrategy.BLOCKING, 50000, 10000, 1024 },
+                { "spin 100us", spin, 50000, 10000, 1024 }, 
+                { "busy poll", spinForever, 50000, 10000, 1024 } };
+        return Arrays.asList(parameters);
+    }
+
+    @Before
+    public void init() throws IOException {
+        int port = BenchmarkBinaryTest.getNextAvailable();
+        server = new Mina3TcpBenchmarkServer(selectStrategy);
+        server.start(port);
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(port));
+    }
+
+    @After
+    public void shutdown() throws IOException {
+        socket.close();
+        server.stop();
+    }
+
+    @Test
+    public void benchmark() throws IOException {
+        byte[] data = new byte[messageSize + 4];
+        data[0] = (byte) (messageSize >>> 24 & 255);
+        data[1] = (byte) (messageSize >>> 16 & 255);
+        data[2] = (byte) (messageSize >>> 8 & 255);
+        data[3] = (byte) (messageSize & 255);
+
+        OutputStream out = socket.getOutputStream();
+        InputStream in = socket.getInputStream();
+
+        for (int i = 0; i < warmupMessages; i++) {
+            roundTrip(out, in, data);
+        }
+
+        long[] latencies = new long[numberOfMessages];
+
+        for (int i = 0; i < numberOfMessages; i++) {
+            latencies[i] = roundTrip(out, in, data);
+        }
+
+        Arrays.sort(latencies);
+
+        System.out.println("-------------- " + name + " (" + selectStrategy + "), " + data.length + " bytes");
+        System.out.println("p50 : " + percentile(latencies, 50.0) + "us, p99 : " + percentile(latencies, 99.0)
+                + "us, p99.9 : " + percentile(latencies, 99.9) + "us, max : "
+                + TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length - 1]) + "us");
+    }
+
+    /**
+     * Send a message and wait for the ack
+     * 
+     * @return the round trip time, in nanoseconds
+     */
+    private long roundTrip(OutputStream out, InputStream in, byte[] data) throws IOException {
+        long start = System.nanoTime();
+        out.write(data);
+        out.flush();
+        assertEquals(0, in.read());
+
+        return System.nanoTime() - start;
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+
+        return TimeUnit.NANOSECONDS.toMicros(sortedLatencies[Math.max(0, index)]);
+    }
+}
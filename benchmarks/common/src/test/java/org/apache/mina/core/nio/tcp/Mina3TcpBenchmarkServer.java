@@ -29,9 +29,12 @@ import org.apache.mina.api.IoService;
 import org.apache.mina.api.IoSession;
 import org.apache.mina.core.BenchmarkServer;
 import org.apache.mina.core.CounterFilter;
+import org.apache.mina.service.executor.IoHandlerExecutor;
+import org.apache.mina.service.executor.OrderedHandlerExecutor;
 import org.apache.mina.session.AttributeKey;
 import org.apache.mina.transport.nio.FixedSelectorLoopPool;
 import org.apache.mina.transport.nio.NioTcpServer;
+import org.apache.mina.transport.nio.SelectStrategy;
 
 /**
  * A MINA 3 TCP Server.
@@ -58,13 +61,33 @@ public class Mina3TcpBenchmarkServer implements BenchmarkServer {
 
     private NioTcpServer tcpServer;
 
+    private final SelectStrategy selectStrategy;
+
+    public Mina3TcpBenchmarkServer() {
+        this(SelectStrategy.BLOCKING);
+    }
+
+    /**
+     * @param selectStrategy the way the server I/O loop waits for events
+     */
+    public Mina3TcpBenchmarkServer(SelectStrategy selectStrategy) {
+        this.selectStrategy = selectStrategy;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void start(int port) throws IOException {
-        tcpServer = new NioTcpServer(new FixedSelectorLoopPool("Server", 1), null);
+        int handlerThreads = Integer.getInteger("benchmarks.handlerThreads", 0);
+        IoHandlerExecutor handlerExecutor = handlerThreads > 0 ? new OrderedHandlerExecutor(handlerThreads, 1024)
+                : null;
+
+        tcpServer = new NioTcpServer(new FixedSelectorLoopPool("Server", 1, selectStrategy), handlerExecutor);
         tcpServer.getSessionConfig().setReadBufferSize(128 * 1024);
         tcpServer.getSessionConfig().setTcpNoDelay(true);
+        tcpServer.getSessionConfig().setAdaptiveReadSize(Boolean.getBoolean("benchmarks.adaptiveReadSize"));
+        tcpServer.getSessionConfig().setMaxReadsPerTurn(Integer.getInteger("benchmarks.maxReadsPerTurn", 1));
+        tcpServer.getSessionConfig().setPooledReceivedBuffers(Boolean.getBoolean("benchmarks.pooledReceivedBuffers"));
         tcpServer.setIoHandler(new AbstractIoHandler() {
             public void sessionOpened(IoSession session) {
                 session.setAttribute(STATE_ATTRIBUTE, State.WAIT_FOR_FIRST_BYTE_LENGTH);
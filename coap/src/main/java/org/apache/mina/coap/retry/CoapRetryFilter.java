@@ -21,9 +21,6 @@ package org.apache.mina.coap.retry;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.mina.api.AbstractIoFilter;
@@ -33,6 +30,8 @@ import org.apache.mina.coap.CoapMessage;
 import org.apache.mina.filterchain.ReadFilterChainController;
 import org.apache.mina.filterchain.WriteFilterChainController;
 import org.apache.mina.session.WriteRequest;
+import org.apache.mina.transport.nio.ScheduledTask;
+import org.apache.mina.transport.nio.SessionScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,9 +55,6 @@ public class CoapRetryFilter extends AbstractIoFilter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CoapRetryFilter.class);
 
-    /** The executor in charge of scheduling the retransmissions */
-    private ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor();
-
     /** The confirmable messages waiting to be acknowledged */
     private Map<String, CoapTransmission> inFlight = new ConcurrentHashMap<>();
 
@@ -66,7 +62,7 @@ public class CoapRetryFilter extends AbstractIoFilter {
      * The list of processed messages used to handle duplicate copies of
      * Confirmable messages
      */
-    private ExpiringMap<String, CoapMessage> processed = new ExpiringMap<String, CoapMessage>(retryExecutor);
+    private ExpiringMap<String, CoapMessage> processed = new ExpiringMap<String, CoapMessage>();
 
     /**
      * {@inheritDoc}
@@ -104,7 +100,7 @@ public class CoapRetryFilter extends AbstractIoFilter {
 
             if (t != null) {
                 // cancel the scheduled retransmission
-                t.getRetryFuture().cancel(false);
+                t.getRetryTask().cancel();
                 inFlight.remove(transmissionId);
             }
 
@@ -145,8 +141,8 @@ public class CoapRetryFilter extends AbstractIoFilter {
                 inFlight.put(t.getId(), t);
             }
 
-            // schedule a retry
-            ScheduledFuture<?> future = retryExecutor.schedule(new Runnable() {
+            // schedule a retry, run by the session selector loop
+            ScheduledTask retryTask = SessionScheduler.schedule(session, new Runnable() {
 
                 @Override
                 public void run() {
@@ -164,7 +160,7 @@ public class CoapRetryFilter extends AbstractIoFilter {
                 }
             }, t.getNextTimeout(), TimeUnit.MILLISECONDS);
 
-            t.setRetryFuture(future);
+            t.setRetryTask(retryTask);
 
             // move to the next filter
             controller.callWriteNextFilter(message);
@@ -172,12 +168,4 @@ public class CoapRetryFilter extends AbstractIoFilter {
         }
 
     }
-
-    /**
-     * clear the running executor
-     */
-    @Override
-    protected void finalize() throws Throwable {
-        retryExecutor.shutdown();
-    }
 }
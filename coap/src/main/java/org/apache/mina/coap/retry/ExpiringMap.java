@@ -19,7 +19,6 @@
  */
 package org.apache.mina.coap.retry;
 
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -31,7 +30,8 @@ import java.util.concurrent.TimeUnit;
  * A {@link Map} implementation backed with a {@link ConcurrentHashMap} providing entry expiration facilities.
  * 
  * <p>
- * A worker thread is started to check periodically if expired entries should be removed from the underlying map.
+ * The expired entries are removed periodically, either by a task scheduled on a given executor, or by the
+ * {@link #put(Object, Object)} calls when the map has no executor.
  * </p>
  * 
  * @see ConcurrentHashMap
@@ -51,9 +51,12 @@ public class ExpiringMap<K, V> implements Map<K, V> {
     private final int expirationPeriod;
     private final int checkerPeriod;
 
-    /** For running expiration tasks */
+    /** For running expiration tasks, <code>null</code> if the expired entries are removed by the writers */
     private ScheduledExecutorService executor;
 
+    /** The time of the next removal of the expired entries, when there is no executor */
+    private volatile long nextCheckTime;
+
     /**
      * A new expiring map
      * 
@@ -77,6 +80,26 @@ public class ExpiringMap<K, V> implements Map<K, V> {
         this(EXPIRATION_PERIOD_IN_SEC, CHECKER_PERIOD_IN_SEC, executor);
     }
 
+    /**
+     * A new expiring map without executor : the expired entries are removed by the {@link #put(Object, Object)} calls
+     * 
+     * @param expirationPeriod the expiration period for an entry
+     * @param checkerPeriod the minimal period between two checks of expired elements
+     */
+    public ExpiringMap(int expirationPeriod, int checkerPeriod) {
+        this.expirationPeriod = expirationPeriod;
+        this.checkerPeriod = checkerPeriod;
+        nextCheckTime = System.currentTimeMillis() + checkerPeriod * 1000L;
+    }
+
+    /**
+     * A map without executor, with an expiration period of 30 seconds. The expired entries are removed by the
+     * {@link #put(Object, Object)} calls, at most every 10 seconds.
+     */
+    public ExpiringMap() {
+        this(EXPIRATION_PERIOD_IN_SEC, CHECKER_PERIOD_IN_SEC);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -126,6 +149,15 @@ public class ExpiringMap<K, V> implements Map<K, V> {
      */
     @Override
     public V put(K key, V value) {
+        if (executor == null) {
+            long now = System.currentTimeMillis();
+
+            if (now >= nextCheckTime) {
+                nextCheckTime = now + checkerPeriod * 1000L;
+                expire(now);
+            }
+        }
+
         ExpiringValue<V> expValue = map.put(key, new ExpiringValue<V>(value));
         if (expValue != null) {
             return expValue.value;
@@ -223,10 +255,7 @@ public class ExpiringMap<K, V> implements Map<K, V> {
 
         public ExpiringValue(T value) {
             this.value = value;
-
-            Calendar c = Calendar.getInstance();
-            c.add(Calendar.SECOND, expirationPeriod);
-            expiringDate = c.getTime().getTime();
+            expiringDate = System.currentTimeMillis() + expirationPeriod * 1000L;
         }
 
     }
@@ -18,6 +18,8 @@
  */
 package org.apache.mina.api;
 
+import java.util.List;
+
 import org.apache.mina.filterchain.ReadFilterChainController;
 import org.apache.mina.filterchain.WriteFilterChainController;
 import org.apache.mina.session.WriteRequest;
@@ -59,6 +61,18 @@ public abstract class AbstractIoFilter implements IoFilter {
         controller.callReadNextFilter(message);
     }
 
+    /**
+     * Process the messages one by one, the filters handling whole batches override it and call
+     * {@link ReadFilterChainController#callReadNextFilterBatch(List)}.
+     */
+    @Override
+    public void messagesReceived(final IoSession session, final List<?> messages,
+            final ReadFilterChainController controller) {
+        for (Object message : messages) {
+            messageReceived(session, message, controller);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -94,5 +108,12 @@ public abstract class AbstractIoFilter implements IoFilter {
     @Override
     public void secureClosed(IoSession session) {
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writabilityChanged(IoSession session, boolean writable) {
+    }
     
 }
\ No newline at end of file
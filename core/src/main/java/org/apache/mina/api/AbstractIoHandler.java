@@ -18,6 +18,8 @@
  */
 package org.apache.mina.api;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,6 +60,16 @@ public abstract class AbstractIoHandler implements IoHandler {
     public void messageReceived(final IoSession session, final Object message) {
     }
 
+    /**
+     * Call {@link #messageReceived(IoSession, Object)} for each message of the batch.
+     */
+    @Override
+    public void messagesReceived(final IoSession session, final List<?> messages) {
+        for (Object message : messages) {
+            messageReceived(session, message);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -108,4 +120,11 @@ public abstract class AbstractIoHandler implements IoHandler {
     @Override
     public void secureClosed(IoSession session) {
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writabilityChanged(IoSession session, boolean writable) {
+    }
 }
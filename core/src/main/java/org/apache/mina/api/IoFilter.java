@@ -20,6 +20,8 @@
 
 package org.apache.mina.api;
 
+import java.util.List;
+
 import org.apache.mina.filterchain.ReadFilterChainController;
 import org.apache.mina.filterchain.WriteFilterChainController;
 import org.apache.mina.session.WriteRequest;
@@ -60,6 +62,16 @@ public interface IoFilter {
      */
     void messageReceived(IoSession session, Object message, ReadFilterChainController controller);
 
+    /**
+     * Invoked when a batch of messages is received, for example all the messages decoded from a single read. The
+     * filters not handling batches process each message with
+     * {@link #messageReceived(IoSession, Object, ReadFilterChainController)}.
+     * 
+     * @param session {@link IoSession} associated with the invocation
+     * @param messages the incoming messages to process, in the received order
+     */
+    void messagesReceived(IoSession session, List<?> messages, ReadFilterChainController controller);
+
     /**
      * Invoked when a message is under writing. The filter is supposed to apply the needed transformation.
      * 
@@ -97,4 +109,13 @@ public interface IoFilter {
      */
     void secureClosed(IoSession session);
 
+    /**
+     * Invoked when the session becomes writable or not writable, depending on the size of its write queue.
+     * 
+     * @see IoSession#isWritable()
+     * @param session {@link IoSession} associated with the invocation
+     * @param writable <code>true</code> if the session is now writable
+     */
+    void writabilityChanged(IoSession session, boolean writable);
+
 }
\ No newline at end of file
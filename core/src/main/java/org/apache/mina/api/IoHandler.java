@@ -19,6 +19,8 @@
  */
 package org.apache.mina.api;
 
+import java.util.List;
+
 import org.apache.mina.service.executor.IoHandlerExecutor;
 
 /**
@@ -63,6 +65,16 @@ public interface IoHandler {
      */
     void messageReceived(IoSession session, Object message);
 
+    /**
+     * Invoked when a batch of messages is received, for example all the messages decoded from a single read by a
+     * batching {@link IoFilter}. Handling the batch at once spares the locks, the round-trips or the flushes done for
+     * each message.
+     * 
+     * @param session {@link IoSession} associated with the invocation
+     * @param messages the incoming messages to process, in the received order
+     */
+    void messagesReceived(IoSession session, List<?> messages);
+
     /**
      * Invoked when a high level message was written to the low level O/S buffer.
      * 
@@ -113,4 +125,14 @@ public interface IoHandler {
      */
     void secureClosed(IoSession session);
 
+    /**
+     * Invoked when the session becomes writable or not writable, depending on the size of its write queue. A producer
+     * should stop writing to a not writable session until it becomes writable again.
+     * 
+     * @see IoSession#isWritable()
+     * @param session {@link IoSession} associated with the invocation
+     * @param writable <code>true</code> if the session is now writable
+     */
+    void writabilityChanged(IoSession session, boolean writable);
+
 }
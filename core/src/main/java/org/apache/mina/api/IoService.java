@@ -22,6 +22,7 @@ package org.apache.mina.api;
 import java.util.Map;
 
 import org.apache.mina.service.executor.IoHandlerExecutor;
+import org.apache.mina.util.Clock;
 
 /**
  * Base interface for all {@link IoServer}s and {@link IoClient}s that provide I/O service and manage {@link IoSession}
@@ -78,4 +79,19 @@ public interface IoService {
      * @return The default configuration for this {@link IoService}
      */
     IoSessionConfig getSessionConfig();
+
+    /**
+     * Get the {@link Clock} giving the time of the I/O events to the sessions statistics and to the idle detection.
+     * 
+     * @return the service clock
+     */
+    Clock getClock();
+
+    /**
+     * Set the {@link Clock} of this service. Default to {@link org.apache.mina.util.CachedClock#DEFAULT}, a clock
+     * updated every 10 milliseconds. Must be called before the service is bound/connected
+     * 
+     * @param clock the clock of the service and its sessions
+     */
+    void setClock(Clock clock);
 }
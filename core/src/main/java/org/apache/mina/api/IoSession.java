@@ -178,7 +178,9 @@ public interface IoSession {
 
     /* READ/WRITE PAUSE MANAGEMENT */
     /**
-     * Suspends read operations for this session.
+     * Suspends read operations for this session. The suspensions are counted : the reads are resumed once
+     * {@link #resumeRead()} has been called as many times as this method, so that several filters can suspend the
+     * reads for their own reasons.
      */
     void suspendRead();
 
@@ -188,7 +190,8 @@ public interface IoSession {
     void suspendWrite();
 
     /**
-     * Resumes read operations for this session.
+     * Releases a suspension of the read operations for this session. The reads are resumed when no suspension is left,
+     * a call without a matching {@link #suspendRead()} is ignored.
      */
     void resumeRead();
 
@@ -211,6 +214,16 @@ public interface IoSession {
      */
     boolean isWriteSuspended();
 
+    /**
+     * Tells if the session can accept more messages to write without growing its write queue above its high watermark.
+     * Writing to a not writable session is still possible, but a producer should wait for the
+     * {@link IoHandler#writabilityChanged(IoSession, boolean)} event before writing more.
+     * 
+     * @see IoSessionConfig#setWriteQueueWaterMarks(int, int)
+     * @return <code>true</code> if the session is writable
+     */
+    boolean isWritable();
+
     /* BASIC STATS */
     /**
      * Gets the total number of bytes read for this session since it was created.
@@ -340,6 +353,10 @@ public interface IoSession {
      * Enqueue a message for writing. This method wont block ! The message will by asynchronously processed by the
      * filter chain and wrote to socket by the {@link SelectorLoop}
      * 
+     * A {@link org.apache.mina.file.FileRegion} message goes through the filter chain like any other message. If it
+     * reaches the transport unchanged, the TCP transport transfers the file content as is to the socket. A secured or
+     * UDP session reads the region in buffers written like the other messages.
+     * 
      */
     void write(Object message);
 
@@ -352,6 +369,21 @@ public interface IoSession {
      */
     IoFuture<Void> writeWithFuture(Object message);
 
+    /**
+     * Same as {@link IoSession#write(Object)}, but the message is only written into the socket when the session is
+     * flushed, either explicitly with {@link #flush()}, by a following {@link #write(Object)}, or at the end of the
+     * processing of a read event if {@link IoSessionConfig#isFlushAfterRead()} is set. This allows to send many
+     * messages with a single system call.
+     * 
+     * @param message the message to be processed and written
+     */
+    void writeWithoutFlush(Object message);
+
+    /**
+     * Write the messages queued by {@link #writeWithoutFlush(Object)} into the socket. This method won't block !
+     */
+    void flush();
+
     /**
      * Internal method for enqueue write request after filter chain processing
      * 
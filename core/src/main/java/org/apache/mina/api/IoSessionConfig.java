@@ -22,6 +22,8 @@ package org.apache.mina.api;
 import java.net.DatagramSocket;
 import java.net.Socket;
 
+import org.apache.mina.buffer.BufferAllocator;
+import org.apache.mina.buffer.PooledBufferAllocator;
 import org.apache.mina.session.TrafficClassEnum;
 
 /**
@@ -127,4 +129,131 @@ public interface IoSessionConfig {
      * @param timeOut The timeout to set, in milliseconds. 0 means infinite
      */
     void setTimeout(int timeOut);
+
+    /**
+     * Returns the maximum number of bytes written into the socket for this session each time the {@link IoSession}
+     * selector loop processes it. The remaining messages are written on the next loop iteration, so that a session
+     * with a lot of pending writes does not delay the other sessions sharing the same loop.
+     * 
+     * @return the maximum number of bytes written per loop iteration, 0 for no limit
+     */
+    int getMaxWriteBytesPerTurn();
+
+    /**
+     * Sets the maximum number of bytes written into the socket for this session each time the selector loop
+     * processes it.
+     * 
+     * @param maxWriteBytesPerTurn the maximum number of bytes, 0 for no limit (the default)
+     */
+    void setMaxWriteBytesPerTurn(int maxWriteBytesPerTurn);
+
+    /**
+     * Returns the maximum number of messages written into the socket for this session each time the selector loop
+     * processes it.
+     * 
+     * @return the maximum number of written messages per loop iteration, 0 for no limit
+     */
+    int getMaxWritesPerTurn();
+
+    /**
+     * Sets the maximum number of messages written into the socket for this session each time the selector loop
+     * processes it.
+     * 
+     * @param maxWritesPerTurn the maximum number of messages, 0 for no limit (the default)
+     */
+    void setMaxWritesPerTurn(int maxWritesPerTurn);
+
+    /**
+     * Returns the maximum number of reads done on the socket for this session when it's ready for reading. We read
+     * again only if the previous read has filled the read buffer, as the socket certainly has more data to give.
+     * 
+     * @return the maximum number of reads per loop iteration
+     */
+    int getMaxReadsPerTurn();
+
+    /**
+     * Sets the maximum number of reads done on the socket for this session when it's ready for reading.
+     * 
+     * @param maxReadsPerTurn the maximum number of reads (default to 1)
+     */
+    void setMaxReadsPerTurn(int maxReadsPerTurn);
+
+    /**
+     * Tells if the messages written with {@link IoSession#writeWithoutFlush(Object)} are flushed once the session has
+     * processed a read event. Note that it only applies to the messages written during this processing, so not to the
+     * ones written by a handler running in an executor.
+     * 
+     * @return <code>true</code> if the session is flushed after each read
+     */
+    boolean isFlushAfterRead();
+
+    /**
+     * Sets the flush after read policy.
+     * 
+     * @param flushAfterRead <code>true</code> for flushing the session after each read (default to <code>true</code>)
+     */
+    void setFlushAfterRead(boolean flushAfterRead);
+
+    /**
+     * Returns the number of bytes waiting in the write queue above which the session becomes not writable.
+     * 
+     * @see IoSession#isWritable()
+     * @return the high watermark, in bytes, 0 if the session is always writable
+     */
+    int getWriteQueueHighWaterMark();
+
+    /**
+     * Returns the number of bytes waiting in the write queue under which a not writable session becomes writable
+     * again.
+     * 
+     * @see IoSession#isWritable()
+     * @return the low watermark, in bytes
+     */
+    int getWriteQueueLowWaterMark();
+
+    /**
+     * Sets the write queue watermarks. Default to 32Kb and 64Kb.
+     * 
+     * @param lowWaterMark the number of queued bytes under which the session becomes writable again
+     * @param highWaterMark the number of queued bytes above which the session becomes not writable, 0 for no limit
+     */
+    void setWriteQueueWaterMarks(int lowWaterMark, int highWaterMark);
+
+    /**
+     * Returns the allocator used by the transport for the buffers it creates : the copies of the messages waiting in
+     * the write queue, and the SSL/TLS buffers.
+     * 
+     * @return the buffer allocator
+     */
+    BufferAllocator getBufferAllocator();
+
+    /**
+     * Sets the buffer allocator. Default to {@link PooledBufferAllocator#DEFAULT}, a pool of direct buffers.
+     * 
+     * @param bufferAllocator the allocator, e.g. {@link org.apache.mina.buffer.HeapBufferAllocator},
+     *        {@link org.apache.mina.buffer.DirectBufferAllocator} or a {@link PooledBufferAllocator}
+     */
+    void setBufferAllocator(BufferAllocator bufferAllocator);
+
+    /**
+     * Tells if the messages received by a session using an {@link org.apache.mina.service.executor.IoHandlerExecutor}
+     * are handed to the executor in a buffer taken from the {@link #getBufferAllocator() buffer allocator}.
+     * 
+     * @return <code>true</code> if the received buffers are allocated by the session buffer allocator
+     */
+    boolean isPooledReceivedBuffers();
+
+    /**
+     * When an {@link org.apache.mina.service.executor.IoHandlerExecutor} is used, the selector loop can't give its read
+     * buffer to the {@link IoHandler}, and copies the received bytes in a new buffer. By default this buffer is a heap
+     * buffer owned by the handler. If this option is set, the buffer is allocated by the session
+     * {@link #getBufferAllocator() buffer allocator}, and released to it as soon as
+     * {@link IoHandler#messageReceived(IoSession, Object)} returns : the handler must not keep a reference on the
+     * received buffer, and must not expect it to be backed by an array. A handler can write the received buffer as
+     * is, it's then released once written. Default to <code>false</code>.
+     * 
+     * @param pooledReceivedBuffers <code>true</code> if the received buffers are allocated by the session buffer
+     *        allocator
+     */
+    void setPooledReceivedBuffers(boolean pooledReceivedBuffers);
 }
@@ -0,0 +1,53 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the {@link ByteBuffer}s used by the transports for copying, encrypting or queuing the messages. The
+ * transports release the buffers once they are done with them, so that a pooling allocator can reuse them.
+ * 
+ * @see org.apache.mina.api.IoSessionConfig#setBufferAllocator(BufferAllocator)
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public interface BufferAllocator {
+    /**
+     * Allocate a buffer. The returned buffer position is 0 and its limit is the requested capacity, but its capacity
+     * may be bigger.
+     * 
+     * @param capacity the number of bytes needed
+     * @return a cleared buffer
+     */
+    ByteBuffer allocate(int capacity);
+
+    /**
+     * Give back a buffer allocated by this allocator. The buffer must not be used after being released, and must be
+     * released only once.
+     * 
+     * @param buffer the buffer to release
+     */
+    void release(ByteBuffer buffer);
+
+    /**
+     * @return <code>true</code> if the allocated buffers are direct buffers
+     */
+    boolean isDirect();
+}
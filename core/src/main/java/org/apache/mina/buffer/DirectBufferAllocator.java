@@ -0,0 +1,57 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BufferAllocator} allocating a new direct buffer for each request. The released buffers are left to the
+ * garbage collector.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class DirectBufferAllocator implements BufferAllocator {
+    /** The shared instance */
+    public static final DirectBufferAllocator INSTANCE = new DirectBufferAllocator();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(ByteBuffer buffer) {
+        // Nothing to do
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDirect() {
+        return true;
+    }
+}
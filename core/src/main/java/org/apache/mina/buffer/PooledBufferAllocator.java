@@ -0,0 +1,395 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BufferAllocator} reusing the released buffers. The requests are rounded up to a power of two size class,
+ * from {@value #MIN_SIZE} to {@value #MAX_SIZE} bytes. The buffers of a size class are sliced from a
+ * {@value #SLAB_SIZE} bytes slab, and stored in an arena once released. Each thread keeps a small cache of released
+ * buffers per size class, so that a selector loop allocating and releasing its buffers does not contend with the
+ * other loops. The bigger requests are not pooled. The buffers cached by a thread which has terminated are given
+ * back to the arenas, so that the buffers released by short lived threads are not lost.
+ * 
+ * The pool never shrinks : it keeps as many buffers as the peak usage needed. The pool knows the buffers it sliced :
+ * releasing a foreign buffer, or releasing a buffer twice, is ignored. It also means a buffer is never garbage
+ * collected : a buffer which is not released is lost for the pool, and retained as long as the pool.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class PooledBufferAllocator implements BufferAllocator {
+    /** The smallest size class */
+    public static final int MIN_SIZE = 256;
+
+    /** The biggest size class */
+    public static final int MAX_SIZE = 64 * 1024;
+
+    /** The size of the memory chunks the buffers are sliced from */
+    public static final int SLAB_SIZE = 256 * 1024;
+
+    /** The maximum number of buffers per size class kept in a thread cache */
+    private static final int THREAD_CACHE_SIZE = 32;
+
+    /** The number of thread caches created between two sweeps of the caches of the terminated threads */
+    private static final int SWEEP_INTERVAL = 64;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+
+    private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+
+    /** A shared pool of direct buffers */
+    public static final PooledBufferAllocator DEFAULT = new PooledBufferAllocator(true);
+
+    /** Tells if we pool direct buffers */
+    private final boolean direct;
+
+    /** The released buffers shared by all the threads, one arena per size class */
+    private final Queue<Slot>[] arenas;
+
+    /** The buffers sliced by this pool, by identity */
+    private final ConcurrentMap<BufferKey, Slot> slots = new ConcurrentHashMap<BufferKey, Slot>();
+
+    /** The per thread caches */
+    private final ThreadLocal<ThreadCache> threadCaches = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            final ThreadCache cache = new ThreadCache(Thread.currentThread());
+            caches.offer(cache);
+
+            if (cacheCreations.incrementAndGet() % SWEEP_INTERVAL == 0) {
+                sweepThreadCaches();
+            }
+
+            return cache;
+        }
+    };
+
+    /** All the thread caches, for giving back the buffers of the terminated threads */
+    private final Queue<ThreadCache> caches = new ConcurrentLinkedQueue<ThreadCache>();
+
+    /** The number of thread caches created */
+    private final AtomicInteger cacheCreations = new AtomicInteger();
+
+    /** The number of slabs allocated */
+    private final AtomicLong slabs = new AtomicLong();
+
+    /** The number of buffers taken from an arena */
+    private final AtomicLong arenaAllocations = new AtomicLong();
+
+    /** The number of requests too big for being pooled */
+    private final AtomicLong unpooledAllocations = new AtomicLong();
+
+    /**
+     * Create a new pool.
+     * 
+     * @param direct <code>true</code> for pooling direct buffers, <code>false</code> for heap buffers
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public PooledBufferAllocator(boolean direct) {
+        this.direct = direct;
+        arenas = new Queue[SIZE_CLASSES];
+
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            arenas[i] = new ConcurrentLinkedQueue<Slot>();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteBuffer allocate(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity: " + capacity + " (expected: 0+)");
+        }
+
+        if (capacity > MAX_SIZE) {
+            unpooledAllocations.incrementAndGet();
+
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        final int sizeClass = sizeClass(capacity);
+        final ThreadCache cache = threadCaches.get();
+        Slot slot = cache.poll(sizeClass);
+
+        if (slot == null) {
+            slot = arenas[sizeClass].poll();
+
+            if (slot == null) {
+                // the terminated threads may hold some buffers, before growing the pool
+                sweepThreadCaches();
+                slot = arenas[sizeClass].poll();
+            }
+
+            if (slot != null) {
+                arenaAllocations.incrementAndGet();
+            } else {
+                slot = allocateSlab(sizeClass);
+            }
+        }
+
+        slot.inUse.set(true);
+        final ByteBuffer buffer = slot.buffer;
+        buffer.clear();
+        buffer.limit(capacity);
+
+        return buffer;
+    }
+
+    /**
+     * Slice a new slab in buffers of a size class. The buffers we don't return go to the shared arena, the thread
+     * cache being kept for the released buffers, which are more likely to be in the CPU cache.
+     */
+    private Slot allocateSlab(int sizeClass) {
+        final int size = MIN_SIZE << sizeClass;
+        final ByteBuffer slab = direct ? ByteBuffer.allocateDirect(SLAB_SIZE) : ByteBuffer.allocate(SLAB_SIZE);
+        slabs.incrementAndGet();
+
+        Slot first = null;
+
+        for (int position = 0; position < SLAB_SIZE; position += size) {
+            slab.limit(position + size);
+            slab.position(position);
+            Slot slot = new Slot(slab.slice());
+            slots.put(new BufferKey(slot.buffer), slot);
+
+            if (first == null) {
+                first = slot;
+            } else {
+                arenas[sizeClass].offer(slot);
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+
+        if ((buffer.isDirect() != direct) || (capacity < MIN_SIZE) || (capacity > MAX_SIZE)
+                || (Integer.bitCount(capacity) != 1)) {
+            // Not one of our buffers
+            return;
+        }
+
+        final ThreadCache cache = threadCaches.get();
+        final Slot slot = cache.lookup(slots, buffer);
+
+        if ((slot == null) || !slot.inUse.compareAndSet(true, false)) {
+            // a foreign buffer of a pooled size, or a buffer already released
+            return;
+        }
+
+        final int sizeClass = sizeClass(capacity);
+
+        if (!cache.offer(sizeClass, slot)) {
+            arenas[sizeClass].offer(slot);
+        }
+    }
+
+    /**
+     * Give the buffers cached by the terminated threads back to the arenas. Seeing a thread terminated guarantees we
+     * see its last changes to its cache, which nobody else modifies.
+     */
+    private void sweepThreadCaches() {
+        for (ThreadCache cache : caches) {
+            // only one sweeping thread removes the cache, and flushes it
+            if (!cache.owner.isAlive() && caches.remove(cache)) {
+                cache.flush(arenas);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return the number of {@value #SLAB_SIZE} bytes slabs allocated by this pool
+     */
+    public long getSlabCount() {
+        return slabs.get();
+    }
+
+    /**
+     * @return the number of bytes allocated for the pooled buffers
+     */
+    public long getPooledBytes() {
+        return slabs.get() * SLAB_SIZE;
+    }
+
+    /**
+     * @return the number of buffers taken from the shared arenas, because the thread cache was empty
+     */
+    public long getArenaAllocations() {
+        return arenaAllocations.get();
+    }
+
+    /**
+     * @return the number of allocations too big for being pooled
+     */
+    public long getUnpooledAllocations() {
+        return unpooledAllocations.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "PooledBufferAllocator[direct=" + direct + ", slabs=" + slabs.get() + ", arenaAllocations="
+                + arenaAllocations.get() + ", unpooledAllocations=" + unpooledAllocations.get() + "]";
+    }
+
+    /**
+     * The index of the smallest size class fitting a capacity
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_SIZE) {
+            return 0;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    /**
+     * A buffer sliced by this pool, and its state
+     */
+    private static final class Slot {
+        private final ByteBuffer buffer;
+
+        /** <code>true</code> from the allocation to the release of the buffer */
+        private final AtomicBoolean inUse = new AtomicBoolean();
+
+        Slot(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * A map key comparing the buffers by identity, as the {@link ByteBuffer} equality depends on their content
+     */
+    private static final class BufferKey {
+        private ByteBuffer buffer;
+
+        BufferKey(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof BufferKey) && (((BufferKey) other).buffer == buffer);
+        }
+    }
+
+    /**
+     * The released buffers kept by a thread, only accessed by this thread while it's alive.
+     */
+    private static final class ThreadCache {
+        /** The thread using this cache */
+        private final Thread owner;
+
+        private final Slot[][] slots = new Slot[SIZE_CLASSES][THREAD_CACHE_SIZE];
+
+        private final int[] counts = new int[SIZE_CLASSES];
+
+        /** a reusable key for looking the released buffers up */
+        private final BufferKey probe = new BufferKey(null);
+
+        ThreadCache(Thread owner) {
+            this.owner = owner;
+        }
+
+        Slot poll(int sizeClass) {
+            int count = counts[sizeClass];
+
+            if (count == 0) {
+                return null;
+            }
+
+            counts[sizeClass] = --count;
+            Slot slot = slots[sizeClass][count];
+            slots[sizeClass][count] = null;
+
+            return slot;
+        }
+
+        boolean offer(int sizeClass, Slot slot) {
+            int count = counts[sizeClass];
+
+            if (count == THREAD_CACHE_SIZE) {
+                return false;
+            }
+
+            slots[sizeClass][count] = slot;
+            counts[sizeClass] = count + 1;
+
+            return true;
+        }
+
+        void flush(Queue<Slot>[] arenas) {
+            for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+                Slot slot;
+
+                while ((slot = poll(sizeClass)) != null) {
+                    arenas[sizeClass].offer(slot);
+                }
+            }
+        }
+
+        Slot lookup(ConcurrentMap<BufferKey, Slot> pooled, ByteBuffer buffer) {
+            probe.buffer = buffer;
+
+            try {
+                return pooled.get(probe);
+            } finally {
+                probe.buffer = null;
+            }
+        }
+    }
+}
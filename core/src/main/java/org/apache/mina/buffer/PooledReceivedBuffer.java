@@ -0,0 +1,96 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The pooled buffer lent to the {@link org.apache.mina.api.IoHandler} running on the current thread, when the
+ * received buffers are pooled (see {@link org.apache.mina.api.IoSessionConfig#setPooledReceivedBuffers(boolean)}).
+ * The buffer is released once the handler returns, unless the handler writes it : the write queues the buffer as is,
+ * so it takes the release over, and the buffer is released once written.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public final class PooledReceivedBuffer {
+    private static final ThreadLocal<PooledReceivedBuffer> CURRENT = new ThreadLocal<PooledReceivedBuffer>() {
+        @Override
+        protected PooledReceivedBuffer initialValue() {
+            return new PooledReceivedBuffer();
+        }
+    };
+
+    /** The lent buffer, <code>null</code> if none or if a write took it over */
+    private ByteBuffer buffer;
+
+    /** The allocator of the lent buffer */
+    private BufferAllocator allocator;
+
+    private PooledReceivedBuffer() {
+    }
+
+    /**
+     * Lend a pooled buffer to the handler about to run on the current thread.
+     * 
+     * @param buffer the received buffer
+     * @param allocator the allocator owning the buffer
+     */
+    public static void lend(ByteBuffer buffer, BufferAllocator allocator) {
+        PooledReceivedBuffer current = CURRENT.get();
+        current.buffer = buffer;
+        current.allocator = allocator;
+    }
+
+    /**
+     * Get the lent buffer back once the handler has returned.
+     * 
+     * @param buffer the buffer lent to the handler
+     * @return <code>true</code> if the buffer must be released by the caller, <code>false</code> if a write took its
+     *         release over
+     */
+    public static boolean giveBack(ByteBuffer buffer) {
+        PooledReceivedBuffer current = CURRENT.get();
+        boolean lent = current.buffer == buffer;
+        current.buffer = null;
+        current.allocator = null;
+
+        return lent;
+    }
+
+    /**
+     * Take the release of a written message over, if it's the buffer lent to the handler running on the current
+     * thread.
+     * 
+     * @param message the written message
+     * @return the allocator to release the message to once written, <code>null</code> if the message is not the lent
+     *         buffer
+     */
+    public static BufferAllocator takeOver(Object message) {
+        PooledReceivedBuffer current = CURRENT.get();
+
+        if ((message == null) || (current.buffer != message)) {
+            return null;
+        }
+
+        current.buffer = null;
+
+        return current.allocator;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.file;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * The default {@link FileRegion} implementation. The file channel is not closed by MINA once the region has been
+ * written.
+ * 
+ * <pre>
+ * FileChannel channel = new FileInputStream(file).getChannel();
+ * session.write(new DefaultFileRegion(channel, 0, channel.size()));
+ * </pre>
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class DefaultFileRegion implements FileRegion {
+    /** The file channel */
+    private final FileChannel channel;
+
+    /** The region start in the file */
+    private final long originalPosition;
+
+    /** The position of the next byte to write */
+    private long position;
+
+    /** The number of bytes still to write */
+    private long remainingBytes;
+
+    /**
+     * Create a region covering a part of a file.
+     * 
+     * @param channel the file channel
+     * @param position the position of the first byte to write
+     * @param remainingBytes the number of bytes to write
+     */
+    public DefaultFileRegion(FileChannel channel, long position, long remainingBytes) {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel can not be null");
+        }
+
+        if (position < 0) {
+            throw new IllegalArgumentException("position: " + position + " (expected: 0+)");
+        }
+
+        if (remainingBytes < 0) {
+            throw new IllegalArgumentException("remainingBytes: " + remainingBytes + " (expected: 0+)");
+        }
+
+        this.channel = channel;
+        this.originalPosition = position;
+        this.position = position;
+        this.remainingBytes = remainingBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FileChannel getFileChannel() {
+        return channel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getWrittenBytes() {
+        return position - originalPosition;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRemainingBytes() {
+        return remainingBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(long amount) {
+        position += amount;
+        remainingBytes -= amount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "FileRegion[position=" + position + ", remaining=" + remainingBytes + "]";
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.file;
+
+import java.nio.channels.FileChannel;
+
+/**
+ * A part of a file to write to a TCP session. The NIO transport transfers the file content directly to the socket
+ * (using <code>sendfile</code> when the OS supports it), without copying it in a user space buffer. A file region is
+ * processed by the filter chain : the filters not handling regions let them pass, a filter can also replace the region
+ * by another message. When the session is secured, or is not a TCP session, the file content is read in buffers which
+ * are written like the other messages.
+ * 
+ * The region is updated as the bytes are written : a {@link org.apache.mina.api.IoHandler#messageSent} event is
+ * generated when it has been fully written.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public interface FileRegion {
+    /**
+     * @return the channel of the file to write
+     */
+    FileChannel getFileChannel();
+
+    /**
+     * @return the position in the file of the next byte to write
+     */
+    long getPosition();
+
+    /**
+     * @return the number of bytes already written
+     */
+    long getWrittenBytes();
+
+    /**
+     * @return the number of bytes still to write
+     */
+    long getRemainingBytes();
+
+    /**
+     * Move the position of the region after some bytes have been written.
+     * 
+     * @param amount the number of written bytes
+     */
+    void update(long amount);
+}
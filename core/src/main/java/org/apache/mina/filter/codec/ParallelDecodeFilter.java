@@ -0,0 +1,277 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.filter.codec;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.mina.api.AbstractIoFilter;
+import org.apache.mina.api.IoFilter;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.codec.StatelessProtocolDecoder;
+import org.apache.mina.filterchain.ReadFilterChainController;
+import org.apache.mina.session.AbstractIoSession;
+import org.apache.mina.session.AttributeKey;
+import org.apache.mina.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link IoFilter} decoding the received frames on an {@link Executor}, for the codecs too CPU hungry to be run in
+ * the selector loop. It's placed after a {@link ProtocolCodecFilter} which only cuts the received bytes into frames,
+ * for example a {@link org.apache.mina.codec.delimited.SizePrefixedDecoder} with a
+ * {@link org.apache.mina.codec.delimited.FrameDecoder} payload decoder, and decodes each frame with a stateless
+ * decoder.<br>
+ * <br>
+ * The frames of a session are decoded in parallel, but the decoded messages are pushed to the next filters in the
+ * frames order, in the session selector loop. When a session has more frames waiting for their decoding than the
+ * given limit, its reads are suspended until half of them are done. The sessions without a selector loop of their
+ * own, like the UDP server ones, are decoded in the calling thread.
+ *
+ * <pre>
+ * service.setFilters(new ProtocolCodecFilter(encoder, new SizePrefixedDecoder&lt;IoBuffer&gt;(sizeDecoder,
+ *         new FrameDecoder())),
+ *         new ParallelDecodeFilter&lt;IoBuffer, MyMessage&gt;(new JavaNativeMessageDecoder&lt;MyMessage&gt;(), pool, 64));
+ * </pre>
+ *
+ * @param FRAME the kind of frame given by the previous filter
+ * @param MESSAGE the kind of message pushed to the next filter
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class ParallelDecodeFilter<FRAME, MESSAGE> extends AbstractIoFilter {
+    /** A logger for this class */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelDecodeFilter.class);
+
+    /** key for session attribute holding the frames being decoded */
+    private static final AttributeKey<DecodeQueue> DECODE_QUEUE = new AttributeKey<DecodeQueue>(DecodeQueue.class,
+            "internal_parallelDecodeQueue");
+
+    /** the immutable decoder, shared by the executor threads */
+    private final StatelessProtocolDecoder<FRAME, MESSAGE> decoder;
+
+    private final Executor executor;
+
+    /** the number of frames being decoded above which the session reads are suspended */
+    private final int sessionQueueSize;
+
+    /**
+     * Creates a new instance of ParallelDecodeFilter.
+     *
+     * @param decoder the decoder of a frame, must be thread safe
+     * @param executor the executor decoding the frames
+     * @param sessionQueueSize the number of frames being decoded above which the session reads are suspended
+     */
+    public ParallelDecodeFilter(StatelessProtocolDecoder<FRAME, MESSAGE> decoder, Executor executor,
+            int sessionQueueSize) {
+        Assert.assertNotNull(decoder, "decoder");
+        Assert.assertNotNull(executor, "executor");
+
+        if (sessionQueueSize < 1) {
+            throw new IllegalArgumentException("sessionQueueSize: " + sessionQueueSize + " (expected: 1+)");
+        }
+
+        this.decoder = decoder;
+        this.executor = executor;
+        this.sessionQueueSize = sessionQueueSize;
+    }
+
+    /**
+     * Hand the frame off to the executor. The sessions without a read thread of their own decode it in place.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void messageReceived(IoSession session, Object in, ReadFilterChainController controller) {
+        LOGGER.debug("Processing a MESSAGE_RECEIVED for session {}", session);
+
+        Executor readExecutor = session instanceof AbstractIoSession ? ((AbstractIoSession) session)
+                .getReadExecutor() : null;
+
+        if (readExecutor == null) {
+            MESSAGE msg = decoder.decode((FRAME) in, null);
+
+            if (msg != null) {
+                super.messageReceived(session, msg, controller);
+            }
+
+            return;
+        }
+
+        DecodeQueue queue = session.getAttribute(DECODE_QUEUE);
+
+        if (queue == null) {
+            // only the read thread gets there
+            queue = new DecodeQueue((AbstractIoSession) session, this, readExecutor, executor, sessionQueueSize);
+            session.setAttribute(DECODE_QUEUE, queue);
+        }
+
+        queue.submit(new DecodeTask<FRAME, MESSAGE>(queue, decoder, (FRAME) in));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionClosed(IoSession session) {
+        DecodeQueue queue = session.getAttribute(DECODE_QUEUE);
+
+        if (queue != null) {
+            // the frames still being decoded are dropped
+            queue.closed = true;
+        }
+
+        super.sessionClosed(session);
+    }
+
+    /**
+     * The frames of a session, in the order they have been received. The frames are queued and the messages pushed
+     * to the chain in the session read thread, the executor threads only decode them.
+     */
+    private static final class DecodeQueue implements Runnable {
+        private final AbstractIoSession session;
+
+        /** the filter pushing the decoded messages */
+        private final IoFilter filter;
+
+        private final Executor readExecutor;
+
+        private final Executor executor;
+
+        private final int sessionQueueSize;
+
+        private final Queue<DecodeTask<?, ?>> tasks = new ConcurrentLinkedQueue<DecodeTask<?, ?>>();
+
+        /** the number of frames queued and not yet pushed, only accessed in the read thread */
+        private int pending;
+
+        /** are the session reads suspended by this queue, only accessed in the read thread */
+        private boolean saturated;
+
+        /** <code>true</code> while the delivery of the decoded messages is scheduled in the read thread */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        DecodeQueue(AbstractIoSession session, IoFilter filter, Executor readExecutor, Executor executor,
+                int sessionQueueSize) {
+            this.session = session;
+            this.filter = filter;
+            this.readExecutor = readExecutor;
+            this.executor = executor;
+            this.sessionQueueSize = sessionQueueSize;
+        }
+
+        void submit(DecodeTask<?, ?> task) {
+            tasks.offer(task);
+
+            if (++pending > sessionQueueSize && !saturated) {
+                LOGGER.debug("session {} saturated, suspending reads", session);
+                saturated = true;
+                session.suspendRead();
+            }
+
+            executor.execute(task);
+        }
+
+        /**
+         * Called by the executor threads once a frame is decoded
+         */
+        void decoded() {
+            if (scheduled.compareAndSet(false, true)) {
+                readExecutor.execute(this);
+            }
+        }
+
+        /**
+         * Push the decoded messages following the last pushed one, stops at the first frame still being decoded.
+         */
+        @Override
+        public void run() {
+            // cleared first, so a frame decoded meanwhile schedules the delivery again
+            scheduled.set(false);
+
+            DecodeTask<?, ?> task;
+
+            while ((task = tasks.peek()) != null && task.done) {
+                tasks.poll();
+                pending--;
+
+                if (closed) {
+                    continue;
+                }
+
+                if (task.error != null) {
+                    LOGGER.debug("decoding exception : ", task.error);
+                    session.processException(task.error);
+                } else if (task.message != null) {
+                    session.resumeReadChain(filter, task.message);
+                }
+            }
+
+            if (saturated && pending <= sessionQueueSize / 2) {
+                LOGGER.debug("session {} caught up, resuming reads", session);
+                saturated = false;
+                session.resumeRead();
+            }
+        }
+    }
+
+    /** The decoding of a frame, run by the executor */
+    private static final class DecodeTask<FRAME, MESSAGE> implements Runnable {
+        private final DecodeQueue queue;
+
+        private final StatelessProtocolDecoder<FRAME, MESSAGE> decoder;
+
+        private FRAME frame;
+
+        /** the decoding result, published by the done flag */
+        private MESSAGE message;
+
+        private RuntimeException error;
+
+        private volatile boolean done;
+
+        DecodeTask(DecodeQueue queue, StatelessProtocolDecoder<FRAME, MESSAGE> decoder, FRAME frame) {
+            this.queue = queue;
+            this.decoder = decoder;
+            this.frame = frame;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            try {
+                if (!queue.closed) {
+                    message = decoder.decode(frame, null);
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                frame = null;
+                done = true;
+            }
+
+            queue.decoded();
+        }
+    }
+}
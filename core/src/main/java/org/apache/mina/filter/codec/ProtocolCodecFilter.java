@@ -20,6 +20,8 @@
 package org.apache.mina.filter.codec;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.mina.api.AbstractIoFilter;
 import org.apache.mina.api.IoFilter;
@@ -27,6 +29,7 @@ import org.apache.mina.api.IoSession;
 import org.apache.mina.codec.ProtocolDecoder;
 import org.apache.mina.codec.ProtocolDecoderException;
 import org.apache.mina.codec.ProtocolEncoder;
+import org.apache.mina.file.FileRegion;
 import org.apache.mina.filterchain.ReadFilterChainController;
 import org.apache.mina.filterchain.WriteFilterChainController;
 import org.apache.mina.session.AttributeKey;
@@ -58,6 +61,9 @@ public class ProtocolCodecFilter<MESSAGE, ENCODED, ENCODING_STATE, DECODING_STAT
     /** the immutable decoder */
     private final ProtocolDecoder<ENCODED, MESSAGE, DECODING_STATE> decoder;
 
+    /** push all the messages decoded from a received buffer at once */
+    private final boolean batch;
+
     /** key for session attribute holding the encoder */
     private static final AttributeKey<Object> ENCODER = new AttributeKey<Object>(Object.class, "internal_encoder");
 
@@ -71,10 +77,23 @@ public class ProtocolCodecFilter<MESSAGE, ENCODED, ENCODING_STATE, DECODING_STAT
      */
     public ProtocolCodecFilter(ProtocolEncoder<MESSAGE, ENCODED, ENCODING_STATE> encoder,
             ProtocolDecoder<ENCODED, MESSAGE, DECODING_STATE> decoder) {
+        this(encoder, decoder, false);
+    }
+
+    /**
+     * Creates a new instance of ProtocolCodecFilter, with the specified encoder
+     * and decoder. In batch mode, the messages decoded from a received buffer
+     * are pushed at once to the next filter, see
+     * {@link IoFilter#messagesReceived(IoSession, List, ReadFilterChainController)}.
+     * 
+     */
+    public ProtocolCodecFilter(ProtocolEncoder<MESSAGE, ENCODED, ENCODING_STATE> encoder,
+            ProtocolDecoder<ENCODED, MESSAGE, DECODING_STATE> decoder, boolean batch) {
         Assert.assertNotNull(encoder, "encoder");
         Assert.assertNotNull(decoder, "decoder");
         this.encoder = encoder;
         this.decoder = decoder;
+        this.batch = batch;
     }
 
     /**
@@ -95,6 +114,11 @@ public class ProtocolCodecFilter<MESSAGE, ENCODED, ENCODING_STATE, DECODING_STAT
 
         DECODING_STATE state = getDecodingState(session);
 
+        if (batch) {
+            decodeBatch((ENCODED) in, state, controller);
+            return;
+        }
+
         // Loop until the decoder cannot decode more
         MESSAGE msg;
         try {
@@ -107,6 +131,39 @@ public class ProtocolCodecFilter<MESSAGE, ENCODED, ENCODING_STATE, DECODING_STAT
         }
     }
 
+    /**
+     * Decode all the messages of the incoming buffer, and push them at once.
+     * The messages decoded before a decoding exception are pushed before it's
+     * thrown, like in the message by message mode.
+     */
+    private void decodeBatch(ENCODED in, DECODING_STATE state, ReadFilterChainController controller) {
+        // a new list for each read, the next filters or the handler executor may keep it
+        List<MESSAGE> messages = null;
+        MESSAGE msg;
+
+        try {
+            while (((msg = decoder.decode(in, state)) != null)) {
+                if (messages == null) {
+                    messages = new ArrayList<MESSAGE>();
+                }
+
+                messages.add(msg);
+            }
+        } catch (ProtocolDecoderException e) {
+            LOGGER.debug("decoding exception : ", e);
+
+            if (messages != null) {
+                controller.callReadNextFilterBatch(messages);
+            }
+
+            throw e;
+        }
+
+        if (messages != null) {
+            controller.callReadNextFilterBatch(messages);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -115,6 +172,12 @@ public class ProtocolCodecFilter<MESSAGE, ENCODED, ENCODING_STATE, DECODING_STAT
     public void messageWriting(IoSession session, WriteRequest message, WriteFilterChainController controller) {
         LOGGER.debug("Processing a MESSAGE_WRITTING for session {}", session);
 
+        if (message.getMessage() instanceof FileRegion) {
+            // the file content is already encoded
+            super.messageWriting(session, message, controller);
+            return;
+        }
+
         ENCODED encoded = encoder.encode((MESSAGE) message.getMessage(), getEncodingState(session));
         message.setMessage(encoded);
 
@@ -0,0 +1,151 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.filter.flowcontrol;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.mina.api.AbstractIoFilter;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.session.AttributeKey;
+
+/**
+ * A filter suspending the reads of some peer sessions while a session is not writable. In a proxy, the outbound
+ * session is the peer of the inbound session (and vice versa) : when a session write queue grows above its high
+ * watermark, we stop reading from the session producing the data, and we resume reading when the write queue has been
+ * drained below its low watermark.
+ * 
+ * <pre>
+ * WritabilityFlowControlFilter.addPeer(outboundSession, inboundSession);
+ * WritabilityFlowControlFilter.addPeer(inboundSession, outboundSession);
+ * </pre>
+ * 
+ * @see org.apache.mina.api.IoSessionConfig#setWriteQueueWaterMarks(int, int)
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class WritabilityFlowControlFilter extends AbstractIoFilter {
+    /** The sessions to suspend when a session is not writable */
+    static final AttributeKey<Peers> PEERS = new AttributeKey<Peers>(Peers.class, "flowcontrol.peers");
+
+    /**
+     * Suspend the reads of a peer session while a session is not writable
+     * 
+     * @param session the session which writability is watched
+     * @param peer the session which reads are suspended
+     */
+    public static void addPeer(IoSession session, IoSession peer) {
+        Peers peers;
+
+        synchronized (session) {
+            peers = session.getAttribute(PEERS);
+
+            if (peers == null) {
+                peers = new Peers(!session.isWritable());
+                session.setAttribute(PEERS, peers);
+            }
+        }
+
+        peers.add(peer);
+    }
+
+    /**
+     * Stop suspending the reads of a peer session when a session is not writable. The peer reads are resumed if they
+     * were suspended by this filter.
+     * 
+     * @param session the session which writability is watched
+     * @param peer the peer session
+     */
+    public static void removePeer(IoSession session, IoSession peer) {
+        Peers peers = session.getAttribute(PEERS);
+
+        if (peers != null) {
+            peers.remove(peer);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writabilityChanged(IoSession session, boolean writable) {
+        Peers peers = session.getAttribute(PEERS);
+
+        if (peers != null) {
+            peers.setSuspended(!writable);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionClosed(IoSession session) {
+        // a closed session never becomes writable again : release its peers
+        Peers peers = session.removeAttribute(PEERS);
+
+        if (peers != null) {
+            peers.setSuspended(false);
+        }
+    }
+
+    /**
+     * The peers of a session. The reads of a session may also be suspended by other filters, so each suspension made
+     * here is paired with a single resume : the peers are suspended once when the session is not writable, and resumed
+     * once when it's writable again or when they are removed.
+     */
+    static final class Peers {
+        private final Set<IoSession> sessions = new HashSet<IoSession>();
+
+        /** are the peers reads suspended by us */
+        private boolean suspended;
+
+        Peers(boolean suspended) {
+            this.suspended = suspended;
+        }
+
+        synchronized void add(IoSession peer) {
+            if (sessions.add(peer) && suspended) {
+                peer.suspendRead();
+            }
+        }
+
+        synchronized void remove(IoSession peer) {
+            if (sessions.remove(peer) && suspended) {
+                peer.resumeRead();
+            }
+        }
+
+        synchronized void setSuspended(boolean suspended) {
+            if (this.suspended == suspended) {
+                return;
+            }
+
+            this.suspended = suspended;
+
+            for (IoSession peer : sessions) {
+                if (suspended) {
+                    peer.suspendRead();
+                } else {
+                    peer.resumeRead();
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.mina.filter.logging;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.apache.mina.api.AbstractIoFilter;
 import org.apache.mina.api.IdleStatus;
@@ -205,6 +206,19 @@ public class LoggingFilter extends AbstractIoFilter {
         super.messageReceived(session, message, controller);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void messagesReceived(IoSession session, List<?> messages, ReadFilterChainController controller) {
+        for (Object message : messages) {
+            log(messageReceivedLevel, "RECEIVED: {}", message);
+        }
+
+        // the batch is kept for the next filters
+        controller.callReadNextFilterBatch(messages);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -20,9 +20,9 @@
 package org.apache.mina.filter.query;
 
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
 
 import org.apache.mina.api.IoSession;
+import org.apache.mina.transport.nio.ScheduledTask;
 import org.apache.mina.util.AbstractIoFuture;
 
 /**
@@ -39,7 +39,7 @@ class RequestFuture<REQUEST extends Request, RESPONSE extends Response> extends
 
     private final Object id;
 
-    private ScheduledFuture<?> schedFuture;
+    private ScheduledTask timeoutTask;
 
     public RequestFuture(IoSession session, Object id) {
         this.session = session;
@@ -52,14 +52,14 @@ class RequestFuture<REQUEST extends Request, RESPONSE extends Response> extends
     }
 
     void complete(RESPONSE response) {
-        if (schedFuture != null) {
-            schedFuture.cancel(true);
+        if (timeoutTask != null) {
+            timeoutTask.cancel();
         }
         setResult(response);
     }
 
-    void setTimeoutFuture(ScheduledFuture<?> schedFuture) {
-        this.schedFuture = schedFuture;
+    void setTimeoutTask(ScheduledTask timeoutTask) {
+        this.timeoutTask = timeoutTask;
     }
 
     Runnable timeout = new Runnable() {
@@ -19,6 +19,8 @@
  */
 package org.apache.mina.filterchain;
 
+import java.util.List;
+
 /**
  * Chain controller used by a filter for calling the next filter in read order.
  *  
@@ -33,6 +35,12 @@ public interface ReadFilterChainController {
      */
     void callReadNextFilter(Object message);
 
+    /**
+     * Push a batch of messages to the next filter, which gets them at once if it handles batches.
+     * @param messages the messages to push to the next filter, in the received order.
+     */
+    void callReadNextFilterBatch(List<?> messages);
+
     /**
      * Write a message back to the session starting from this filter instead of walking thru the whole filter chain.
      * @param message the message to be written
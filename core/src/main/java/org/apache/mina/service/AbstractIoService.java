@@ -28,6 +28,8 @@ import org.apache.mina.api.IoService;
 import org.apache.mina.api.IoSession;
 import org.apache.mina.api.IoSessionConfig;
 import org.apache.mina.service.executor.IoHandlerExecutor;
+import org.apache.mina.util.CachedClock;
+import org.apache.mina.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +61,20 @@ public abstract class AbstractIoService implements IoService {
     /** used for executing IoHandler event in another pool of thread (not in the low level I/O one) */
     protected final IoHandlerExecutor ioHandlerExecutor;
 
+    /** The clock giving the time of the I/O events */
+    private volatile Clock clock = CachedClock.DEFAULT;
+
+    /**
+     * A view on the service clock for the components created with the service, like its idle checker, which follows
+     * the clock set later by {@link #setClock(Clock)}
+     */
+    protected final Clock serviceClock = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return clock.currentTimeMillis();
+        }
+    };
+
     /**
      * The Service states
      */
@@ -231,4 +247,24 @@ public abstract class AbstractIoService implements IoService {
     public void setFilters(final IoFilter... filters) {
         this.filters = filters;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setClock(final Clock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock can not be null");
+        }
+
+        this.clock = clock;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.IoHandler;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.session.AttributeKey;
+import org.apache.mina.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Use this executor if most of your {@link IoHandler} events are fast, and only a few sessions have slow handlers.
+ * The events of a session are run in the I/O thread, without any hand off, as long as the handler is fast. The
+ * executor keeps a moving average of the handler time of each session, and once it exceeds the threshold the events
+ * of the session are run in order on the given {@link Executor}. The session goes back to the I/O thread once its
+ * average drops under half the threshold, and all its offloaded events have been run, so the events order is kept
+ * across the switches.<br>
+ * <br>
+ * The offloaded sessions are handled like with {@link OrderedWorkStealingHandlerExecutor} : their reads are suspended
+ * while they have more pending events than the session queue size.
+ *
+ * <pre>
+ * IoHandlerExecutor executor = new AdaptiveHandlerExecutor(new ForkJoinPool(), 1, TimeUnit.MILLISECONDS, 1024);
+ * </pre>
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public final class AdaptiveHandlerExecutor implements IoHandlerExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveHandlerExecutor.class);
+
+    /** The dispatch state of a session */
+    private static final AttributeKey<SessionState> SESSION_STATE = new AttributeKey<SessionState>(
+            SessionState.class, "internal_adaptiveDispatchState");
+
+    /** The weight of the last event in the moving average, as a shift : 1/8 */
+    private static final int AVERAGE_SHIFT = 3;
+
+    /** The maximum number of offloaded events run for a session before giving the thread to the other sessions */
+    private static final int EVENTS_PER_RUN = 16;
+
+    private static final HandlerCaller CALLER = new HandlerCaller();
+
+    /** The executor running the slow sessions */
+    private final Executor executor;
+
+    /** The handler average time above which a session is offloaded, in nanoseconds */
+    private final long thresholdNanos;
+
+    /** The number of pending events above which the reads of an offloaded session are suspended */
+    private final int sessionQueueSize;
+
+    /**
+     * Create an {@link AdaptiveHandlerExecutor}.
+     *
+     * @param executor the executor running the events of the slow sessions
+     * @param threshold the handler average time above which a session is offloaded
+     * @param unit the threshold unit
+     * @param sessionQueueSize the number of pending events above which the reads of an offloaded session are
+     *        suspended
+     */
+    public AdaptiveHandlerExecutor(Executor executor, long threshold, TimeUnit unit, int sessionQueueSize) {
+        Assert.assertNotNull(executor, "executor");
+
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold: " + threshold + " (expected: 1+)");
+        }
+
+        if (sessionQueueSize < 1) {
+            throw new IllegalArgumentException("sessionQueueSize: " + sessionQueueSize + " (expected: 1+)");
+        }
+
+        this.executor = executor;
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.sessionQueueSize = sessionQueueSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Event event) {
+        IoSession session = event.getSession();
+        SessionState state = stateOf(session);
+
+        // the events of a session are usually published by its I/O loop, but a close can come from any thread
+        synchronized (state) {
+            if (state.offloaded) {
+                if (state.averageNanos > thresholdNanos / 2 || !queueOf(session).isDrained()) {
+                    queueOf(session).enqueue(new TimedEvent(event, state));
+                    return;
+                }
+
+                LOG.debug("running the events of session {} in the I/O thread", session);
+                state.offloaded = false;
+            } else if (state.averageNanos > thresholdNanos) {
+                // the previous events have been run inline, they are all done
+                LOG.debug("offloading the events of session {}", session);
+                state.offloaded = true;
+                queueOf(session).enqueue(new TimedEvent(event, state));
+                return;
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                event.visit(CALLER);
+            } finally {
+                state.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * @return the dispatch state of a session, created on its first event
+     */
+    private SessionState stateOf(IoSession session) {
+        SessionState state = session.getAttribute(SESSION_STATE);
+
+        if (state == null) {
+            // only the first events of the session get there
+            synchronized (this) {
+                state = session.getAttribute(SESSION_STATE);
+
+                if (state == null) {
+                    state = new SessionState();
+                    session.setAttribute(SESSION_STATE, state);
+                }
+            }
+        }
+
+        return state;
+    }
+
+    private SessionEventQueue queueOf(IoSession session) {
+        return SessionEventQueue.of(session, executor, sessionQueueSize, EVENTS_PER_RUN);
+    }
+
+    /** The handler time and dispatch mode of a session */
+    private static class SessionState {
+        /** the moving average of the handler time, updated by the thread running the event */
+        private volatile long averageNanos;
+
+        /** <code>true</code> if the events are run by the executor, changed with the state lock held */
+        private boolean offloaded;
+
+        void record(long nanos) {
+            // the events of a session are run one at a time, so there is no concurrent update
+            averageNanos += (nanos - averageNanos) >> AVERAGE_SHIFT;
+        }
+    }
+
+    /** An offloaded event, recording its handler time in the session state */
+    private static class TimedEvent implements Event {
+        private final Event event;
+
+        private final SessionState state;
+
+        TimedEvent(Event event, SessionState state) {
+            this.event = event;
+            this.state = state;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IoSession getSession() {
+            return event.getSession();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visit(EventVisitor visitor) {
+            long start = System.nanoTime();
+
+            try {
+                event.visit(visitor);
+            } finally {
+                state.record(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return event.toString();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import java.util.List;
+
+import org.apache.mina.api.IdleStatus;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.buffer.BufferAllocator;
+
+/**
+ * A reusable slot of a {@link RingBufferHandlerExecutor}. Visiting an {@link Event} copies its content in the slot, so
+ * the event object doesn't outlive the publication, and the slot is then dispatched to the {@link HandlerCaller} by
+ * the worker in charge of the session.<br>
+ * <br>
+ * The slot fields are written by the publishing thread before the slot sequence is published, and read by the workers
+ * after they have seen the sequence, so they don't need to be volatile.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+final class EventSlot implements EventVisitor {
+    private static final int OPEN = 0;
+
+    private static final int CLOSE = 1;
+
+    private static final int RECEIVE = 2;
+
+    private static final int SENT = 3;
+
+    private static final int IDLE = 4;
+
+    private static final int HANDSHAKE_STARTED = 5;
+
+    private static final int HANDSHAKE_COMPLETED = 6;
+
+    private static final int SECURE_CLOSED = 7;
+
+    private static final int WRITABILITY_CHANGED = 8;
+
+    private static final int RECEIVE_BATCH = 9;
+
+    /** The index of the worker in charge of the event, kept when the slot is cleared */
+    int worker;
+
+    private int type;
+
+    private IoSession session;
+
+    private Object message;
+
+    private BufferAllocator allocator;
+
+    private IdleStatus idleStatus;
+
+    private boolean writable;
+
+    /**
+     * Call the handler for the event held by this slot, and clear the slot references
+     *
+     * @param caller the handler caller
+     */
+    void dispatch(HandlerCaller caller) {
+        try {
+            switch (type) {
+            case OPEN:
+                caller.sessionOpened(session);
+                break;
+            case CLOSE:
+                caller.sessionClosed(session);
+                break;
+            case RECEIVE:
+                caller.messageReceived(session, message, allocator);
+                break;
+            case SENT:
+                caller.messageSent(session, message);
+                break;
+            case IDLE:
+                caller.sessionIdle(session, idleStatus);
+                break;
+            case HANDSHAKE_STARTED:
+                caller.handshakeStarted(session);
+                break;
+            case HANDSHAKE_COMPLETED:
+                caller.handshakeCompleted(session);
+                break;
+            case SECURE_CLOSED:
+                caller.secureClosed(session);
+                break;
+            case WRITABILITY_CHANGED:
+                caller.writabilityChanged(session, writable);
+                break;
+            case RECEIVE_BATCH:
+                caller.messagesReceived(session, (List<?>) message);
+                break;
+            default:
+                throw new IllegalStateException("unexpected event type : " + type);
+            }
+        } finally {
+            // don't retain the session nor the message until the slot is reused
+            session = null;
+            message = null;
+            allocator = null;
+            idleStatus = null;
+        }
+    }
+
+    @Override
+    public void visit(OpenEvent event) {
+        set(OPEN, event.getSession());
+    }
+
+    @Override
+    public void visit(CloseEvent event) {
+        set(CLOSE, event.getSession());
+    }
+
+    @Override
+    public void visit(ReceiveEvent event) {
+        set(RECEIVE, event.getSession());
+        message = event.getMessage();
+        allocator = event.getAllocator();
+    }
+
+    @Override
+    public void visit(ReceiveBatchEvent event) {
+        set(RECEIVE_BATCH, event.getSession());
+        message = event.getMessages();
+    }
+
+    @Override
+    public void visit(SentEvent event) {
+        set(SENT, event.getSession());
+        message = event.getMessage();
+    }
+
+    @Override
+    public void visit(IdleEvent event) {
+        set(IDLE, event.getSession());
+        idleStatus = event.getIdleStatus();
+    }
+
+    @Override
+    public void visit(HandshakeStartedEvent event) {
+        set(HANDSHAKE_STARTED, event.getSession());
+    }
+
+    @Override
+    public void visit(HandshakeCompletedEvent event) {
+        set(HANDSHAKE_COMPLETED, event.getSession());
+    }
+
+    @Override
+    public void visit(SecureClosedEvent event) {
+        set(SECURE_CLOSED, event.getSession());
+    }
+
+    @Override
+    public void visit(WritabilityChangedEvent event) {
+        set(WRITABILITY_CHANGED, event.getSession());
+        writable = event.isWritable();
+    }
+
+    private void set(int type, IoSession session) {
+        this.type = type;
+        this.session = session;
+    }
+}
@@ -32,6 +32,8 @@ public interface EventVisitor {
 
     void visit(ReceiveEvent event);
 
+    void visit(ReceiveBatchEvent event);
+
     void visit(SentEvent event);
 
     void visit(IdleEvent event);
@@ -41,4 +43,6 @@ public interface EventVisitor {
     void visit(HandshakeCompletedEvent handshakeCompletedEvent);
 
     void visit(SecureClosedEvent secureClosedEvent);
+
+    void visit(WritabilityChangedEvent writabilityChangedEvent);
 }
@@ -20,11 +20,18 @@
 
 package org.apache.mina.service.executor;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.mina.api.IdleStatus;
 import org.apache.mina.api.IoHandler;
 import org.apache.mina.api.IoSession;
+import org.apache.mina.buffer.BufferAllocator;
+import org.apache.mina.buffer.PooledReceivedBuffer;
 
 /**
- * In charge of calling the {@link IoHandler} for a given {@link Event}
+ * In charge of calling the {@link IoHandler} for a given {@link Event}. The calls are also available without an
+ * {@link Event}, for the executors keeping the events content in their own holders.
  * 
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
@@ -32,7 +39,55 @@ class HandlerCaller implements EventVisitor {
 
     @Override
     public void visit(CloseEvent event) {
-        IoSession session = event.getSession();
+        sessionClosed(event.getSession());
+    }
+
+    @Override
+    public void visit(IdleEvent event) {
+        sessionIdle(event.getSession(), event.getIdleStatus());
+    }
+
+    @Override
+    public void visit(OpenEvent event) {
+        sessionOpened(event.getSession());
+    }
+
+    @Override
+    public void visit(ReceiveEvent event) {
+        messageReceived(event.getSession(), event.getMessage(), event.getAllocator());
+    }
+
+    @Override
+    public void visit(ReceiveBatchEvent event) {
+        messagesReceived(event.getSession(), event.getMessages());
+    }
+
+    @Override
+    public void visit(SentEvent event) {
+        messageSent(event.getSession(), event.getMessage());
+    }
+
+    @Override
+    public void visit(HandshakeStartedEvent event) {
+        handshakeStarted(event.getSession());
+    }
+
+    @Override
+    public void visit(HandshakeCompletedEvent event) {
+        handshakeCompleted(event.getSession());
+    }
+
+    @Override
+    public void visit(SecureClosedEvent event) {
+        secureClosed(event.getSession());
+    }
+
+    @Override
+    public void visit(WritabilityChangedEvent event) {
+        writabilityChanged(event.getSession(), event.isWritable());
+    }
+
+    void sessionClosed(IoSession session) {
         try {
             session.getService().getIoHandler().sessionClosed(session);
         } catch (Exception e) {
@@ -40,51 +95,63 @@ class HandlerCaller implements EventVisitor {
         }
     }
 
-    @Override
-    public void visit(IdleEvent event) {
-        IoSession session = event.getSession();
+    void sessionIdle(IoSession session, IdleStatus status) {
         try {
-            session.getService().getIoHandler().sessionIdle(session, event.getIdleStatus());
+            session.getService().getIoHandler().sessionIdle(session, status);
         } catch (Exception e) {
             session.getService().getIoHandler().exceptionCaught(session, e);
         }
-
     }
 
-    @Override
-    public void visit(OpenEvent event) {
-        IoSession session = event.getSession();
+    void sessionOpened(IoSession session) {
         try {
             session.getService().getIoHandler().sessionOpened(session);
         } catch (Exception e) {
             session.getService().getIoHandler().exceptionCaught(session, e);
         }
+    }
+
+    /**
+     * Call the handler for a received message, and give the message buffer back to its allocator if it's pooled and
+     * the handler has not written it
+     * 
+     * @param session the session which received the message
+     * @param message the received message
+     * @param allocator the allocator of the message buffer, <code>null</code> if the buffer is not pooled
+     */
+    void messageReceived(IoSession session, Object message, BufferAllocator allocator) {
+        if (allocator != null) {
+            PooledReceivedBuffer.lend((ByteBuffer) message, allocator);
+        }
 
+        try {
+            session.getService().getIoHandler().messageReceived(session, message);
+        } catch (Exception e) {
+            session.getService().getIoHandler().exceptionCaught(session, e);
+        } finally {
+            if ((allocator != null) && PooledReceivedBuffer.giveBack((ByteBuffer) message)) {
+                allocator.release((ByteBuffer) message);
+            }
+        }
     }
 
-    @Override
-    public void visit(ReceiveEvent event) {
-        IoSession session = event.getSession();
+    void messagesReceived(IoSession session, List<?> messages) {
         try {
-            session.getService().getIoHandler().messageReceived(session, event.getMessage());
+            session.getService().getIoHandler().messagesReceived(session, messages);
         } catch (Exception e) {
             session.getService().getIoHandler().exceptionCaught(session, e);
         }
     }
 
-    @Override
-    public void visit(SentEvent event) {
-        IoSession session = event.getSession();
+    void messageSent(IoSession session, Object message) {
         try {
-            session.getService().getIoHandler().messageSent(session, event.getMessage());
+            session.getService().getIoHandler().messageSent(session, message);
         } catch (Exception e) {
             session.getService().getIoHandler().exceptionCaught(session, e);
         }
     }
 
-    @Override
-    public void visit(HandshakeStartedEvent event) {
-        IoSession session = event.getSession();
+    void handshakeStarted(IoSession session) {
         try {
             session.getService().getIoHandler().handshakeStarted(session);
         } catch (Exception e) {
@@ -92,9 +159,7 @@ class HandlerCaller implements EventVisitor {
         }
     }
 
-    @Override
-    public void visit(HandshakeCompletedEvent event) {
-        IoSession session = event.getSession();
+    void handshakeCompleted(IoSession session) {
         try {
             session.getService().getIoHandler().handshakeCompleted(session);
         } catch (Exception e) {
@@ -102,13 +167,19 @@ class HandlerCaller implements EventVisitor {
         }
     }
 
-    @Override
-    public void visit(SecureClosedEvent event) {
-        IoSession session = event.getSession();
+    void secureClosed(IoSession session) {
         try {
             session.getService().getIoHandler().secureClosed(session);
         } catch (Exception e) {
             session.getService().getIoHandler().exceptionCaught(session, e);
         }
     }
-}
\ No newline at end of file
+
+    void writabilityChanged(IoSession session, boolean writable) {
+        try {
+            session.getService().getIoHandler().writabilityChanged(session, writable);
+        } catch (Exception e) {
+            session.getService().getIoHandler().exceptionCaught(session, e);
+        }
+    }
+}
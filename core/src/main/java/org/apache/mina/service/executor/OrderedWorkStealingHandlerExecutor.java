@@ -0,0 +1,97 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.mina.api.IoHandler;
+import org.apache.mina.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Use this executor if you want the {@link IoHandler} events of a session to be executed in order, like with
+ * {@link OrderedHandlerExecutor}, without tying the session to a given thread.<br>
+ * <br>
+ * Each session has its own serial queue of events. A session with pending events is scheduled on a work-stealing
+ * {@link ForkJoinPool}, and only one thread runs the events of a session at a time, so a slow session delays its own
+ * events only : the other sessions are run by the idle threads of the pool.<br>
+ * <br>
+ * The executor never blocks the I/O thread. When the pending events of a session exceed the session queue size, the
+ * session reads are suspended, and they are resumed once the handler has caught up with half of the queue. The read
+ * suspensions being counted (see {@link org.apache.mina.api.IoSession#suspendRead()}), the executor releases its own
+ * suspension only : the reads suspended by your {@link IoHandler} stay suspended until it resumes them. Note that a UDP
+ * server session drops the datagrams received while its reads are suspended.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public final class OrderedWorkStealingHandlerExecutor implements IoHandlerExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OrderedWorkStealingHandlerExecutor.class);
+
+    /** The maximum number of events run for a session before giving the thread to the other sessions */
+    private static final int EVENTS_PER_RUN = 16;
+
+    /** The pool running the session queues */
+    private final ForkJoinPool pool;
+
+    /** The number of pending events above which the reads of a session are suspended */
+    private final int sessionQueueSize;
+
+    /**
+     * Create an {@link OrderedWorkStealingHandlerExecutor} with a given number of thread and a given queue size.
+     *
+     * @param workerThreadCount the worker thread count
+     * @param sessionQueueSize the number of pending events above which the reads of a session are suspended
+     */
+    public OrderedWorkStealingHandlerExecutor(int workerThreadCount, int sessionQueueSize) {
+        this(new ForkJoinPool(workerThreadCount, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true),
+                sessionQueueSize);
+    }
+
+    /**
+     * Create an {@link OrderedWorkStealingHandlerExecutor} running the sessions events on a given pool. The pool
+     * should be in asynchronous mode (FIFO scheduling), for being fair to the sessions.
+     *
+     * @param pool the pool running the events
+     * @param sessionQueueSize the number of pending events above which the reads of a session are suspended
+     */
+    public OrderedWorkStealingHandlerExecutor(ForkJoinPool pool, int sessionQueueSize) {
+        Assert.assertNotNull(pool, "pool");
+
+        if (sessionQueueSize < 1) {
+            throw new IllegalArgumentException("sessionQueueSize must be positive");
+        }
+
+        LOG.debug("creating OrderedWorkStealingHandlerExecutor parallelism = {} sessionQueueSize = {}",
+                pool.getParallelism(), sessionQueueSize);
+        this.pool = pool;
+        this.sessionQueueSize = sessionQueueSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Event event) {
+        LOG.debug("executing event {}", event);
+        SessionEventQueue.of(event.getSession(), pool, sessionQueueSize, EVENTS_PER_RUN).enqueue(event);
+    }
+}
@@ -19,7 +19,10 @@
  */
 package org.apache.mina.service.executor;
 
+import java.nio.ByteBuffer;
+
 import org.apache.mina.api.IoSession;
+import org.apache.mina.buffer.BufferAllocator;
 
 /**
  * A {@link IoSession} received a message {@link Event}.
@@ -31,9 +34,28 @@ public class ReceiveEvent implements Event {
 
     private final Object message;
 
+    /** The allocator owning the message buffer, if the buffer must be released once the event is handled */
+    private final BufferAllocator allocator;
+
     public ReceiveEvent(final IoSession session, final Object message) {
         this.session = session;
         this.message = message;
+        this.allocator = null;
+    }
+
+    /**
+     * Create an event for a received buffer owned by a {@link BufferAllocator}. The buffer is released to the
+     * allocator by the {@link HandlerCaller} handling the event, once the {@link org.apache.mina.api.IoHandler} is done
+     * with it.
+     * 
+     * @param session the session which received the message
+     * @param message the received message
+     * @param allocator the allocator of the message buffer, <code>null</code> if the buffer is not pooled
+     */
+    public ReceiveEvent(final IoSession session, final ByteBuffer message, final BufferAllocator allocator) {
+        this.session = session;
+        this.message = message;
+        this.allocator = allocator;
     }
 
     /**
@@ -48,6 +70,13 @@ public class ReceiveEvent implements Event {
         return message;
     }
 
+    /**
+     * @return the allocator of the message buffer, <code>null</code> if the buffer is not pooled
+     */
+    BufferAllocator getAllocator() {
+        return allocator;
+    }
+
     @Override
     public void visit(EventVisitor visitor) {
         visitor.visit(this);
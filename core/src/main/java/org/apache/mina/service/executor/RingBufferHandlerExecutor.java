@@ -0,0 +1,426 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.mina.api.IoHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Use this executor if you want the {@link IoHandler} events of a session to be executed in order and on the same
+ * thread, like with {@link OrderedHandlerExecutor}, with a lower hand off latency at high message rates.<br>
+ * <br>
+ * The events are published in a preallocated ring buffer of {@link EventSlot}s : publishing an event copies its
+ * content in the next slot, without any lock nor queue node. Each worker thread follows the whole ring with its own
+ * sequence, and handles the events of the sessions it's in charge of (<code>sessionId % workers</code>), so the events
+ * of a session are run in order. The I/O threads reuse a slot once all the workers have passed it : when the ring is
+ * full, they wait for the slowest worker.<br>
+ * <br>
+ * A handler can generate new events while it runs on a worker, by closing or writing to a session. Waiting for a free
+ * slot would then mean waiting for the worker itself : when the ring is full, the events published by a worker are
+ * queued in the overflow queue of the worker in charge of their session, which runs them once it has handled the
+ * slots published before them.<br>
+ * <br>
+ * Every worker reads every slot, so this executor is meant for a few workers. The way the workers wait for the next
+ * event is given by a {@link WaitStrategy}.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public final class RingBufferHandlerExecutor implements IoHandlerExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RingBufferHandlerExecutor.class);
+
+    private static final HandlerCaller CALLER = new HandlerCaller();
+
+    /** The number of checks a worker spins before yielding the CPU, with the yielding and sleeping strategies */
+    private static final int SPIN_TRIES = 100;
+
+    /** The number of times a worker yields the CPU before sleeping, with the sleeping strategy */
+    private static final int YIELD_TRIES = 100;
+
+    private final EventSlot[] slots;
+
+    /** The mask giving the slot index of a sequence */
+    private final int mask;
+
+    /** The shift giving the round of a sequence, i.e. how many times the ring has been filled before it */
+    private final int shift;
+
+    /** The round of the sequence last published in each slot */
+    private final AtomicIntegerArray publishedRounds;
+
+    /** The next sequence to claim by a publisher */
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /** The last known lowest sequence handled by all the workers, may be behind the real one */
+    private volatile long gatingSequence = -1;
+
+    private final Worker[] workers;
+
+    private final WaitStrategy waitStrategy;
+
+    /** The lock and condition the workers block on, with the {@link WaitStrategy#BLOCKING} strategy */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition published = lock.newCondition();
+
+    /** The number of workers blocked on the condition */
+    private final AtomicInteger blockedWorkers = new AtomicInteger();
+
+    /**
+     * Create a {@link RingBufferHandlerExecutor} with blocking workers.
+     *
+     * @param workerThreadCount the worker thread count
+     * @param ringSize the number of slots of the ring, must be a power of two
+     */
+    public RingBufferHandlerExecutor(int workerThreadCount, int ringSize) {
+        this(workerThreadCount, ringSize, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * Create a {@link RingBufferHandlerExecutor}.
+     *
+     * @param workerThreadCount the worker thread count
+     * @param ringSize the number of slots of the ring, must be a power of two
+     * @param waitStrategy the way the workers wait for the next event
+     */
+    public RingBufferHandlerExecutor(int workerThreadCount, int ringSize, WaitStrategy waitStrategy) {
+        if (workerThreadCount < 1) {
+            throw new IllegalArgumentException("workerThreadCount: " + workerThreadCount + " (expected: 1+)");
+        }
+
+        if (ringSize < 1 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("ringSize: " + ringSize + " (expected: a power of two)");
+        }
+
+        LOG.debug("creating RingBufferHandlerExecutor workerThreadCount = {} ringSize = {} waitStrategy = {}",
+                new Object[] { workerThreadCount, ringSize, waitStrategy });
+        this.waitStrategy = waitStrategy;
+        slots = new EventSlot[ringSize];
+        publishedRounds = new AtomicIntegerArray(ringSize);
+        mask = ringSize - 1;
+        shift = Integer.numberOfTrailingZeros(ringSize);
+
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new EventSlot();
+            // no round published yet
+            publishedRounds.set(i, -1);
+        }
+
+        workers = new Worker[workerThreadCount];
+
+        for (int i = 0; i < workerThreadCount; i++) {
+            workers[i] = new Worker(i);
+        }
+
+        for (int i = 0; i < workerThreadCount; i++) {
+            workers[i].start();
+        }
+
+        LOG.debug("workers started");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Event event) {
+        final int worker = (int) (event.getSession().getId() % workers.length);
+        final Thread current = Thread.currentThread();
+        long sequence;
+
+        if ((current instanceof Worker) && ((Worker) current).isWorkerOf(this)) {
+            // a worker must never wait for the workers, as it would wait for itself
+            sequence = tryClaim();
+
+            if (sequence < 0) {
+                // run after the events already published
+                workers[worker].overflow.offer(new OverflowEvent(nextSequence.get(), event));
+                signalWorkers();
+
+                return;
+            }
+        } else {
+            sequence = nextSequence.getAndIncrement();
+            waitForCapacity(sequence);
+        }
+
+        int index = (int) sequence & mask;
+        EventSlot slot = slots[index];
+        event.visit(slot);
+        slot.worker = worker;
+
+        publishedRounds.set(index, (int) (sequence >>> shift));
+        signalWorkers();
+    }
+
+    /**
+     * Wake the blocked workers up, with the {@link WaitStrategy#BLOCKING} strategy
+     */
+    private void signalWorkers() {
+        if (waitStrategy == WaitStrategy.BLOCKING && blockedWorkers.get() > 0) {
+            lock.lock();
+
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stop the worker threads, a worker ends when it waits for the next event. A spinning worker keeps a core busy
+     * until it's stopped.
+     */
+    public void shutdown() {
+        for (Worker worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Wait until all the workers have passed the previous use of the slot of a sequence
+     */
+    private void waitForCapacity(long sequence) {
+        long wrapPoint = sequence - slots.length;
+
+        if (wrapPoint > gatingSequence) {
+            long minimum;
+
+            while (wrapPoint > (minimum = minimumSequence())) {
+                LockSupport.parkNanos(1000L);
+            }
+
+            gatingSequence = minimum;
+        }
+    }
+
+    /**
+     * Claim the next sequence if its slot is free, without waiting
+     * 
+     * @return the claimed sequence, or -1 if the ring is full
+     */
+    private long tryClaim() {
+        for (;;) {
+            long sequence = nextSequence.get();
+            long wrapPoint = sequence - slots.length;
+
+            if (wrapPoint > gatingSequence) {
+                long minimum = minimumSequence();
+
+                if (wrapPoint > minimum) {
+                    return -1;
+                }
+
+                gatingSequence = minimum;
+            }
+
+            if (nextSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * @return the lowest sequence handled by all the workers
+     */
+    private long minimumSequence() {
+        long minimum = Long.MAX_VALUE;
+
+        for (Worker worker : workers) {
+            minimum = Math.min(minimum, worker.sequence.get());
+        }
+
+        return minimum;
+    }
+
+    /** thread in charge of running the events of its sessions, in the ring order */
+    private class Worker extends Thread {
+
+        private final int index;
+
+        /** the last sequence handled by this worker */
+        private final AtomicLong sequence = new AtomicLong(-1);
+
+        /** the events published by the workers while the ring was full */
+        private final Queue<OverflowEvent> overflow = new ConcurrentLinkedQueue<OverflowEvent>();
+
+        public Worker(int index) {
+            super("IoHandlerRingWorker " + index);
+            this.index = index;
+        }
+
+        boolean isWorkerOf(RingBufferHandlerExecutor executor) {
+            return executor == RingBufferHandlerExecutor.this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            long next = 0;
+
+            for (;;) {
+                int slotIndex = (int) next & mask;
+                int round = (int) (next >>> shift);
+
+                runOverflow(next);
+
+                if (publishedRounds.get(slotIndex) != round) {
+                    if (!waitFor(slotIndex, round, next)) {
+                        // interrupted, end this thread
+                        return;
+                    }
+
+                    if (publishedRounds.get(slotIndex) != round) {
+                        // woken up by an overflow event
+                        continue;
+                    }
+                }
+
+                EventSlot slot = slots[slotIndex];
+
+                if (slot.worker == index) {
+                    try {
+                        slot.dispatch(CALLER);
+                    } catch (RuntimeException e) {
+                        LOG.error("unexpected exception while running an event", e);
+                    }
+                }
+
+                sequence.lazySet(next);
+                next++;
+            }
+        }
+
+        /**
+         * Run the events queued while the ring was full, before the slot of a sequence
+         */
+        private void runOverflow(long next) {
+            while (hasOverflow(next)) {
+                try {
+                    overflow.poll().event.visit(CALLER);
+                } catch (RuntimeException e) {
+                    LOG.error("unexpected exception while running an event", e);
+                }
+            }
+        }
+
+        /**
+         * @return <code>true</code> if an overflow event must run before the slot of a sequence
+         */
+        private boolean hasOverflow(long next) {
+            OverflowEvent first = overflow.peek();
+
+            return (first != null) && (first.sequence <= next);
+        }
+
+        /**
+         * Wait for a slot round to be published, or for an overflow event, using the executor wait strategy
+         *
+         * @return <code>false</code> if the thread has been interrupted
+         */
+        private boolean waitFor(int slotIndex, int round, long next) {
+            int counter = 0;
+
+            while (publishedRounds.get(slotIndex) != round && !hasOverflow(next)) {
+                if (Thread.interrupted()) {
+                    return false;
+                }
+
+                switch (waitStrategy) {
+                case BUSY_SPIN:
+                    break;
+                case YIELDING:
+                    if (++counter > SPIN_TRIES) {
+                        Thread.yield();
+                    }
+                    break;
+                case SLEEPING:
+                    if (counter < SPIN_TRIES + YIELD_TRIES) {
+                        if (++counter > SPIN_TRIES) {
+                            Thread.yield();
+                        }
+                    } else {
+                        LockSupport.parkNanos(1000L);
+                    }
+                    break;
+                case BLOCKING:
+                    if (!block(slotIndex, round, next)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected wait strategy : " + waitStrategy);
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Block on the executor condition until a slot round is published, or an overflow event is queued
+         *
+         * @return <code>false</code> if the thread has been interrupted
+         */
+        private boolean block(int slotIndex, int round, long next) {
+            lock.lock();
+
+            // the counter is incremented before checking the slot, so a publisher either sees it or is seen
+            blockedWorkers.incrementAndGet();
+
+            try {
+                while (publishedRounds.get(slotIndex) != round && !hasOverflow(next)) {
+                    published.await();
+                }
+
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                blockedWorkers.decrementAndGet();
+                lock.unlock();
+            }
+        }
+    }
+
+    /** an event published by a worker while the ring was full, to run before the slot of a sequence */
+    private static final class OverflowEvent {
+        private final long sequence;
+
+        private final Event event;
+
+        OverflowEvent(long sequence, Event event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.api.IoSession;
+import org.apache.mina.session.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The serial queue of the {@link Event}s of a session. The queue is submitted to an {@link Executor} when it gets an
+ * event, and at most one task runs the events of the queue at a time, so they are run in order, but not necessarily
+ * on the same thread.<br>
+ * <br>
+ * When the pending events exceed the queue size, the session reads are suspended, and they are resumed once half of
+ * the queue has been run, so the I/O thread is never blocked by a slow session.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+class SessionEventQueue implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionEventQueue.class);
+
+    /** The queue of a session */
+    private static final AttributeKey<SessionEventQueue> SESSION_QUEUE = new AttributeKey<SessionEventQueue>(
+            SessionEventQueue.class, "internal_handlerExecutorQueue");
+
+    private static final HandlerCaller CALLER = new HandlerCaller();
+
+    private final IoSession session;
+
+    /** The executor running the queue */
+    private final Executor executor;
+
+    /** The number of pending events above which the session reads are suspended */
+    private final int queueSize;
+
+    /** The maximum number of events run before the queue is submitted again to the executor */
+    private final int eventsPerRun;
+
+    private final Queue<Event> events = new ConcurrentLinkedQueue<Event>();
+
+    /** the number of events queued and not yet run */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /** <code>true</code> while the queue is submitted to the executor or running */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /** <code>true</code> if the session reads are suspended by this queue, changed with the queue lock held */
+    private volatile boolean saturated;
+
+    private SessionEventQueue(IoSession session, Executor executor, int queueSize, int eventsPerRun) {
+        this.session = session;
+        this.executor = executor;
+        this.queueSize = queueSize;
+        this.eventsPerRun = eventsPerRun;
+    }
+
+    /**
+     * Returns the queue of a session, created on the first event of the session.
+     *
+     * @param session the session
+     * @param executor the executor running the queue
+     * @param queueSize the number of pending events above which the session reads are suspended
+     * @param eventsPerRun the maximum number of events run before giving the thread to the other sessions
+     * @return the queue of the session
+     */
+    static SessionEventQueue of(IoSession session, Executor executor, int queueSize, int eventsPerRun) {
+        SessionEventQueue queue = session.getAttribute(SESSION_QUEUE);
+
+        if (queue == null) {
+            // only the first events of the session get there
+            synchronized (SessionEventQueue.class) {
+                queue = session.getAttribute(SESSION_QUEUE);
+
+                if (queue == null) {
+                    queue = new SessionEventQueue(session, executor, queueSize, eventsPerRun);
+                    session.setAttribute(SESSION_QUEUE, queue);
+                }
+            }
+        }
+
+        return queue;
+    }
+
+    /**
+     * Queue an event, and submit the queue to the executor if it's not already
+     *
+     * @param event the event
+     */
+    void enqueue(Event event) {
+        events.offer(event);
+
+        if (pending.incrementAndGet() > queueSize && !saturated) {
+            // checked again under the lock, the worker may have caught up since
+            synchronized (this) {
+                if (!saturated && pending.get() > queueSize) {
+                    LOG.debug("session {} saturated, suspending reads", session);
+                    saturated = true;
+                    session.suspendRead();
+                }
+            }
+        }
+
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if all the queued events have been run
+     */
+    boolean isDrained() {
+        return pending.get() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        int count = 0;
+
+        for (;;) {
+            Event event = events.poll();
+
+            if (event == null) {
+                scheduled.set(false);
+
+                // an event may have been queued before the flag was cleared
+                if (events.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+
+                continue;
+            }
+
+            LOG.debug("dequeing event {}", event);
+
+            try {
+                event.visit(CALLER);
+            } catch (RuntimeException e) {
+                LOG.error("unexpected exception while running the event " + event, e);
+            }
+
+            if (pending.decrementAndGet() <= queueSize / 2 && saturated) {
+                synchronized (this) {
+                    if (saturated && pending.get() <= queueSize / 2) {
+                        LOG.debug("session {} caught up, resuming reads", session);
+                        saturated = false;
+                        session.resumeRead();
+                    }
+                }
+            }
+
+            if (++count == eventsPerRun) {
+                // give the thread to the other sessions, the queue stays scheduled
+                executor.execute(this);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.api.IoHandler;
+import org.apache.mina.api.IoSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Use this executor if your {@link IoHandler} makes blocking calls, and you don't want to size a pool of threads for
+ * them. The events of a session are run in order, like with {@link OrderedHandlerExecutor}, on a virtual thread
+ * started when the session gets an event, so a blocked handler only holds a virtual thread, not a platform thread.<br>
+ * <br>
+ * Virtual threads need Java 21 or later, see {@link #isSupported()}. They are looked up by reflection, as MINA is
+ * built for older Java versions.<br>
+ * <br>
+ * A virtual thread blocking inside a <code>synchronized</code> block or a native call pins its carrier thread, and
+ * when all the carriers are pinned no other handler can run. For finding these handlers, the executor can report the
+ * events running for longer than a given threshold, with the stack of their thread. Running the JVM with
+ * <code>-Djdk.tracePinnedThreads=short</code> makes the JDK report the pinned threads too.<br>
+ * <br>
+ * Like {@link OrderedWorkStealingHandlerExecutor}, the reads of a session are suspended while it has more pending
+ * events than the session queue size.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public final class VirtualThreadHandlerExecutor implements IoHandlerExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadHandlerExecutor.class);
+
+    /** The virtual thread factory, <code>null</code> if this JVM has no virtual threads */
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = createVirtualThreadFactory();
+
+    /** Start a virtual thread for each task, the virtual threads are not pooled */
+    private static final Executor VIRTUAL_THREAD_PER_TASK = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            VIRTUAL_THREAD_FACTORY.newThread(task).start();
+        }
+    };
+
+    /** The number of pending events above which the reads of a session are suspended */
+    private final int sessionQueueSize;
+
+    /** The duration above which a running event is reported, 0 if they are not */
+    private final long stallThresholdMillis;
+
+    /** The events being run, by thread, when the stalled events are reported */
+    private final Map<Thread, RunningEvent> runningEvents;
+
+    /** The thread reporting the stalled events */
+    private final ScheduledExecutorService stallReporter;
+
+    /** The number of events which have been running for longer than the threshold */
+    private final AtomicLong stalledEventCount = new AtomicLong();
+
+    /**
+     * Create a {@link VirtualThreadHandlerExecutor} with a given queue size, which doesn't report the stalled events.
+     *
+     * @param sessionQueueSize the number of pending events above which the reads of a session are suspended
+     */
+    public VirtualThreadHandlerExecutor(int sessionQueueSize) {
+        this(sessionQueueSize, 0);
+    }
+
+    /**
+     * Create a {@link VirtualThreadHandlerExecutor} with a given queue size, reporting the events running for longer
+     * than a given duration.
+     *
+     * @param sessionQueueSize the number of pending events above which the reads of a session are suspended
+     * @param stallThresholdMillis the duration above which a running event is logged with the stack of its thread, 0
+     *        for not reporting them
+     * @throws UnsupportedOperationException if this JVM has no virtual threads
+     */
+    public VirtualThreadHandlerExecutor(int sessionQueueSize, long stallThresholdMillis) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads need Java 21 or later");
+        }
+
+        if (sessionQueueSize < 1) {
+            throw new IllegalArgumentException("sessionQueueSize must be positive");
+        }
+
+        if (stallThresholdMillis < 0) {
+            throw new IllegalArgumentException("stallThresholdMillis must not be negative");
+        }
+
+        LOG.debug("creating VirtualThreadHandlerExecutor sessionQueueSize = {} stallThresholdMillis = {}",
+                sessionQueueSize, stallThresholdMillis);
+        this.sessionQueueSize = sessionQueueSize;
+        this.stallThresholdMillis = stallThresholdMillis;
+
+        if (stallThresholdMillis > 0) {
+            runningEvents = new ConcurrentHashMap<Thread, RunningEvent>();
+            stallReporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "IoHandlerStallReporter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+            long period = Math.max(1, stallThresholdMillis / 2);
+            stallReporter.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    reportStalledEvents();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+
+            if (System.getProperty("jdk.tracePinnedThreads") == null) {
+                LOG.info("run the JVM with -Djdk.tracePinnedThreads=short for reporting the handlers pinning their "
+                        + "carrier thread");
+            }
+        } else {
+            runningEvents = null;
+            stallReporter = null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if this JVM has virtual threads
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(Event event) {
+        LOG.debug("executing event {}", event);
+        Event queued = runningEvents == null ? event : new TrackedEvent(event);
+
+        // a virtual thread is cheap, a busy session keeps its thread rather than sharing it with the others
+        SessionEventQueue.of(event.getSession(), VIRTUAL_THREAD_PER_TASK, sessionQueueSize, Integer.MAX_VALUE)
+                .enqueue(queued);
+    }
+
+    /**
+     * @return the number of events which have been running for longer than the stall threshold
+     */
+    public long getStalledEventCount() {
+        return stalledEventCount.get();
+    }
+
+    /**
+     * Stop the stalled events report. The virtual threads are not pooled, so there is nothing else to release.
+     */
+    public void shutdown() {
+        if (stallReporter != null) {
+            stallReporter.shutdown();
+        }
+    }
+
+    /**
+     * Log the events which have been running for longer than the threshold, once for each event
+     */
+    private void reportStalledEvents() {
+        long now = System.nanoTime();
+
+        for (RunningEvent running : runningEvents.values()) {
+            long duration = TimeUnit.NANOSECONDS.toMillis(now - running.start);
+
+            if (!running.reported && duration > stallThresholdMillis) {
+                running.reported = true;
+                stalledEventCount.incrementAndGet();
+
+                StringBuilder stack = new StringBuilder();
+
+                for (StackTraceElement element : running.thread.getStackTrace()) {
+                    stack.append("\n\tat ").append(element);
+                }
+
+                LOG.warn("event {} has been running for {} ms on {}{}", new Object[] { running.event, duration,
+                        running.thread, stack });
+            }
+        }
+    }
+
+    /**
+     * @return a factory of virtual threads, <code>null</code> if this JVM has no virtual threads
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "IoHandlerVirtual-",
+                    0L);
+            Method factory = builderClass.getMethod("factory");
+
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception e) {
+            LOG.debug("no virtual threads in this JVM", e);
+            return null;
+        }
+    }
+
+    /** An event being run */
+    private static class RunningEvent {
+        private final Thread thread;
+
+        private final Event event;
+
+        private final long start = System.nanoTime();
+
+        /** set by the reporter thread only */
+        private boolean reported;
+
+        RunningEvent(Thread thread, Event event) {
+            this.thread = thread;
+            this.event = event;
+        }
+    }
+
+    /** An event recording its thread and start time while it's run */
+    private class TrackedEvent implements Event {
+        private final Event event;
+
+        TrackedEvent(Event event) {
+            this.event = event;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public IoSession getSession() {
+            return event.getSession();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void visit(EventVisitor visitor) {
+            Thread thread = Thread.currentThread();
+            runningEvents.put(thread, new RunningEvent(thread, event));
+
+            try {
+                event.visit(visitor);
+            } finally {
+                runningEvents.remove(thread);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return event.toString();
+        }
+    }
+}
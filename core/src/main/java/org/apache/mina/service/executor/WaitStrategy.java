@@ -0,0 +1,41 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+/**
+ * The way the workers of a {@link RingBufferHandlerExecutor} wait for the next event. The strategies trade CPU for
+ * latency : a busy spinning worker sees an event within nanoseconds but burns a core, a blocking worker uses no CPU
+ * while idle but needs to be woken up by the I/O thread.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public enum WaitStrategy {
+    /** Spin on the ring buffer. The lowest latency, each worker uses a full core. */
+    BUSY_SPIN,
+
+    /** Spin for a while, then yield the CPU between two checks. */
+    YIELDING,
+
+    /** Spin, yield, then sleep for a microsecond between two checks. A good compromise when the load varies. */
+    SLEEPING,
+
+    /** Block on a condition signalled by the I/O threads. No CPU used while idle, but the highest latency. */
+    BLOCKING
+}
@@ -22,9 +22,14 @@
  * <p>
  * Classes in charge of decoupling IoHandler event of the low level read/write/accept I/O threads ( {@link org.apache.mina.transport.nio.SelectorLoop} ).
  * <p>
- * Two kind of {@link org.apache.mina.service.executor.IoHandlerExecutor} are available :
+ * Six kind of {@link org.apache.mina.service.executor.IoHandlerExecutor} are available :
  * <ul>
  * <li>in order, which will execute events for one session in order (the same thread of the pool will be picked)
+ * <li>in order on a work-stealing pool, which will execute events for one session in order, one thread at a time, but
+ * on any thread of the pool
+ * <li>in order on virtual threads, for handlers making blocking calls (Java 21 or later)
+ * <li>in order through a preallocated ring buffer, for a low hand off latency at high message rates
+ * <li>adaptive, which runs the events in the I/O thread and only offloads, in order, the sessions with slow handlers
  * <li> out of order, which will execute events for one session with no order consideration (can change of thread for events of the same session)
  * </ul>
  * 
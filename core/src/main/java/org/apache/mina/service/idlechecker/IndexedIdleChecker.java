@@ -25,6 +25,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.apache.mina.api.IdleStatus;
 import org.apache.mina.session.AbstractIoSession;
 import org.apache.mina.session.AttributeKey;
+import org.apache.mina.util.Clock;
+import org.apache.mina.util.SystemClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,7 +76,10 @@ public class IndexedIdleChecker implements IdleChecker {
     private static final AttributeKey<Integer> WRITE_IDLE_INDEX = AttributeKey.createKey(Integer.class,
             "idle.write.index");
 
-    private long lastCheckTimeMs = System.currentTimeMillis();
+    /** The clock giving the time of the checks */
+    private final Clock clock;
+
+    private long lastCheckTimeMs;
 
     @SuppressWarnings("unchecked")
     private final Set<AbstractIoSession>[] readIdleSessionIndex = new Set[MAX_IDLE_TIME_IN_SEC];
@@ -89,6 +94,24 @@ public class IndexedIdleChecker implements IdleChecker {
 
     private volatile boolean running = true;
 
+    /**
+     * Create an idle checker using the system time
+     */
+    public IndexedIdleChecker() {
+        this(SystemClock.INSTANCE);
+    }
+
+    /**
+     * Create an idle checker
+     * 
+     * @param clock the clock giving the time of the checks, which must be the one giving the time of the session
+     *        events
+     */
+    public IndexedIdleChecker(Clock clock) {
+        this.clock = clock;
+        lastCheckTimeMs = clock.currentTimeMillis();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -203,6 +226,24 @@ public class IndexedIdleChecker implements IdleChecker {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionClosed(AbstractIoSession session) {
+        Integer readIndex = session.getAttribute(READ_IDLE_INDEX);
+
+        if (readIndex != null && readIdleSessionIndex[readIndex] != null) {
+            readIdleSessionIndex[readIndex].remove(session);
+        }
+
+        Integer writeIndex = session.getAttribute(WRITE_IDLE_INDEX);
+
+        if (writeIndex != null && writeIdleSessionIndex[writeIndex] != null) {
+            writeIdleSessionIndex[writeIndex].remove(session);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -285,7 +326,7 @@ public class IndexedIdleChecker implements IdleChecker {
             while (running) {
                 try {
                     sleep(GRANULARITY_IN_MS);
-                    processIdleSession(System.currentTimeMillis());
+                    processIdleSession(clock.currentTimeMillis());
                 } catch (InterruptedException e) {
                     break;
                 }
@@ -20,12 +20,14 @@
 package org.apache.mina.session;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.net.ssl.SSLContext;
 
@@ -37,6 +39,8 @@ import org.apache.mina.api.IoServer;
 import org.apache.mina.api.IoService;
 import org.apache.mina.api.IoSession;
 import org.apache.mina.api.IoSessionConfig;
+import org.apache.mina.buffer.BufferAllocator;
+import org.apache.mina.file.FileRegion;
 import org.apache.mina.filterchain.ReadFilterChainController;
 import org.apache.mina.filterchain.WriteFilterChainController;
 import org.apache.mina.service.executor.CloseEvent;
@@ -45,9 +49,11 @@ import org.apache.mina.service.executor.HandshakeStartedEvent;
 import org.apache.mina.service.executor.IdleEvent;
 import org.apache.mina.service.executor.IoHandlerExecutor;
 import org.apache.mina.service.executor.OpenEvent;
+import org.apache.mina.service.executor.ReceiveBatchEvent;
 import org.apache.mina.service.executor.ReceiveEvent;
 import org.apache.mina.service.executor.SecureClosedEvent;
 import org.apache.mina.service.executor.SentEvent;
+import org.apache.mina.service.executor.WritabilityChangedEvent;
 import org.apache.mina.service.idlechecker.IdleChecker;
 import org.apache.mina.transport.nio.SelectorLoop;
 import org.apache.mina.transport.nio.SslHelper;
@@ -78,8 +84,14 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
     /** The service this session is associated with */
     private final IoService service;
 
-    /** attributes map */
-    private final AttributeContainer attributes = new DefaultAttributeContainer();
+    /** An empty container, used for reading the attributes of a session which has no attribute */
+    private static final AttributeContainer NO_ATTRIBUTES = new DefaultAttributeContainer();
+
+    private static final AtomicReferenceFieldUpdater<AbstractIoSession, AttributeContainer> ATTRIBUTES_UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(AbstractIoSession.class, AttributeContainer.class, "attributes");
+
+    /** attributes map, created when the first attribute is set, as most sessions don't have any */
+    private volatile AttributeContainer attributes;
 
     /** the {@link IdleChecker} in charge of detecting idle event for this session */
     protected final IdleChecker idleChecker;
@@ -91,13 +103,28 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
     // Basic statistics
     // ------------------------------------------------------------------------
 
-    /** The number of bytes read since this session has been created */
+    private static final AtomicLongFieldUpdater<AbstractIoSession> READ_BYTES_UPDATER = AtomicLongFieldUpdater
+            .newUpdater(AbstractIoSession.class, "readBytes");
+
+    private static final AtomicLongFieldUpdater<AbstractIoSession> WRITTEN_BYTES_UPDATER = AtomicLongFieldUpdater
+            .newUpdater(AbstractIoSession.class, "writtenBytes");
+
+    private static final AtomicLongFieldUpdater<AbstractIoSession> LAST_READ_TIME_UPDATER = AtomicLongFieldUpdater
+            .newUpdater(AbstractIoSession.class, "lastReadTime");
+
+    private static final AtomicLongFieldUpdater<AbstractIoSession> LAST_WRITE_TIME_UPDATER = AtomicLongFieldUpdater
+            .newUpdater(AbstractIoSession.class, "lastWriteTime");
+
+    /**
+     * The number of bytes read since this session has been created. Only the selector loop updates it, so we publish
+     * the new value with an ordered write instead of a full volatile write
+     */
     private volatile long readBytes;
 
     /** The number of bytes written since this session has been created */
     private volatile long writtenBytes;
 
-    /** Last time something was read for this session */
+    /** Last time something was read for this session, only updated by the selector loop */
     private volatile long lastReadTime;
 
     /** Last time something was written for this session */
@@ -107,17 +134,14 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
     // Session state
     // ------------------------------------------------------------------------
 
-    /** The session's state : one of CREATED, CONNECTED, CLOSING, CLOSED, SECURING, CONNECTED_SECURED */
-    protected volatile SessionState state;
-
-    /** A lock to protect the access to the session's state */
-    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private static final AtomicReferenceFieldUpdater<AbstractIoSession, SessionState> STATE_UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(AbstractIoSession.class, SessionState.class, "state");
 
-    /** A Read lock on the reentrant session's state lock */
-    private final Lock stateReadLock = stateLock.readLock();
-
-    /** A Write lock on the reentrant session's state lock */
-    private final Lock stateWriteLock = stateLock.writeLock();
+    /**
+     * The session's state : one of CREATED, CONNECTED, CLOSING, CLOSED, SECURING, CONNECTED_SECURED. It's read
+     * without any lock, and the transitions are done with a compare and set.
+     */
+    protected volatile SessionState state;
 
     /** Tells if the session is secured or not */
     protected volatile boolean secured;
@@ -145,8 +169,8 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
     public AbstractIoSession(IoService service, IdleChecker idleChecker) {
         // generated a unique id
         id = NEXT_ID.getAndIncrement();
-        creationTime = System.currentTimeMillis();
         this.service = service;
+        creationTime = service.getClock().currentTimeMillis();
         this.chain = service.getFilters();
         this.idleChecker = idleChecker;
         this.config = service.getSessionConfig();
@@ -167,13 +191,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public boolean isClosed() {
-        try {
-            stateReadLock.lock();
-
-            return state == SessionState.CLOSED;
-        } finally {
-            stateReadLock.unlock();
-        }
+        return state == SessionState.CLOSED;
     }
 
     /**
@@ -181,13 +199,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public boolean isClosing() {
-        try {
-            stateReadLock.lock();
-
-            return state == SessionState.CLOSING;
-        } finally {
-            stateReadLock.unlock();
-        }
+        return state == SessionState.CLOSING;
     }
 
     /**
@@ -195,13 +207,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public boolean isConnected() {
-        try {
-            stateReadLock.lock();
-
-            return state == SessionState.CONNECTED;
-        } finally {
-            stateReadLock.unlock();
-        }
+        return state == SessionState.CONNECTED;
     }
 
     /**
@@ -209,13 +215,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public boolean isCreated() {
-        try {
-            stateReadLock.lock();
-
-            return state == SessionState.CREATED;
-        } finally {
-            stateReadLock.unlock();
-        }
+        return state == SessionState.CREATED;
     }
 
     /**
@@ -223,13 +223,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public boolean isSecuring() {
-        try {
-            stateReadLock.lock();
-
-            return state == SessionState.SECURING;
-        } finally {
-            stateReadLock.unlock();
-        }
+        return state == SessionState.SECURING;
     }
 
     /**
@@ -237,13 +231,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public boolean isConnectedSecured() {
-        try {
-            stateReadLock.lock();
-
-            return state == SessionState.SECURED;
-        } finally {
-            stateReadLock.unlock();
-        }
+        return state == SessionState.SECURED;
     }
 
     /**
@@ -251,77 +239,59 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public void changeState(SessionState to) {
-        try {
-            stateWriteLock.lock();
-
-            switch (state) {
-            case CREATED:
-                switch (to) {
-                case CONNECTED:
-                case SECURING:
-                case CLOSING:
-                    state = to;
-                    break;
-
-                default:
-                    throw new IllegalStateException("Cannot transit from " + state + " to " + to);
-                }
+        for (;;) {
+            final SessionState from = state;
 
-                break;
-
-            case CONNECTED:
-                switch (to) {
-                case SECURING:
-                case CLOSING:
-                    state = to;
-                    break;
-
-                default:
-                    throw new IllegalStateException("Cannot transit from " + state + " to " + to);
-                }
+            if (from == SessionState.CLOSED) {
+                throw new IllegalStateException("The session is already closed. cannot switch to " + to);
+            }
 
-                break;
+            if (!isValidTransition(from, to)) {
+                throw new IllegalStateException("Cannot transit from " + from + " to " + to);
+            }
 
-            case SECURING:
-                switch (to) {
-                case SECURED:
-                case CLOSING:
-                    state = to;
-                    break;
+            if (STATE_UPDATER.compareAndSet(this, from, to)) {
+                return;
+            }
 
-                default:
-                    throw new IllegalStateException("Cannot transit from " + state + " to " + to);
-                }
+            // the state has been changed by another thread in the meantime : check the transition again
+        }
+    }
 
-                break;
+    /**
+     * Change the session state if it's the expected one.
+     * 
+     * @param expected the state the session must be in
+     * @param to the new state
+     * @return <code>true</code> if the state has been changed, <code>false</code> if the session was not in the
+     *         expected state
+     */
+    protected boolean compareAndSetState(SessionState expected, SessionState to) {
+        return STATE_UPDATER.compareAndSet(this, expected, to);
+    }
 
-            case SECURED:
-                switch (to) {
-                case CONNECTED:
-                case SECURING:
-                case CLOSING:
-                    state = to;
-                    break;
+    /**
+     * Tells if the session state machine allows a transition
+     */
+    private static boolean isValidTransition(SessionState from, SessionState to) {
+        switch (from) {
+        case CREATED:
+            return (to == SessionState.CONNECTED) || (to == SessionState.SECURING) || (to == SessionState.CLOSING);
 
-                default:
-                    throw new IllegalStateException("Cannot transit from " + state + " to " + to);
-                }
+        case CONNECTED:
+            return (to == SessionState.SECURING) || (to == SessionState.CLOSING);
 
-                break;
-            case CLOSING:
-                if (to != SessionState.CLOSED) {
-                    throw new IllegalStateException("Cannot transit from " + state + " to " + to);
-                }
+        case SECURING:
+            return (to == SessionState.SECURED) || (to == SessionState.CLOSING);
 
-                state = to;
+        case SECURED:
+            return (to == SessionState.CONNECTED) || (to == SessionState.SECURING) || (to == SessionState.CLOSING);
 
-                break;
+        case CLOSING:
+            return to == SessionState.CLOSED;
 
-            case CLOSED:
-                throw new IllegalStateException("The session is already closed. cannot switch to " + to);
-            }
-        } finally {
-            stateWriteLock.unlock();
+        default:
+            return false;
         }
     }
 
@@ -333,7 +303,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public boolean isSecured() {
-        SslHelper helper = attributes.getAttribute(SSL_HELPER);
+        SslHelper helper = readAttributes().getAttribute(SSL_HELPER);
         return helper != null && helper.isActive();
     }
 
@@ -344,7 +314,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
     public void initSecure(SSLContext sslContext) {
         SslHelper sslHelper = new SslHelper(this, sslContext);
         sslHelper.init();
-        attributes.setAttribute(SSL_HELPER, sslHelper);
+        writeAttributes().setAttribute(SSL_HELPER, sslHelper);
     }
 
     /**
@@ -355,6 +325,13 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
         return id;
     }
 
+    /**
+     * @return the current time given by the service clock, in milliseconds
+     */
+    protected long currentTimeMillis() {
+        return service.getClock().currentTimeMillis();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -377,7 +354,20 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      * @param bytesCount number of extra bytes written
      */
     public void incrementWrittenBytes(int bytesCount) {
-        writtenBytes += bytesCount;
+        // a datagram session can be written by many threads : we can't use an ordered write
+        WRITTEN_BYTES_UPDATER.addAndGet(this, bytesCount);
+    }
+
+    /**
+     * To be called by the internal plumber when some bytes are written on the socket, with the time they have been
+     * written
+     * 
+     * @param bytesCount number of extra bytes written
+     * @param now the current time, in milliseconds
+     */
+    public void incrementWrittenBytes(int bytesCount, long now) {
+        incrementWrittenBytes(bytesCount);
+        LAST_WRITE_TIME_UPDATER.lazySet(this, now);
     }
 
     /**
@@ -428,7 +418,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public final <T> T getAttribute(AttributeKey<T> key, T defaultValue) {
-        return attributes.getAttribute(key, defaultValue);
+        return readAttributes().getAttribute(key, defaultValue);
     }
 
     /**
@@ -439,7 +429,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public final <T> T getAttribute(AttributeKey<T> key) {
-        return attributes.getAttribute(key);
+        return readAttributes().getAttribute(key);
     }
 
     /**
@@ -457,7 +447,12 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public final <T> T setAttribute(AttributeKey<? extends T> key, T value) {
-        return attributes.setAttribute(key, value);
+        if (value == null) {
+            // a removal : no need for creating the container
+            return readAttributes().setAttribute(key, value);
+        }
+
+        return writeAttributes().setAttribute(key, value);
     };
 
     /**
@@ -467,7 +462,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public Set<AttributeKey<?>> getAttributeKeys() {
-        return attributes.getAttributeKeys();
+        return readAttributes().getAttributeKeys();
     }
 
     /**
@@ -477,7 +472,30 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public <T> T removeAttribute(AttributeKey<T> key) {
-        return attributes.removeAttribute(key);
+        return readAttributes().removeAttribute(key);
+    }
+
+    /**
+     * @return the session attributes, or an empty container if no attribute has been set yet
+     */
+    private AttributeContainer readAttributes() {
+        AttributeContainer container = attributes;
+
+        return container == null ? NO_ATTRIBUTES : container;
+    }
+
+    /**
+     * @return the session attributes, created if needed
+     */
+    private AttributeContainer writeAttributes() {
+        AttributeContainer container = attributes;
+
+        if (container == null) {
+            ATTRIBUTES_UPDATER.compareAndSet(this, null, new DefaultAttributeContainer());
+            container = attributes;
+        }
+
+        return container;
     }
 
     // ----------------------------------------------------
@@ -489,7 +507,34 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      */
     @Override
     public void write(Object message) {
-        doWriteWithFuture(message, null);
+        doWriteWithFuture(message, null, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeWithoutFlush(Object message) {
+        doWriteWithFuture(message, null, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * This implementation does nothing, the messages being written as soon as they are enqueued.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * This implementation always returns <code>true</code>, the messages being written as soon as they are enqueued.
+     */
+    @Override
+    public boolean isWritable() {
+        return true;
     }
 
     /**
@@ -498,12 +543,12 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
     @Override
     public IoFuture<Void> writeWithFuture(Object message) {
         IoFuture<Void> future = new DefaultWriteFuture();
-        doWriteWithFuture(message, future);
+        doWriteWithFuture(message, future, true);
 
         return future;
     }
 
-    private void doWriteWithFuture(Object message, IoFuture<Void> future) {
+    private void doWriteWithFuture(Object message, IoFuture<Void> future, boolean flush) {
         if (IS_DEBUG) {
             LOG.debug("writing message {} to session {}", message, this);
         }
@@ -514,6 +559,12 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
         }
 
         WriteRequest writeRequest = new DefaultWriteRequest(message);
+        writeRequest.setFlush(flush);
+
+        if (message instanceof FileRegion) {
+            // The region can be transferred by the selector loop before the chain returns
+            writeRequest.setFuture(future);
+        }
 
         // process the queue
         processMessageWriting(writeRequest, future);
@@ -523,8 +574,11 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
     // Event processing using the filter chain
     // ------------------------------------------------------------------------
 
-    /** send a caught exception to the {@link IoHandler} (if any) */
-    protected void processException(Exception t) {
+    /**
+     * send a caught exception to the {@link IoHandler} (if any). To be called by the session {@link SelectorLoop}, or
+     * by the filters processing the received messages in other threads, see {@link #getReadExecutor()}.
+     */
+    public void processException(Exception t) {
         if (IS_DEBUG) {
             LOG.debug("caught session exception ", t);
         }
@@ -596,6 +650,11 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
         } catch (RuntimeException e) {
             LOG.error("Exception while closing the session : ", e);
         }
+
+        if (idleChecker != null) {
+            idleChecker.sessionClosed(this);
+        }
+
         service.getManagedSessions().remove(id);
     }
 
@@ -644,15 +703,26 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
      * @param message the received message
      */
     public void processMessageReceived(ByteBuffer message) {
+        processMessageReceived(message, currentTimeMillis());
+    }
+
+    /**
+     * process session message received event using the filter chain, with the time the message has been read. To be
+     * called by the session {@link SelectorLoop}, which can share the same timestamp with the idle checker.
+     * 
+     * @param message the received message
+     * @param now the current time, in milliseconds
+     */
+    protected void processMessageReceived(ByteBuffer message, long now) {
         if (IS_DEBUG) {
             LOG.debug("processing message '{}' received event for session {}", message, this);
         }
 
         tl.set(message);
         try {
-            // save basic statistics
-            readBytes += message.remaining();
-            lastReadTime = System.currentTimeMillis();
+            // save basic statistics : we are the only writer, an ordered write is enough
+            READ_BYTES_UPDATER.lazySet(this, readBytes + message.remaining());
+            LAST_READ_TIME_UPDATER.lazySet(this, now);
 
             if (chain.length < 1) {
                 if (IS_DEBUG) {
@@ -666,19 +736,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
 
                     if (executor != null) {
                         // asynchronous event
-                        // copy the bytebuffer
-                        if (IS_DEBUG) {
-                            LOG.debug("copying bytebuffer before pushing to the executor");
-                        }
-
-                        ByteBuffer original = message;
-                        ByteBuffer clone = ByteBuffer.allocate(original.capacity());
-                        // copy from the beginning
-                        original.rewind();
-                        clone.put(original);
-                        original.rewind();
-                        clone.flip();
-                        executor.execute(new ReceiveEvent(this, clone));
+                        executor.execute(copyReceivedBuffer(message));
                     } else {
                         // synchronous call (in the I/O loop)
                         handler.messageReceived(this, message);
@@ -696,6 +754,76 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
 
     }
 
+    /**
+     * The selector loop reuses its read buffer, so we give a copy of the received bytes to the
+     * {@link IoHandlerExecutor}. Only the remaining bytes are copied, in a buffer owned by the handler, or taken from
+     * the session buffer allocator and released once the handler is done with it.
+     * 
+     * @param message the selector loop read buffer
+     * @return the event to push to the executor
+     */
+    private ReceiveEvent copyReceivedBuffer(ByteBuffer message) {
+        if (IS_DEBUG) {
+            LOG.debug("copying bytebuffer before pushing to the executor");
+        }
+
+        BufferAllocator allocator = getConfig().isPooledReceivedBuffers() ? getConfig().getBufferAllocator() : null;
+
+        return new ReceiveEvent(this, copyBuffer(message, allocator), allocator);
+    }
+
+    /**
+     * Copy the remaining bytes of a buffer, without moving its position
+     * 
+     * @param message the buffer to copy
+     * @param allocator the allocator of the copy, <code>null</code> for a heap buffer owned by the handler
+     * @return the copy, ready to be read
+     */
+    private static ByteBuffer copyBuffer(ByteBuffer message, BufferAllocator allocator) {
+        int position = message.position();
+        ByteBuffer copy = allocator != null ? allocator.allocate(message.remaining()) : ByteBuffer.allocate(message
+                .remaining());
+
+        copy.put(message);
+        copy.flip();
+        message.position(position);
+
+        return copy;
+    }
+
+    /**
+     * The selector loop reuses its read buffer, so a batch pushed to the {@link IoHandlerExecutor} gets a copy of it.
+     * The copies are heap buffers owned by the handler, as the pooled buffers are only released for a single message.
+     * 
+     * @param messages the batch
+     * @return the batch, or a new list holding a copy of the read buffer in place of it
+     */
+    private static List<?> copyReceivedBuffers(List<?> messages) {
+        final ByteBuffer readBuffer = tl.get();
+
+        if (readBuffer == null) {
+            return messages;
+        }
+
+        List<Object> copy = null;
+
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) == readBuffer) {
+                if (copy == null) {
+                    if (IS_DEBUG) {
+                        LOG.debug("copying bytebuffer before pushing the batch to the executor");
+                    }
+
+                    copy = new ArrayList<Object>(messages);
+                }
+
+                copy.set(i, copyBuffer(readBuffer, null));
+            }
+        }
+
+        return copy == null ? messages : copy;
+    }
+
     /**
      * process session message writing event using the filter chain. To be called by the session {@link SelectorLoop} .
      * 
@@ -724,6 +852,10 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
                 writeRequest.setFuture(future);
             }
         } catch (RuntimeException e) {
+            if ((future instanceof DefaultWriteFuture) && !future.isDone()) {
+                ((DefaultWriteFuture) future).error(e);
+            }
+
             processException(e);
         }
 
@@ -852,6 +984,40 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
         }
     }
 
+    /**
+     * process session writability changed event using the filter chain. To be called by the session
+     * {@link SelectorLoop}.
+     * 
+     * @param writable <code>true</code> if the session is now writable
+     */
+    public void processWritabilityChanged(boolean writable) {
+        if (IS_DEBUG) {
+            LOG.debug("processing writability changed to {} event for session {}", writable, this);
+        }
+
+        try {
+            for (IoFilter filter : chain) {
+                filter.writabilityChanged(this, writable);
+            }
+
+            IoHandler handler = getService().getIoHandler();
+
+            if (handler != null) {
+                IoHandlerExecutor executor = getService().getIoHandlerExecutor();
+
+                if (executor != null) {
+                    // asynchronous event
+                    executor.execute(new WritabilityChangedEvent(this, writable));
+                } else {
+                    // synchronous call (in the I/O loop)
+                    handler.writabilityChanged(this, writable);
+                }
+            }
+        } catch (RuntimeException e) {
+            processException(e);
+        }
+    }
+
     /**
      * process session message received event using the filter chain. To be called by the session {@link SelectorLoop} .
      * 
@@ -906,19 +1072,7 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
                 if (executor != null) {
                     // asynchronous event
                     if (message == tl.get()) {
-                        // copy the bytebuffer
-                        if (IS_DEBUG) {
-                            LOG.debug("copying bytebuffer before pushing to the executor");
-                        }
-
-                        ByteBuffer original = (ByteBuffer) message;
-                        ByteBuffer clone = ByteBuffer.allocate(original.capacity());
-                        // copy from the beginning
-                        original.rewind();
-                        clone.put(original);
-                        original.rewind();
-                        clone.flip();
-                        executor.execute(new ReceiveEvent(this, clone));
+                        executor.execute(copyReceivedBuffer((ByteBuffer) message));
                     } else {
                         executor.execute(new ReceiveEvent(this, message));
                     }
@@ -934,6 +1088,82 @@ public abstract class AbstractIoSession implements IoSession, ReadFilterChainCon
         readChainPosition--;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void callReadNextFilterBatch(List<?> messages) {
+        readChainPosition++;
+
+        if (readChainPosition >= chain.length) {
+            // end of chain processing
+            IoHandler handler = getService().getIoHandler();
+
+            if (handler != null) {
+                IoHandlerExecutor executor = getService().getIoHandlerExecutor();
+
+                if (executor != null) {
+                    // asynchronous event, a single hand off for the whole batch
+                    executor.execute(new ReceiveBatchEvent(this, copyReceivedBuffers(messages)));
+                } else {
+                    // synchronous call (in the I/O loop)
+                    handler.messagesReceived(this, messages);
+                }
+            }
+        } else {
+            chain[readChainPosition].messagesReceived(this, messages, this);
+        }
+
+        readChainPosition--;
+    }
+
+    /**
+     * Gives the executor running tasks in the thread processing the read events of this session. The filters handing
+     * the received messages off to other threads use it for pushing them back in the chain, see
+     * {@link #resumeReadChain(IoFilter, Object)}.
+     * 
+     * @return the read thread executor, or <code>null</code> if the session reads are not processed by a thread of
+     *         its own
+     */
+    public Executor getReadExecutor() {
+        return null;
+    }
+
+    /**
+     * Push a message to the filter following the given one in the read chain, as if this filter had called
+     * {@link #callReadNextFilter(Object)}. To be called in the session read thread, by the filters processing the
+     * received messages on other threads. The exceptions raised by the chain are given to the {@link IoHandler}.
+     * 
+     * @param filter the filter of the session chain pushing the message
+     * @param message the message to push to the next filter
+     */
+    public void resumeReadChain(IoFilter filter, Object message) {
+        int position = -1;
+
+        for (int i = 0; i < chain.length; i++) {
+            if (chain[i] == filter) {
+                position = i;
+                break;
+            }
+        }
+
+        if (position < 0) {
+            throw new IllegalArgumentException("the filter " + filter + " is not in the chain of session " + this);
+        }
+
+        // the read thread may be in the middle of the chain, when a filter runs the task itself
+        int savedPosition = readChainPosition;
+        readChainPosition = position;
+
+        try {
+            callReadNextFilter(message);
+        } catch (RuntimeException e) {
+            processException(e);
+        } finally {
+            readChainPosition = savedPosition;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -21,6 +21,9 @@ package org.apache.mina.session;
 
 import static org.apache.mina.util.Assert.assertNotNull;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.mina.api.IoSession;
 
 /**
@@ -28,7 +31,13 @@ import org.apache.mina.api.IoSession;
  * consists of the Type of the referenced attribute value and a name.<br>
  * <br>
  * Two {@link AttributeKey}'s are equal if the have the same attribute-type and
- * attribute-name.
+ * attribute-name.<br>
+ * <br>
+ * The first {@value #MAX_INDEXED_KEYS} distinct keys are given a dense index
+ * when they are created, which is the position of their value in the sessions
+ * attribute arrays. The keys created once all the indexes are given, typically
+ * the keys built dynamically, have no index : their values are stored in a map
+ * of the session, and they are not retained once removed from it.
  * 
  * @param <T> Type of the attribute-value this key is referring to
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
@@ -43,6 +52,21 @@ public final class AttributeKey<T> {
     /** the cached hash code of this instance */
     private final int hashCode;
 
+    /** the index of the key value in the attribute containers, or {@link #NO_INDEX} */
+    private final int index;
+
+    /** the maximal number of indexed keys, the keys created afterward are not indexed */
+    static final int MAX_INDEXED_KEYS = 64;
+
+    /** the index of the keys stored in the attribute maps */
+    static final int NO_INDEX = -1;
+
+    /** the indexes given to the keys, the equal keys share the same index */
+    private static final Map<AttributeKey<?>, Integer> INDEXES = new HashMap<AttributeKey<?>, Integer>();
+
+    /** the first key created for each index */
+    private static final AttributeKey<?>[] keysByIndex = new AttributeKey<?>[MAX_INDEXED_KEYS];
+
     /**
      * Creates a new {@link AttributeKey} with the given parameters. A
      * {@link IllegalArgumentException} will be thrown if any parameter is
@@ -58,10 +82,27 @@ public final class AttributeKey<T> {
      * @see #createKey(Class, String)
      */
     public AttributeKey(Class<T> attributeType, String attributeName) {
+        this(attributeType, attributeName, true);
+    }
+
+    /**
+     * Creates a new {@link AttributeKey}, which reuses the index of an equal
+     * key, and which is given a new one only if asked for.
+     * 
+     * @param attributeType
+     *            type of the referenced attribute-value, must not be
+     *            <code>null</code>
+     * @param attributeName
+     *            name of this key, must not be <code>null</code>
+     * @param indexed
+     *            <code>true</code> if a new index can be given to this key
+     */
+    AttributeKey(Class<T> attributeType, String attributeName, boolean indexed) {
         this.attributeType = assertNotNull(attributeType, "attributeType");
         this.attributeName = assertNotNull(attributeName, "attributeName");
 
         this.hashCode = createHashCode();
+        this.index = indexOf(this, indexed);
     }
 
     /**
@@ -96,6 +137,56 @@ public final class AttributeKey<T> {
         return result;
     }
 
+    /**
+     * Gives the index of a key, or a new one if no equal key has been created
+     * before and if some indexes are left
+     * 
+     * @param key
+     *            the key
+     * @param indexed
+     *            <code>true</code> if a new index can be given to the key
+     * @return the key index, or {@link #NO_INDEX}
+     */
+    private static synchronized int indexOf(AttributeKey<?> key, boolean indexed) {
+        Integer index = INDEXES.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        if (!indexed || INDEXES.size() == MAX_INDEXED_KEYS) {
+            return NO_INDEX;
+        }
+
+        index = INDEXES.size();
+        INDEXES.put(key, index);
+        keysByIndex[index] = key;
+
+        return index;
+    }
+
+    /**
+     * Returns the key created for an index
+     * 
+     * @param index
+     *            the index of the key
+     * @return the first key created with this index
+     */
+    static synchronized AttributeKey<?> forIndex(int index) {
+        return keysByIndex[index];
+    }
+
+    /**
+     * Returns the index of this key, which is the position of its value in
+     * the attribute containers.
+     * 
+     * @return the index of this key, shared with the equal keys, or
+     *         {@link #NO_INDEX} if the value is stored in the attribute maps
+     */
+    int getIndex() {
+        return index;
+    }
+
     /**
      * Returns the name of this key.
      * 
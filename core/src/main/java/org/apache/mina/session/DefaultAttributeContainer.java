@@ -23,27 +23,36 @@ import static java.util.Collections.unmodifiableSet;
 import static org.apache.mina.util.Assert.assertNotNull;
 
 import java.util.Collections;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * An {@link AttributeContainer} provides type-safe access to attribute values, using {@link AttributeKey}' s which as
  * reference-key to an attribute value. <br>
  * <br>
- * This class is Thread-Safe !
+ * The values are stored in an array, at the index of their key (see {@link AttributeKey#getIndex()}), so reading an
+ * attribute is an array load. The array is replaced by a larger copy when a key with a higher index is set. The values
+ * of the keys without index are stored in a map, created when the first of them is set.<br>
+ * <br>
+ * This class is Thread-Safe ! The reads are lock free, the writes are serialized, for not losing a value while the
+ * array is copied.
  * 
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
 final class DefaultAttributeContainer implements AttributeContainer {
-    /**
-     * Contains all attributes
-     * <ul>
-     * <li>Key: the typesafe attribute key
-     * <li>Value: the attribute value
-     * </ul>
-     */
-    private final Map<AttributeKey<?>, Object> attributes = new ConcurrentHashMap<AttributeKey<?>, Object>();
+    /** The values of a container without any attribute */
+    private static final AtomicReferenceArray<Object> NO_VALUES = new AtomicReferenceArray<Object>(0);
+
+    /** The minimal size of the values array */
+    private static final int MIN_CAPACITY = 8;
+
+    /** The attribute values, by key index */
+    private volatile AtomicReferenceArray<Object> values = NO_VALUES;
+
+    /** The attribute values of the keys without index, created when the first of them is set */
+    private volatile ConcurrentHashMap<AttributeKey<?>, Object> mappedValues;
 
     /**
      * Returns the value of the user-defined attribute for the given <code>key</code>.
@@ -58,7 +67,7 @@ final class DefaultAttributeContainer implements AttributeContainer {
     public <T> T getAttribute(AttributeKey<T> key) {
         assertNotNull(key, "key");
 
-        T value = (T) attributes.get(key);
+        T value = (T) get(key);
 
         return value;
     }
@@ -76,7 +85,7 @@ final class DefaultAttributeContainer implements AttributeContainer {
     public <T> T getAttribute(AttributeKey<T> key, T defaultValue) {
         assertNotNull(key, "key");
 
-        T value = (T) attributes.get(key);
+        T value = (T) get(key);
 
         if (value != null) {
             return value;
@@ -110,7 +119,66 @@ final class DefaultAttributeContainer implements AttributeContainer {
             return removeAttribute(key);
         }
 
-        return (T) attributes.put(key, value);
+        int index = key.getIndex();
+
+        synchronized (this) {
+            if (index == AttributeKey.NO_INDEX) {
+                ConcurrentHashMap<AttributeKey<?>, Object> map = mappedValues;
+
+                if (map == null) {
+                    map = new ConcurrentHashMap<AttributeKey<?>, Object>();
+                    mappedValues = map;
+                }
+
+                return (T) map.put(key, value);
+            }
+
+            AtomicReferenceArray<Object> array = values;
+
+            if (index >= array.length()) {
+                array = grow(array, index);
+            }
+
+            return (T) array.getAndSet(index, value);
+        }
+    }
+
+    /**
+     * @return the value stored for a given key, <code>null</code> if there is none
+     */
+    private Object get(AttributeKey<?> key) {
+        int index = key.getIndex();
+
+        if (index == AttributeKey.NO_INDEX) {
+            ConcurrentHashMap<AttributeKey<?>, Object> map = mappedValues;
+
+            return map == null ? null : map.get(key);
+        }
+
+        AtomicReferenceArray<Object> array = values;
+
+        return index < array.length() ? array.get(index) : null;
+    }
+
+    /**
+     * Replace the values array by a copy large enough for storing a given index. To be called with the container lock
+     * held.
+     * 
+     * @param array the current values
+     * @param index the index to store
+     * @return the new values
+     */
+    private AtomicReferenceArray<Object> grow(AtomicReferenceArray<Object> array, int index) {
+        int capacity = Math.max(Math.max(index + 1, array.length() * 2), MIN_CAPACITY);
+        AtomicReferenceArray<Object> newArray = new AtomicReferenceArray<Object>(capacity);
+
+        for (int i = 0; i < array.length(); i++) {
+            newArray.set(i, array.get(i));
+        }
+
+        values = newArray;
+
+        return newArray;
     }
 
     /**
@@ -140,12 +208,27 @@ final class DefaultAttributeContainer implements AttributeContainer {
      * Returns an unmodifiable {@link Set} of all Keys of this container. If this container contains no key's an empty
      * {@link Set} will be returned.
      * 
-     * @return all Keys, never <code>null</code>
+     * @return a snapshot of all Keys, never <code>null</code>
      * @see Collections#unmodifiableSet(Set)
      */
     @Override
     public Set<AttributeKey<?>> getAttributeKeys() {
-        return unmodifiableSet(attributes.keySet());
+        AtomicReferenceArray<Object> array = values;
+        Set<AttributeKey<?>> keys = new HashSet<AttributeKey<?>>();
+
+        for (int i = 0; i < array.length(); i++) {
+            if (array.get(i) != null) {
+                keys.add(AttributeKey.forIndex(i));
+            }
+        }
+
+        ConcurrentHashMap<AttributeKey<?>, Object> map = mappedValues;
+
+        if (map != null) {
+            keys.addAll(map.keySet());
+        }
+
+        return unmodifiableSet(keys);
     }
 
     /**
@@ -162,6 +245,18 @@ final class DefaultAttributeContainer implements AttributeContainer {
     @SuppressWarnings("unchecked")
     public <T> T removeAttribute(AttributeKey<T> key) {
         assertNotNull(key, "key");
-        return (T) attributes.remove(key);
+        int index = key.getIndex();
+
+        if (index == AttributeKey.NO_INDEX) {
+            ConcurrentHashMap<AttributeKey<?>, Object> map = mappedValues;
+
+            return map == null ? null : (T) map.remove(key);
+        }
+
+        synchronized (this) {
+            AtomicReferenceArray<Object> array = values;
+
+            return index < array.length() ? (T) array.getAndSet(index, null) : null;
+        }
     }
 }
\ No newline at end of file
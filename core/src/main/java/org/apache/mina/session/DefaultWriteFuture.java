@@ -41,4 +41,13 @@ public class DefaultWriteFuture extends AbstractIoFuture<Void> {
         setResult(null);
     }
 
+    /**
+     * complete this future with the exception which prevented the write
+     * 
+     * @param e the write failure
+     */
+    public void error(Exception e) {
+        setException(e);
+    }
+
 }
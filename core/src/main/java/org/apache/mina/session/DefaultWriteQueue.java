@@ -19,11 +19,20 @@
  */
 package org.apache.mina.session;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.apache.mina.file.FileRegion;
 
 /**
  * The default implementation of the WriteRequest queue for storing writes to
- * process in the {@link org.apache.mina.api.IoSession}.
+ * process in the {@link org.apache.mina.api.IoSession}. It keeps track of the
+ * number of bytes waiting for being written, for the write queue watermarks.
+ * <br>
+ * An empty queue can be released by its session, see {@link #release()}. The
+ * requests offered to a released queue are refused, and must be offered to the
+ * queue replacing it.
  *
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
  */
@@ -31,4 +40,107 @@ public class DefaultWriteQueue extends ConcurrentLinkedQueue<WriteRequest> {
 
     private static final long serialVersionUID = 1L;
 
+    private static final AtomicLongFieldUpdater<DefaultWriteQueue> PENDING_BYTES_UPDATER = AtomicLongFieldUpdater
+            .newUpdater(DefaultWriteQueue.class, "pendingBytes");
+
+    /** The number of queued bytes not yet written */
+    private volatile long pendingBytes;
+
+    /** The queue is in use */
+    private static final int ACTIVE = 0;
+
+    /** The queue is being released, as soon as we know if it's empty */
+    private static final int RELEASING = 1;
+
+    /** The queue has been released, and must not be used anymore */
+    private static final int RELEASED = 2;
+
+    /** The release state, only modified by the thread writing the queue */
+    private volatile int state = ACTIVE;
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @return <code>false</code> if the queue has been released, the request is then not queued
+     */
+    @Override
+    public boolean offer(WriteRequest writeRequest) {
+        super.offer(writeRequest);
+        final long size = sizeOf(writeRequest);
+        PENDING_BYTES_UPDATER.addAndGet(this, size);
+
+        // checked after the request is queued, while release() checks the queue is empty after changing the
+        // state : at least one of us sees the other
+        int current;
+
+        while ((current = state) == RELEASING) {
+            // the release is decided in a few instructions
+            Thread.yield();
+        }
+
+        if (current == RELEASED) {
+            // nobody reads a released queue anymore
+            remove(writeRequest);
+            PENDING_BYTES_UPDATER.addAndGet(this, -size);
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Release the queue if it's empty. The requests offered to a released queue are refused. Must be called by the
+     * thread writing the queue.
+     * 
+     * @return <code>true</code> if the queue has been released, and must be dropped by its owner
+     */
+    public boolean release() {
+        state = RELEASING;
+
+        if (isEmpty()) {
+            state = RELEASED;
+
+            return true;
+        }
+
+        // a request has been queued meanwhile, we keep the queue
+        state = ACTIVE;
+
+        return false;
+    }
+
+    /**
+     * Tells the queue that some of the queued bytes have been written.
+     * 
+     * @param bytes the number of written bytes
+     * @return the number of queued bytes still to be written
+     */
+    public long bytesWritten(long bytes) {
+        return PENDING_BYTES_UPDATER.addAndGet(this, -bytes);
+    }
+
+    /**
+     * @return the number of queued bytes not yet written
+     */
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * The number of bytes to write for a request
+     */
+    private static long sizeOf(WriteRequest writeRequest) {
+        Object message = writeRequest.getMessage();
+
+        if (message instanceof ByteBuffer) {
+            return ((ByteBuffer) message).remaining();
+        }
+
+        if (message instanceof FileRegion) {
+            return ((FileRegion) message).getRemainingBytes();
+        }
+
+        return 0;
+    }
 }
@@ -22,6 +22,7 @@ package org.apache.mina.session;
 import java.nio.ByteBuffer;
 
 import org.apache.mina.api.IoFuture;
+import org.apache.mina.buffer.BufferAllocator;
 import org.apache.mina.util.ByteBufferDumper;
 
 /**
@@ -46,6 +47,12 @@ public class DefaultWriteRequest implements WriteRequest {
     private boolean secureInternal = false;
 
     private boolean confirmRequested = true;
+
+    /** Tells if the message must be sent as soon as possible */
+    private boolean flush = true;
+
+    /** The allocator the message buffer is released to once written, if it belongs to the transport */
+    private BufferAllocator allocator;
     
     /**
      * Creates a new instance of a WriteRequest, storing the message as it was
@@ -179,4 +186,24 @@ public class DefaultWriteRequest implements WriteRequest {
     public boolean isConfirmRequested() {
         return confirmRequested;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isFlush() {
+        return flush;
+    }
+
+    @Override
+    public void setFlush(boolean flush) {
+        this.flush = flush;
+    }
+
+    @Override
+    public BufferAllocator getAllocator() {
+        return allocator;
+    }
+
+    @Override
+    public void setAllocator(BufferAllocator allocator) {
+        this.allocator = allocator;
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.mina.session;
 
 import org.apache.mina.api.IoFuture;
+import org.apache.mina.buffer.BufferAllocator;
 
 /**
  * The write request created by the {@link org.apache.mina.api.IoSession#write} method, 
@@ -91,4 +92,35 @@ public interface WriteRequest {
      * @return the send confirm flag
      */
     boolean isConfirmRequested();
+
+    /**
+     * Tells if the message must be sent as soon as possible, or if it can wait in the session write queue until the
+     * session is flushed.
+     * 
+     * @see org.apache.mina.api.IoSession#writeWithoutFlush(Object)
+     * @return <code>true</code> if the message must be sent as soon as possible
+     */
+    boolean isFlush();
+
+    /**
+     * Set the flag that tells if the message must be sent as soon as possible
+     * 
+     * @param flush <code>false</code> if the message can wait for the session to be flushed
+     */
+    void setFlush(boolean flush);
+
+    /**
+     * Get the allocator the message buffer has been allocated by, if the buffer belongs to the transport. The buffer
+     * is released to this allocator once it has been written.
+     * 
+     * @return the buffer allocator, <code>null</code> if the message does not belong to the transport
+     */
+    BufferAllocator getAllocator();
+
+    /**
+     * Set the allocator the message buffer must be released to once written.
+     * 
+     * @param allocator the allocator which created the message buffer
+     */
+    void setAllocator(BufferAllocator allocator);
 }
\ No newline at end of file
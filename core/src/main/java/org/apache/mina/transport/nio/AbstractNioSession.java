@@ -19,19 +19,32 @@
  */
 package org.apache.mina.transport.nio;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.Queue;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import javax.net.ssl.SSLException;
 
+import org.apache.mina.api.IdleStatus;
 import org.apache.mina.api.IoClient;
 import org.apache.mina.api.IoFuture;
 import org.apache.mina.api.IoService;
 import org.apache.mina.api.IoSession;
+import org.apache.mina.buffer.BufferAllocator;
+import org.apache.mina.buffer.PooledReceivedBuffer;
+import org.apache.mina.file.FileRegion;
 import org.apache.mina.service.idlechecker.IdleChecker;
 import org.apache.mina.session.AbstractIoSession;
 import org.apache.mina.session.DefaultWriteFuture;
@@ -54,14 +67,74 @@ public abstract class AbstractNioSession extends AbstractIoSession {
     // A speedup for logs
     private static final boolean IS_DEBUG = LOG.isDebugEnabled();
 
+    /** The maximum number of queued messages written with a single gathering write */
+    private static final int MAX_GATHERED_WRITES = 64;
+
+    /** The number of bytes after which we stop gathering queued messages for a single write */
+    private static final int MAX_GATHERED_BYTES = 256 * 1024;
+
+    /** The size of the buffers a file region is read in, when it can't be transferred as is to the channel */
+    private static final int FILE_REGION_CHUNK_SIZE = 16 * 1024;
+
+    /** The array used for gathering the queued messages, shared by the sessions of a selector loop */
+    private static final ThreadLocal<ByteBuffer[]> GATHERED_BUFFERS = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[MAX_GATHERED_WRITES];
+        }
+    };
+
     /** the NIO channel for this session */
     protected final SelectableChannel channel;
 
-    /** is this session registered for being polled for write ready events */
-    private final AtomicBoolean registeredForWrite = new AtomicBoolean();
+    private static final AtomicIntegerFieldUpdater<AbstractNioSession> REGISTERED_FOR_WRITE_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(AbstractNioSession.class, "registeredForWrite");
+
+    private static final AtomicIntegerFieldUpdater<AbstractNioSession> NOT_WRITABLE_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(AbstractNioSession.class, "notWritable");
+
+    private static final AtomicIntegerFieldUpdater<AbstractNioSession> READ_SUSPENSIONS_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(AbstractNioSession.class, "readSuspensions");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractNioSession, IoFuture> CLOSE_FUTURE_UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(AbstractNioSession.class, IoFuture.class, "closeFuture");
+
+    private static final AtomicReferenceFieldUpdater<AbstractNioSession, DefaultWriteQueue> WRITE_QUEUE_UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(AbstractNioSession.class, DefaultWriteQueue.class, "writeQueue");
+
+    /**
+     * is this session registered for being polled for write ready events (1 if registered). We use field updaters
+     * rather than atomic objects, for a smaller session footprint.
+     */
+    private volatile int registeredForWrite;
+
+    /**
+     * the queue of pending writes for the session, to be dequeued by the {@link SelectorLoop}. Created when a write
+     * must be queued, and released once the selector loop has written it.
+     */
+    private volatile DefaultWriteQueue writeQueue;
+
+    /** writes the queue in the selector loop, created by the first flush and released when the session is write idle */
+    private Runnable flushTask;
+
+    /** is the write queue above its high watermark (1 if not writable) */
+    private volatile int notWritable;
+
+    /** the writability last propagated to the filters and handler, only accessed in the selector loop */
+    private boolean notifiedWritable = true;
+
+    /** the number of suspensions of the read events, which are suspended while it's not 0 */
+    private volatile int readSuspensions;
+
+    /** are the write events suspended */
+    private volatile boolean writeSuspended = false;
 
-    /** the queue of pending writes for the session, to be dequeued by the {@link SelectorLoop} */
-    private final Queue<WriteRequest> writeQueue = new DefaultWriteQueue();
+    /** the read idle timer of a {@link TimingWheelIdleChecker}, created on demand and only accessed in the loop */
+    TimingWheelIdleChecker.IdleTimer readIdleTimer;
+
+    /** the write idle timer of a {@link TimingWheelIdleChecker}, created on demand and only accessed in the loop */
+    TimingWheelIdleChecker.IdleTimer writeIdleTimer;
 
     public AbstractNioSession(IoService service, SelectableChannel channel, IdleChecker idleChecker) {
         super(service, idleChecker);
@@ -77,30 +150,64 @@ public abstract class AbstractNioSession extends AbstractIoSession {
     protected abstract int writeDirect(Object message);
 
     /**
-     * Copy the HeapBuffer into a DirectBuffer, if needed.
+     * Copy the HeapBuffer into a buffer of the session {@link org.apache.mina.buffer.BufferAllocator}, if needed. The
+     * copy is set as the request message, and released once written.
      * 
      * @param writeRequest The request containing the HeapBuffer
-     * @param createNew A flag to force the creation of a DirectBuffer
-     * @return A DirectBuffer
+     * @return The buffer to write
+     */
+    protected abstract ByteBuffer convertToDirectBuffer(WriteRequest writeRequest);
+
+    /**
+     * Get the {@link SelectorLoop} processing the I/O events of this session
+     * 
+     * @return the session selector loop, or <code>null</code> if the session is served by its service loop
      */
-    protected abstract ByteBuffer convertToDirectBuffer(WriteRequest writeRequest, boolean createNew);
+    public abstract SelectorLoop getSelectorLoop();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Executor getReadExecutor() {
+        final SelectorLoop selectorLoop = getSelectorLoop();
+
+        // the sessions served by their service loop share it with the other sessions
+        return selectorLoop == null ? null : selectorLoop.getExecutor();
+    }
 
     // ------------------------------------------------------------------------
     // Close session management
     // ------------------------------------------------------------------------
 
-    /** we pre-allocate a close future for lock-less {@link #close(boolean)} */
-    private final IoFuture<Void> closeFuture = new AbstractIoFuture<Void>() {
+    /** the close future, created by the first call to {@link #close(boolean)} */
+    private volatile IoFuture<Void> closeFuture;
 
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        protected boolean cancelOwner(final boolean mayInterruptIfRunning) {
-            // we don't cancel close
-            return false;
+    /**
+     * @return the close future, created if needed
+     */
+    @SuppressWarnings("unchecked")
+    private IoFuture<Void> closeFuture() {
+        IoFuture<Void> future = closeFuture;
+
+        if (future == null) {
+            CLOSE_FUTURE_UPDATER.compareAndSet(this, null, new AbstractIoFuture<Void>() {
+
+                /**
+                 * {@inheritDoc}
+                 */
+                @Override
+                protected boolean cancelOwner(final boolean mayInterruptIfRunning) {
+                    // we don't cancel close
+                    return false;
+                }
+            });
+
+            future = closeFuture;
         }
-    };
+
+        return future;
+    }
 
     @Override
     public void processSessionOpen() {
@@ -124,10 +231,18 @@ public abstract class AbstractNioSession extends AbstractIoSession {
             LOG.error("Session {} not opened", this);
             throw new IllegalStateException("cannot close an not opened session");
         case CONNECTED:
-            state = SessionState.CLOSING;
+            if (!compareAndSetState(SessionState.CONNECTED, SessionState.CLOSING)) {
+                // another thread is closing the session
+                LOG.warn("Already closing session {}", this);
+                break;
+            }
+
             if (immediately) {
                 channelClose();
                 processSessionClosed();
+
+                // the queued messages won't be written
+                discardWriteQueue(new ClosedChannelException());
             } else {
                 if (isSecured()) {
                     SslHelper sslHelper = getAttribute(SSL_HELPER, null);
@@ -140,6 +255,7 @@ public abstract class AbstractNioSession extends AbstractIoSession {
                     }
                 }
                 // flush this session the flushing code will close the session
+                registeredForWrite = 1;
                 flushWriteQueue();
             }
             break;
@@ -154,7 +270,7 @@ public abstract class AbstractNioSession extends AbstractIoSession {
             throw new IllegalStateException("not implemented session state : " + state);
         }
 
-        return closeFuture;
+        return closeFuture();
     }
 
     /**
@@ -171,6 +287,10 @@ public abstract class AbstractNioSession extends AbstractIoSession {
             LOG.debug("enqueueWriteRequest {}", writeRequest);
         }
 
+        if (writeRequest.getMessage() instanceof FileRegion) {
+            return enqueueFileRegion(writeRequest);
+        }
+
         if (isSecured()) {
             // SSL/TLS : we have to encrypt the message
             SslHelper sslHelper = getAttribute(SSL_HELPER, null);
@@ -180,16 +300,26 @@ public abstract class AbstractNioSession extends AbstractIoSession {
             }
 
             if (!writeRequest.isSecureInternal()) {
-                writeRequest = sslHelper.processWrite(this, writeRequest.getMessage(), writeQueue);
+                writeRequest = sslHelper.processWrite(this, writeRequest.getMessage(), writeQueue());
             }
         }
 
         if (writeRequest != null) {
             ByteBuffer message = (ByteBuffer) writeRequest.getMessage();
 
-            if (writeQueue.isEmpty()) {
-                // Transfer the buffer in a DirectByteBuffer if it's a HeapByteBuffer and if it's too big
-                message = convertToDirectBuffer(writeRequest, false);
+            if (writeRequest.getAllocator() == null) {
+                // a pooled buffer received by the handler writing it : released once written, not when the handler
+                // returns
+                writeRequest.setAllocator(PooledReceivedBuffer.takeOver(message));
+            }
+
+            if (!writeRequest.isFlush()) {
+                // The message waits in the writeQueue until the session is flushed
+                convertToDirectBuffer(writeRequest);
+                enqueue(writeRequest);
+            } else if (isWriteQueueEmpty() && !writeSuspended && isWriterThread()) {
+                // Transfer the buffer in a DirectByteBuffer if it's a HeapByteBuffer
+                message = convertToDirectBuffer(writeRequest);
 
                 // We don't have anything in the writeQueue, let's try to write the
                 // data in the channel immediately if we can
@@ -199,65 +329,401 @@ public abstract class AbstractNioSession extends AbstractIoSession {
                     LOG.debug("wrote {} bytes to {}", written, this);
                 }
 
+                final long now = currentTimeMillis();
+
                 if (written > 0) {
-                    incrementWrittenBytes(written);
+                    incrementWrittenBytes(written, now);
                 }
 
                 // Update the idle status for this session
-                idleChecker.sessionWritten(this, System.currentTimeMillis());
+                idleChecker.sessionWritten(this, now);
                 int remaining = message.remaining();
 
                 if ((written < 0) || (remaining > 0)) {
-                    // Create a DirectBuffer unconditionally
-                    convertToDirectBuffer(writeRequest, true);
-
                     // We have to push the request on the writeQueue
-                    writeQueue.add(writeRequest);
+                    enqueue(writeRequest);
 
                     // If it wasn't, we register this session as interested to write.
                     // It's done in atomic fashion for avoiding two concurrent registering.
-                    if (!registeredForWrite.getAndSet(true)) {
+                    if ((REGISTERED_FOR_WRITE_UPDATER.getAndSet(this, 1) == 0)) {
                         flushWriteQueue();
                     }
                 } else {
-                    // The message has been fully written : update the stats, and signal the handler
-                    // generate the message sent event
-                    // complete the future if we have one (we should...)
-                    final DefaultWriteFuture future = (DefaultWriteFuture) writeRequest.getFuture();
+                    // The message has been fully written : signal the handler
+                    completeWriteRequest(writeRequest);
+                }
+            } else {
+                // Transfer the buffer in a DirectByteBuffer if it's a HeapByteBuffer
+                message = convertToDirectBuffer(writeRequest);
+
+                // We have to push the request on the writeQueue, and the first writer
+                // asks the selector loop to write it
+                enqueue(writeRequest);
+
+                if ((REGISTERED_FOR_WRITE_UPDATER.getAndSet(this, 1) == 0)) {
+                    scheduleFlush();
+                }
+            }
+
+            updateWritability();
+        }
+
+        return writeRequest;
+    }
+
+    /**
+     * Enqueue a file region. Its content is transferred by the selector loop when the socket is writable, after the
+     * messages already queued.
+     * 
+     * @param writeRequest the request containing the {@link FileRegion}
+     * @return the enqueued request
+     */
+    private WriteRequest enqueueFileRegion(WriteRequest writeRequest) {
+        if (isSecured() || !(channel instanceof SocketChannel)) {
+            return enqueueFileRegionContent(writeRequest);
+        }
+
+        enqueue(writeRequest);
+
+        if (writeRequest.isFlush() && (REGISTERED_FOR_WRITE_UPDATER.getAndSet(this, 1) == 0)) {
+            scheduleFlush();
+        }
+
+        updateWritability();
+
+        return writeRequest;
+    }
+
+    /**
+     * Read the content of a file region which can't be transferred as is to the channel (the session is secured, or
+     * is not a TCP session), and enqueue it as buffers. The last buffer carries the region, so the future is completed
+     * and the message sent event generated once the whole content is written.
+     * 
+     * @param writeRequest the request containing the {@link FileRegion}
+     * @return the request enqueued for the last buffer
+     */
+    private WriteRequest enqueueFileRegionContent(WriteRequest writeRequest) {
+        final FileRegion region = (FileRegion) writeRequest.getMessage();
+        final FileChannel fileChannel = region.getFileChannel();
+
+        try {
+            for (;;) {
+                final int size = (int) Math.min(FILE_REGION_CHUNK_SIZE, region.getRemainingBytes());
+                final ByteBuffer chunk = ByteBuffer.allocate(size);
 
-                    if (future != null) {
-                        future.complete();
+                while (chunk.hasRemaining()) {
+                    if (fileChannel.read(chunk, region.getPosition() + chunk.position()) < 0) {
+                        throw new EOFException("end of file reached before the end of the region");
                     }
+                }
+
+                chunk.flip();
+                region.update(size);
 
-                    final Object highLevel = ((DefaultWriteRequest) writeRequest).getOriginalMessage();
+                if (region.getRemainingBytes() > 0) {
+                    WriteRequest request = new DefaultWriteRequest(chunk, null, false);
+                    request.setFlush(writeRequest.isFlush());
+                    enqueueWriteRequest(request);
+                } else {
+                    WriteRequest last = new DefaultWriteRequest(chunk, region, writeRequest.isConfirmRequested());
+                    last.setFlush(writeRequest.isFlush());
+                    last.setFuture(writeRequest.getFuture());
+                    WriteRequest enqueued = enqueueWriteRequest(last);
 
-                    if ((highLevel != null) && writeRequest.isConfirmRequested()) {
-                        processMessageSent(highLevel);
+                    if ((enqueued != null) && (enqueued != last)) {
+                        enqueued.setFuture(writeRequest.getFuture());
                     }
+
+                    return enqueued;
                 }
-            } else {
-                // Transfer the buffer in a DirectByteBuffer if it's a HeapByteBuffer
-                message = convertToDirectBuffer(writeRequest, true);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("can't read the file region " + region, e);
+        }
+    }
+
+    /**
+     * Discard the requests still queued, when they can't be written anymore : the buffers we allocated for them are
+     * given back, and their futures completed with the exception. The queue is only read by the selector loop, so the
+     * other threads hand the work off to it.
+     * 
+     * @param cause the reason why the queued messages can't be written
+     */
+    private void discardWriteQueue(final Exception cause) {
+        final SelectorLoop selectorLoop = getSelectorLoop();
 
-                // We have to push the request on the writeQueue
-                writeQueue.add(writeRequest);
-                if (!registeredForWrite.getAndSet(true)) {
-                    flushWriteQueue();
+        if ((selectorLoop != null) && !selectorLoop.inLoop()) {
+            selectorLoop.runInLoop(new Runnable() {
+                @Override
+                public void run() {
+                    discardWriteQueue(cause);
                 }
+            });
+
+            return;
+        }
+
+        final DefaultWriteQueue queue = writeQueue;
+
+        if (queue == null) {
+            return;
+        }
+
+        WriteRequest writeRequest;
+
+        while ((writeRequest = queue.poll()) != null) {
+            final BufferAllocator allocator = writeRequest.getAllocator();
+
+            if (allocator != null) {
+                writeRequest.setAllocator(null);
+                allocator.release((ByteBuffer) writeRequest.getMessage());
+            }
+
+            final IoFuture<Void> future = writeRequest.getFuture();
+
+            if ((future instanceof DefaultWriteFuture) && !future.isDone()) {
+                ((DefaultWriteFuture) future).error(cause);
             }
         }
 
-        return writeRequest;
+        queue.bytesWritten(queue.getPendingBytes());
+    }
+
+    /**
+     * Complete a fully written request : complete its future, and generate the message sent event
+     * 
+     * @param writeRequest the written request
+     */
+    private void completeWriteRequest(WriteRequest writeRequest) {
+        // give back the buffer we have allocated for the message
+        final BufferAllocator allocator = writeRequest.getAllocator();
+
+        if (allocator != null) {
+            writeRequest.setAllocator(null);
+            allocator.release((ByteBuffer) writeRequest.getMessage());
+        }
+
+        // complete the future if we have one (we should...)
+        final DefaultWriteFuture future = (DefaultWriteFuture) writeRequest.getFuture();
+
+        if (future != null) {
+            future.complete();
+        }
+
+        // generate the message sent event
+        final Object highLevel = ((DefaultWriteRequest) writeRequest).getOriginalMessage();
+
+        if ((highLevel != null) && writeRequest.isConfirmRequested()) {
+            processMessageSent(highLevel);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        if (isWriteQueueEmpty() || (REGISTERED_FOR_WRITE_UPDATER.getAndSet(this, 1) == 1)) {
+            // Nothing to write, or the selector loop will write the queue when the socket is ready
+            return;
+        }
+
+        scheduleFlush();
     }
 
     public abstract void flushWriteQueue();
 
+    /**
+     * Tells if the current thread can write in the session channel : only the selector loop thread writes in a TCP
+     * channel, the other threads hand their messages off to it. A datagram being sent at once, any thread can write in
+     * an UDP channel.
+     */
+    private boolean isWriterThread() {
+        final SelectorLoop selectorLoop = getSelectorLoop();
+
+        return (selectorLoop == null) || !(channel instanceof SocketChannel) || selectorLoop.inLoop();
+    }
+
+    /**
+     * Write the queue in the selector loop. The caller must have set the registered for write flag, so that a single
+     * flush is scheduled at a time whatever the number of writer threads : the messages they queue in the meantime
+     * are written in one batch, during the loop iteration running the flush. In the selector loop, the queue is
+     * written immediately.
+     */
+    private void scheduleFlush() {
+        final SelectorLoop selectorLoop = getSelectorLoop();
+
+        if (selectorLoop == null) {
+            flushWriteQueue();
+        } else {
+            // a concurrent creation or release is harmless, the task holds no state
+            Runnable task = flushTask;
+
+            if (task == null) {
+                task = new FlushTask();
+                flushTask = task;
+            }
+
+            selectorLoop.runInLoop(task);
+        }
+    }
+
+    /** Write the queue, and wait for the socket to be writable if we can't write everything */
+    private class FlushTask implements Runnable {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            if (!channel.isOpen()) {
+                // the session has been closed in the meantime
+                return;
+            }
+
+            final SelectorLoop selectorLoop = getSelectorLoop();
+
+            processWrite(selectorLoop);
+
+            if (isRegisteredForWrite() && channel.isOpen()) {
+                try {
+                    updateInterestOps(selectorLoop, true, false);
+                } catch (CancelledKeyException e) {
+                    LOG.debug("Cannot update the interest of a closed session {}", AbstractNioSession.this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the interest of the session in the read and write events to its selector loop, according to its suspended
+     * state. The session read and write queue flags are read under the session lock, so that a concurrent
+     * registration cannot overwrite a newer state.
+     * 
+     * @param selectorLoop the selector loop the session channel is registered to
+     * @param write <code>true</code> if the session has something to write
+     * @param wakeup <code>true</code> if the selector loop must be waken up
+     */
+    protected void updateInterestOps(SelectorLoop selectorLoop, boolean write, boolean wakeup) {
+        synchronized (this) {
+            selectorLoop.modifyRegistration(false, readSuspensions == 0, write && !writeSuspended,
+                    (SelectorListener) this, channel, wakeup);
+        }
+    }
+
+    /**
+     * Apply the suspended flags to the selection key, in the selector loop. The sessions served by their service
+     * selector loop only use the flags.
+     */
+    private void suspendedStateChanged() {
+        final SelectorLoop selectorLoop = getSelectorLoop();
+
+        if (selectorLoop != null) {
+            // suspending or resuming is rare enough for creating the task on demand
+            selectorLoop.runInLoop(new Runnable() {
+                @Override
+                public void run() {
+                    if (!channel.isOpen() || !(isConnected() || isClosing())) {
+                        // the flags will be used when the session is registered, or not at all
+                        return;
+                    }
+
+                    try {
+                        updateInterestOps(selectorLoop, isRegisteredForWrite(), false);
+                    } catch (CancelledKeyException e) {
+                        // the session has been closed in the meantime
+                        LOG.debug("Cannot update the interest of a closed session {}", AbstractNioSession.this);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The data already read stay in the filters (e.g. in a decoder accumulating a partial message), no more data is
+     * read from the channel until each suspension is released by {@link #resumeRead()}.
+     */
+    @Override
+    public void suspendRead() {
+        if (READ_SUSPENSIONS_UPDATER.incrementAndGet(this) == 1) {
+            suspendedStateChanged();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Resuming a session whose reads are not suspended does nothing.
+     */
+    @Override
+    public void resumeRead() {
+        int suspensions;
+
+        do {
+            suspensions = readSuspensions;
+
+            if (suspensions == 0) {
+                return;
+            }
+        } while (!READ_SUSPENSIONS_UPDATER.compareAndSet(this, suspensions, suspensions - 1));
+
+        if (suspensions == 1) {
+            suspendedStateChanged();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The messages written while the writes are suspended are queued, and written when {@link #resumeWrite()} is
+     * called.
+     */
+    @Override
+    public void suspendWrite() {
+        writeSuspended = true;
+        suspendedStateChanged();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resumeWrite() {
+        writeSuspended = false;
+
+        if (getSelectorLoop() == null) {
+            // no loop to wake up : the writer which queued the messages while we were suspended left them to us
+            if (isRegisteredForWrite()) {
+                flushWriteQueue();
+            }
+        } else {
+            suspendedStateChanged();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReadSuspended() {
+        return readSuspensions > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWriteSuspended() {
+        return writeSuspended;
+    }
+
     public void setNotRegisteredForWrite() {
-        registeredForWrite.set(false);
+        registeredForWrite = 0;
     }
 
     protected boolean isRegisteredForWrite() {
-        return registeredForWrite.get();
+        return registeredForWrite == 1;
     }
 
     /**
@@ -266,78 +732,324 @@ public abstract class AbstractNioSession extends AbstractIoSession {
      * @return the write queue of this session
      */
     public Queue<WriteRequest> getWriteQueue() {
-        return writeQueue;
+        return writeQueue();
+    }
+
+    /**
+     * @return the write queue, created if needed
+     */
+    private DefaultWriteQueue writeQueue() {
+        DefaultWriteQueue queue;
+
+        while ((queue = writeQueue) == null) {
+            WRITE_QUEUE_UPDATER.compareAndSet(this, null, new DefaultWriteQueue());
+        }
+
+        return queue;
+    }
+
+    /**
+     * @return <code>true</code> if there is no pending write
+     */
+    private boolean isWriteQueueEmpty() {
+        final DefaultWriteQueue queue = writeQueue;
+
+        return (queue == null) || queue.isEmpty();
+    }
+
+    /**
+     * Add a request to the write queue. The queue may be released by the selector loop while we add the request, it's
+     * then added to the queue replacing it.
+     * 
+     * @param writeRequest the request to queue
+     */
+    private void enqueue(WriteRequest writeRequest) {
+        DefaultWriteQueue queue;
+
+        while (!(queue = writeQueue()).offer(writeRequest)) {
+            // the queue has been released, drop it if the selector loop did not yet
+            WRITE_QUEUE_UPDATER.compareAndSet(this, queue, null);
+        }
+    }
+
+    /**
+     * Release the write queue once it has been written, so that a session which is not writing does not hold it. A
+     * secured session keeps its queue, the SSL/TLS helper queues its handshake messages by itself. To be called in the
+     * selector loop.
+     * 
+     * @param releaseFlushTask <code>true</code> for releasing the flush task too, when the session is write idle
+     */
+    private void releaseWriteQueue(boolean releaseFlushTask) {
+        final DefaultWriteQueue queue = writeQueue;
+
+        if (releaseFlushTask) {
+            flushTask = null;
+        }
+
+        if ((queue == null) || isSecured() || isRegisteredForWrite() || !queue.release()) {
+            return;
+        }
+
+        WRITE_QUEUE_UPDATER.compareAndSet(this, queue, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The flush task of a write idle session is released, and created again by the next flush.
+     */
+    @Override
+    public void processSessionIdle(IdleStatus status) {
+        super.processSessionIdle(status);
+
+        final SelectorLoop selectorLoop = getSelectorLoop();
+
+        // the queue of a session served by its service loop is written by the writer threads
+        if ((status == IdleStatus.WRITE_IDLE) && (selectorLoop != null)) {
+            selectorLoop.runInLoop(new Runnable() {
+                @Override
+                public void run() {
+                    releaseWriteQueue(true);
+                }
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWritable() {
+        return notWritable == 0;
+    }
+
+    /**
+     * Compare the number of pending bytes with the write queue watermarks, and generate a writability changed event
+     * if the session crossed one of them. The event is always generated in the selector loop, even when the
+     * watermark is crossed by a writer thread.
+     */
+    private void updateWritability() {
+        final int highWaterMark = getConfig().getWriteQueueHighWaterMark();
+
+        if (highWaterMark <= 0) {
+            // No limit
+            return;
+        }
+
+        final DefaultWriteQueue queue = writeQueue;
+        final long pendingBytes = queue == null ? 0 : queue.getPendingBytes();
+        boolean changed = false;
+
+        if (pendingBytes > highWaterMark) {
+            changed = NOT_WRITABLE_UPDATER.compareAndSet(this, 0, 1);
+        } else if (pendingBytes <= getConfig().getWriteQueueLowWaterMark()) {
+            changed = NOT_WRITABLE_UPDATER.compareAndSet(this, 1, 0);
+        }
+
+        if (!changed) {
+            return;
+        }
+
+        final Runnable notifier = new Runnable() {
+            @Override
+            public void run() {
+                // the state may have changed back and forth before we were called,
+                // so we only propagate the last state
+                final boolean isWritable = notWritable == 0;
+
+                if (isWritable != notifiedWritable) {
+                    notifiedWritable = isWritable;
+                    processWritabilityChanged(isWritable);
+                }
+            }
+        };
+
+        final SelectorLoop selectorLoop = getSelectorLoop();
+
+        if (selectorLoop != null) {
+            selectorLoop.runInLoop(notifier);
+        } else {
+            notifier.run();
+        }
+    }
+
+    /**
+     * Transfer the content of a file region to the socket, without copying it in user space.
+     * 
+     * @param region the region to transfer
+     * @param maxBytes the maximum number of bytes to transfer
+     * @return the number of transferred bytes
+     * @throws IOException if the file can't be read, or if it has been truncated
+     */
+    private long transferFileRegion(FileRegion region, long maxBytes) throws IOException {
+        final FileChannel fileChannel = region.getFileChannel();
+        final long position = region.getPosition();
+        final long transferred = fileChannel.transferTo(position, Math.min(region.getRemainingBytes(), maxBytes),
+                (WritableByteChannel) channel);
+
+        if ((transferred == 0) && (position >= fileChannel.size())) {
+            // we would spin forever on this region
+            throw new EOFException("The file has been truncated before the end of the region " + region);
+        }
+
+        region.update(transferred);
+
+        return transferred;
+    }
+
+    /**
+     * Write a single queued buffer in the channel, in the selector loop. A datagram session writes its queued messages
+     * one at a time with this method.
+     * 
+     * @param buffer the buffer to write
+     * @return the number of written bytes
+     * @throws IOException if the channel can't be written
+     */
+    protected int writeQueued(ByteBuffer buffer) throws IOException {
+        return ((WritableByteChannel) channel).write(buffer);
     }
 
     /**
      * Process a write operation. This will be executed only because the session has something to write into the
      * channel.
+     * 
+     * @param selectorLoop the loop the session is registered to, <code>null</code> for the sessions without a loop of
+     *        their own, which are written by the calling thread
      */
     public void processWrite(SelectorLoop selectorLoop) {
+        if (writeSuspended) {
+            // the messages stay in the queue until the writes are resumed
+            return;
+        }
+
         try {
             if (IS_DEBUG) {
                 LOG.debug("ready for write");
                 LOG.debug("writable session : {}", this);
             }
 
+            // the budget for this loop iteration, so that we don't starve the other sessions
+            final int maxWrites = getConfig().getMaxWritesPerTurn();
+            final int maxWriteBytes = getConfig().getMaxWriteBytesPerTurn();
+            int writes = 0;
+            long writtenBytes = 0;
+
+            // we gather the queued buffers for writing them with a single system call. A datagram
+            // channel must write one message at a time, as each buffer is a datagram
+            final int maxGathered = channel instanceof SocketChannel ? MAX_GATHERED_WRITES : 1;
+            final ByteBuffer[] buffers = GATHERED_BUFFERS.get();
+            final DefaultWriteQueue writeQueue = writeQueue();
+
             do {
-                // get a write request from the queue. We left it in the queue,
-                // just in case we can't write all of the message content into
-                // the channel : we will have to retrieve the message later
-                final WriteRequest writeRequest = writeQueue.peek();
+                int maxCount = maxGathered;
+                long maxBytes = MAX_GATHERED_BYTES;
+
+                if (maxWrites > 0) {
+                    maxCount = Math.min(maxCount, maxWrites - writes);
+                }
+
+                if (maxWriteBytes > 0) {
+                    maxBytes = Math.min(maxBytes, maxWriteBytes - writtenBytes);
+                }
+
+                // get the write requests from the queue. We left them in the queue,
+                // just in case we can't write all of the messages content into
+                // the channel : we will have to retrieve them later.
+                // The messages are necessarily ByteBuffers at this point. Note that
+                // if the connection is secured, the buffers already contain encrypted data.
+                int count = 0;
+                long gatheredBytes = 0;
+                FileRegion region = null;
+
+                for (WriteRequest writeRequest : writeQueue) {
+                    if (writeRequest.getMessage() instanceof FileRegion) {
+                        // a file region is transferred alone, after the buffers queued before it
+                        if (count == 0) {
+                            region = (FileRegion) writeRequest.getMessage();
+                            count = 1;
+                        }
+
+                        break;
+                    }
 
-                if (writeRequest == null) {
+                    ByteBuffer buf = (ByteBuffer) writeRequest.getMessage();
+                    buffers[count++] = buf;
+                    gatheredBytes += buf.remaining();
+
+                    if ((count >= maxCount) || (gatheredBytes >= maxBytes)) {
+                        break;
+                    }
+                }
+
+                if (count == 0) {
                     // Nothing to write : we are done
                     break;
                 }
 
-                // The message is necessarily a ByteBuffer at this point
-                ByteBuffer buf = (ByteBuffer) writeRequest.getMessage();
+                // Try to write the data, and get back the number of bytes
+                // actually written, and the number of fully written messages
+                long written;
+                int completed = 0;
 
-                // Note that if the connection is secured, the buffer
-                // already contains encrypted data.
+                if (region != null) {
+                    written = transferFileRegion(region, maxBytes);
 
-                // Try to write the data, and get back the number of bytes
-                // actually written
-                int written = ((SocketChannel) channel).write(buf);
+                    if (region.getRemainingBytes() == 0) {
+                        completed = 1;
+                    }
+                } else {
+                    try {
+                        if (count == 1) {
+                            written = writeQueued(buffers[0]);
+                        } else {
+                            written = ((GatheringByteChannel) channel).write(buffers, 0, count);
+                        }
+
+                        while ((completed < count) && (buffers[completed].remaining() == 0)) {
+                            completed++;
+                        }
+                    } finally {
+                        Arrays.fill(buffers, 0, count, null);
+                    }
+                }
 
                 if (IS_DEBUG) {
-                    LOG.debug("wrote {} bytes to {}", written, this);
+                    LOG.debug("wrote {} bytes to {} ({} messages)", new Object[] { written, this, completed });
                 }
 
+                final long now = currentTimeMillis();
+
                 if (written > 0) {
-                    incrementWrittenBytes(written);
+                    incrementWrittenBytes((int) written, now);
+                    writeQueue.bytesWritten(written);
+                    writtenBytes += written;
                 }
 
                 // Update the idle status for this session
-                idleChecker.sessionWritten(this, System.currentTimeMillis());
-
-                // Ok, we may not have written everything. Check that.
-                if (buf.remaining() == 0) {
-                    // completed write request, let's remove it (we use poll() instead
-                    // of remove(), because remove() may throw an exception if the
-                    // queue is empty.
-                    writeQueue.poll();
-
-                    // complete the future if we have one (we should...)
-                    final DefaultWriteFuture future = (DefaultWriteFuture) writeRequest.getFuture();
+                idleChecker.sessionWritten(this, now);
 
-                    if (future != null) {
-                        future.complete();
-                    }
+                // completed write requests, let's remove them (we use poll() instead
+                // of remove(), because remove() may throw an exception if the
+                // queue is empty.
+                for (int i = 0; i < completed; i++) {
+                    completeWriteRequest(writeQueue.poll());
+                }
 
-                    // generate the message sent event
-                    final Object highLevel = ((DefaultWriteRequest) writeRequest).getOriginalMessage();
+                writes += completed;
 
-                    if ((highLevel != null) && writeRequest.isConfirmRequested()) {
-                        processMessageSent(highLevel);
-                    }
-                } else {
-                    // output socket buffer is full, we need
-                    // to give up until next selection for
+                if (completed < count) {
+                    // Ok, we have not written everything : output socket buffer
+                    // is full, we need to give up until next selection for
                     // writing.
                     break;
                 }
+
+                // We have consumed our budget : the session stays registered for OP_WRITE,
+                // so we will write the remaining messages on the next loop iteration
+                if (((maxWrites > 0) && (writes >= maxWrites))
+                        || ((maxWriteBytes > 0) && (writtenBytes >= maxWriteBytes))) {
+                    break;
+                }
             } while (!writeQueue.isEmpty());
 
             // We may have exited from the loop for some other reason
@@ -347,7 +1059,7 @@ public abstract class AbstractNioSession extends AbstractIoSession {
             //
             // IMPORTANT : this section is synchronized so that the OP_WRITE flag
             // can be set safely by both the selector thread and the writer thread.
-            synchronized (writeQueue) {
+            synchronized (this) {
                 if (writeQueue.isEmpty()) {
                     if (isClosing()) {
                         if (IS_DEBUG) {
@@ -359,18 +1071,37 @@ public abstract class AbstractNioSession extends AbstractIoSession {
                         processSessionClosed();
                     } else {
                         // no more write event needed
-                        selectorLoop.modifyRegistration(false, !isReadSuspended(), false, (SelectorListener) this,
-                                channel, false);
+                        if (selectorLoop != null) {
+                            updateInterestOps(selectorLoop, false, false);
+                        }
 
                         // Reset the flag in IoSession too
                         setNotRegisteredForWrite();
+
+                        // a writer thread may have queued a message after our check, while the flag was still
+                        // set : it's up to us to write it
+                        if (!writeQueue.isEmpty() && REGISTERED_FOR_WRITE_UPDATER.compareAndSet(this, 0, 1)) {
+                            if (selectorLoop != null) {
+                                updateInterestOps(selectorLoop, true, false);
+                            } else {
+                                flushWriteQueue();
+                            }
+                        } else if (selectorLoop != null) {
+                            // everything is written : the next write creates a new queue if it has to wait
+                            releaseWriteQueue(false);
+                        }
                     }
                 }
                 // if the queue is not empty, that means we have some more data to write : 
                 // the channel OP_WRITE interest remains as it was.
             }
+
+            updateWritability();
         } catch (final IOException e) {
             LOG.error("Exception while writing : ", e);
+
+            // the channel is broken : the queued messages won't be written
+            discardWriteQueue(e);
             processException(e);
         }
     }
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.transport.nio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Predicts how many bytes the next read on a session will return, from the previous reads results. The guess grows
+ * quickly when a read fills the guessed size, and shrinks slowly when two consecutive reads are clearly smaller, so
+ * that a session exchanging small messages only reads a few bytes at once, while a bulk session reads as much as
+ * the selector loop buffer can hold.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+final class AdaptiveReadSizePredictor {
+    /** The default minimum guess */
+    static final int DEFAULT_MINIMUM = 64;
+
+    /** The default first guess */
+    static final int DEFAULT_INITIAL = 2048;
+
+    /** The number of steps we go up in the size table when a read fills the guess */
+    private static final int INDEX_INCREMENT = 4;
+
+    /** The number of steps we go down in the size table when two reads are smaller than the guess */
+    private static final int INDEX_DECREMENT = 1;
+
+    /** The possible guesses : 16 bytes steps up to 512, and then doubling */
+    private static final int[] SIZE_TABLE;
+
+    static {
+        List<Integer> sizes = new ArrayList<Integer>();
+
+        for (int size = 16; size < 512; size += 16) {
+            sizes.add(size);
+        }
+
+        for (int size = 512; size > 0; size <<= 1) {
+            sizes.add(size);
+        }
+
+        SIZE_TABLE = new int[sizes.size()];
+
+        for (int i = 0; i < SIZE_TABLE.length; i++) {
+            SIZE_TABLE[i] = sizes.get(i);
+        }
+    }
+
+    /** The smallest position we can use in the size table */
+    private final int minIndex;
+
+    /** The biggest position we can use in the size table */
+    private final int maxIndex;
+
+    /** The current position in the size table */
+    private int index;
+
+    /** The current guess */
+    private int nextReadSize;
+
+    /** Tells if the previous read was already small enough for shrinking the guess */
+    private boolean decreaseNow;
+
+    /**
+     * Creates a predictor.
+     * 
+     * @param minimum the minimum guess
+     * @param initial the first guess
+     * @param maximum the maximum guess
+     */
+    AdaptiveReadSizePredictor(int minimum, int initial, int maximum) {
+        if ((minimum <= 0) || (initial < minimum) || (maximum < initial)) {
+            throw new IllegalArgumentException("invalid sizes, expected 0 < minimum (" + minimum + ") <= initial ("
+                    + initial + ") <= maximum (" + maximum + ")");
+        }
+
+        int min = sizeTableIndex(minimum);
+        minIndex = SIZE_TABLE[min] < minimum ? min + 1 : min;
+
+        int max = sizeTableIndex(maximum);
+        maxIndex = Math.max(minIndex, SIZE_TABLE[max] > maximum ? max - 1 : max);
+
+        index = Math.min(Math.max(sizeTableIndex(initial), minIndex), maxIndex);
+        nextReadSize = SIZE_TABLE[index];
+    }
+
+    /**
+     * Find the position in the size table of the closest size to a given size, using a binary search.
+     */
+    private static int sizeTableIndex(int size) {
+        for (int low = 0, high = SIZE_TABLE.length - 1;;) {
+            if (high < low) {
+                return low;
+            }
+
+            if (high == low) {
+                return high;
+            }
+
+            int mid = (low + high) >>> 1;
+            int a = SIZE_TABLE[mid];
+            int b = SIZE_TABLE[mid + 1];
+
+            if (size > b) {
+                low = mid + 1;
+            } else if (size < a) {
+                high = mid - 1;
+            } else if (size == a) {
+                return mid;
+            } else {
+                return mid + 1;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bytes we expect the next read to return
+     */
+    int nextReadSize() {
+        return nextReadSize;
+    }
+
+    /**
+     * Update the guess with the result of a read.
+     * 
+     * @param readBytes the number of bytes the last read returned
+     */
+    void record(int readBytes) {
+        if (readBytes <= SIZE_TABLE[Math.max(0, index - INDEX_DECREMENT - 1)]) {
+            if (decreaseNow) {
+                index = Math.max(index - INDEX_DECREMENT, minIndex);
+                nextReadSize = SIZE_TABLE[index];
+                decreaseNow = false;
+            } else {
+                decreaseNow = true;
+            }
+        } else if (readBytes >= nextReadSize) {
+            index = Math.min(index + INDEX_INCREMENT, maxIndex);
+            nextReadSize = SIZE_TABLE[index];
+            decreaseNow = false;
+        }
+    }
+}
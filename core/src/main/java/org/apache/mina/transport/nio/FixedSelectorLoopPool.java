@@ -18,6 +18,7 @@
  */
 package org.apache.mina.transport.nio;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -27,7 +28,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class FixedSelectorLoopPool implements SelectorLoopPool {
     /** the pool of selector loop */
-    private final SelectorLoop[] pool;
+    private final NioSelectorLoop[] pool;
 
     /** the index of the next selector loop to be served */
     private final AtomicInteger nextIndex = new AtomicInteger();
@@ -38,14 +39,50 @@ public class FixedSelectorLoopPool implements SelectorLoopPool {
      * @param size
      */
     public FixedSelectorLoopPool(String prefix, final int size) {
+        this(prefix, size, SelectStrategy.BLOCKING);
+    }
+
+    /**
+     * Create a pool of "size" {@link SelectorLoop}, all waiting for their I/O events using the given strategy
+     * 
+     * @param size
+     * @param selectStrategy the way the loops wait for I/O events
+     */
+    public FixedSelectorLoopPool(String prefix, final int size, final SelectStrategy selectStrategy) {
+        this(prefix, size, selectStrategy, NioSelectorLoop.DEFAULT_TIMER_TICK_IN_MS);
+    }
+
+    /**
+     * Create a pool of "size" {@link SelectorLoop}, all waiting for their I/O events using the given strategy, and
+     * running their timers with the given precision
+     * 
+     * @param size
+     * @param selectStrategy the way the loops wait for I/O events
+     * @param timerTickMillis the duration of a tick of the loops timer wheels, in milliseconds
+     */
+    public FixedSelectorLoopPool(String prefix, final int size, final SelectStrategy selectStrategy,
+            final long timerTickMillis) {
         if (size <= 0) {
             throw new IllegalArgumentException("We can't create a pool with no Selectorloop in it");
         }
 
-        pool = new SelectorLoop[size];
+        pool = new NioSelectorLoop[size];
 
         for (int i = 0; i < size; i++) {
-            pool[i] = new NioSelectorLoop(prefix + "-I/O", i);
+            pool[i] = new NioSelectorLoop(prefix + "-I/O", i, selectStrategy, timerTickMillis);
+        }
+    }
+
+    /**
+     * Sets the maximum time spent running the queued tasks in one iteration of each loop of the pool.
+     * 
+     * @see NioSelectorLoop#setMaxTaskRunTime(long, TimeUnit)
+     * @param maxTaskRunTime the maximum time, 0 for no limit (the default)
+     * @param unit the time unit
+     */
+    public void setMaxTaskRunTime(long maxTaskRunTime, TimeUnit unit) {
+        for (NioSelectorLoop selectorLoop : pool) {
+            selectorLoop.setMaxTaskRunTime(maxTaskRunTime, unit);
         }
     }
 
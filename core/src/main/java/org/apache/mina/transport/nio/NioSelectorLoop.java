@@ -20,7 +20,9 @@
 package org.apache.mina.transport.nio;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
@@ -28,7 +30,12 @@ import java.nio.channels.Selector;
 import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+import org.apache.mina.util.TimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,11 +52,42 @@ public class NioSelectorLoop implements SelectorLoop {
 
     private static final boolean IS_DEBUG = LOG.isDebugEnabled();
 
+    /**
+     * The system property used to disable the array backed selected key set, for instance for comparing both modes in
+     * the benchmarks. Default to <code>true</code>.
+     */
+    public static final String OPTIMIZE_SELECTED_KEYS_PROPERTY = "org.apache.mina.transport.nio.optimizeSelectedKeys";
+
+    /** Tells if we try to plug an array backed selected key set into the selectors */
+    private static final boolean OPTIMIZE_SELECTED_KEYS = Boolean.parseBoolean(System.getProperty(
+            OPTIMIZE_SELECTED_KEYS_PROPERTY, "true"));
+
+    /**
+     * The system property used to set the size of the buffer each loop uses for reading the sessions data. Default to
+     * 64Kb.
+     */
+    public static final String READ_BUFFER_SIZE_PROPERTY = "org.apache.mina.transport.nio.readBufferSize";
+
+    /** The size of the loops read buffer */
+    private static final int READ_BUFFER_SIZE = Integer.getInteger(READ_BUFFER_SIZE_PROPERTY, 64 * 1024);
+
+    /**
+     * The system property used to set the default duration of a tick of the loops timer wheels, in milliseconds, which
+     * is the precision of the idle detection. Default to 100ms. A loop created with a given tick ignores it.
+     */
+    public static final String TIMER_TICK_PROPERTY = "org.apache.mina.transport.nio.timerTickMillis";
+
+    /** The default duration of a timer wheel tick */
+    static final long DEFAULT_TIMER_TICK_IN_MS = Long.getLong(TIMER_TICK_PROPERTY, 100L);
+
     /** the selector managed by this class */
     private Selector selector;
 
+    /** The array backed selected key set, <code>null</code> if the selector uses its own set */
+    private SelectedSelectionKeySet selectedKeys;
+
     /** Read buffer for all the incoming bytes (default to 64Kb) */
-    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
 
     /** The queue containing the channels to register on the selector */
     private final Queue<Registration> registrationQueue = new ConcurrentLinkedQueue<>();
@@ -60,6 +98,32 @@ public class NioSelectorLoop implements SelectorLoop {
      */
     private final Queue<Runnable> runnableQueue = new ConcurrentLinkedQueue<>();
 
+    /** The thread running the loop */
+    private final SelectorWorker worker;
+
+    /** Runs the tasks in the loop, shared by the sessions of the loop */
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            runInLoop(task);
+        }
+    };
+
+    /**
+     * Tells if the worker is awake, or is going to be awoken. It's only <code>false</code> when the worker is about
+     * to block, or is blocked, in a select() call, so we issue at most one wakeup() per blocking period.
+     */
+    private final AtomicBoolean awake = new AtomicBoolean(true);
+
+    /** The way we wait for I/O events */
+    private final SelectStrategy selectStrategy;
+
+    /** The maximum time spent running the queued tasks in one loop iteration, in nanoseconds. 0 for no limit */
+    private volatile long maxTaskRunTimeNanos = 0L;
+
+    /** The timers run by the loop, only accessed by the worker thread */
+    private final TimerWheel timerWheel;
+
     /**
      * Creates an instance of the SelectorLoop.
      * 
@@ -77,13 +141,48 @@ public class NioSelectorLoop implements SelectorLoop {
      * @param index
      */
     public NioSelectorLoop(final String prefix, final int index) {
+        this(prefix, index, SelectStrategy.BLOCKING);
+    }
+
+    /**
+     * Creates an instance of the SelectorLoop, waiting for the I/O events using the given strategy.
+     * 
+     * @param prefix
+     * @param index
+     * @param selectStrategy the way the loop waits for I/O events
+     */
+    public NioSelectorLoop(final String prefix, final int index, final SelectStrategy selectStrategy) {
+        this(prefix, index, selectStrategy, DEFAULT_TIMER_TICK_IN_MS);
+    }
+
+    /**
+     * Creates an instance of the SelectorLoop, waiting for the I/O events using the given strategy, and running its
+     * timers with the given precision.
+     * 
+     * @param prefix
+     * @param index
+     * @param selectStrategy the way the loop waits for I/O events
+     * @param timerTickMillis the duration of a tick of the loop timer wheel, in milliseconds
+     */
+    public NioSelectorLoop(final String prefix, final int index, final SelectStrategy selectStrategy,
+            final long timerTickMillis) {
+        if (selectStrategy == null) {
+            throw new IllegalArgumentException("selectStrategy");
+        }
+
+        if (timerTickMillis <= 0) {
+            throw new IllegalArgumentException("timerTickMillis: " + timerTickMillis + " (expected: 1+)");
+        }
+
+        this.selectStrategy = selectStrategy;
+        timerWheel = new TimerWheel(timerTickMillis, TimerWheel.DEFAULT_WHEEL_SIZE, currentTimeMillis());
         String workerName = "SelectorWorker " + prefix;
 
         if (index >= 0) {
             workerName += "-" + index;
         }
 
-        SelectorWorker worker = new SelectorWorker(workerName);
+        worker = new SelectorWorker(workerName);
 
         try {
             if (IS_DEBUG) {
@@ -97,6 +196,10 @@ public class NioSelectorLoop implements SelectorLoop {
                     ioe);
         }
 
+        if (OPTIMIZE_SELECTED_KEYS) {
+            selectedKeys = installSelectedKeySet(selector);
+        }
+
         if (IS_DEBUG) {
             LOG.debug("starting worker thread");
         }
@@ -105,6 +208,105 @@ public class NioSelectorLoop implements SelectorLoop {
 
     }
 
+    /**
+     * Sets the maximum time spent running the queued tasks in one loop iteration. At least one task is run on each
+     * iteration, the other ones wait for the next iteration once the budget is exhausted.
+     * 
+     * @param maxTaskRunTime the maximum time, 0 for no limit (the default)
+     * @param unit the time unit
+     */
+    public void setMaxTaskRunTime(long maxTaskRunTime, TimeUnit unit) {
+        if (maxTaskRunTime < 0) {
+            throw new IllegalArgumentException("maxTaskRunTime: " + maxTaskRunTime + " (expected: 0+)");
+        }
+
+        maxTaskRunTimeNanos = unit.toNanos(maxTaskRunTime);
+    }
+
+    /**
+     * @return the maximum time spent running the queued tasks in one loop iteration, in nanoseconds, 0 for no limit
+     */
+    public long getMaxTaskRunTimeNanos() {
+        return maxTaskRunTimeNanos;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ScheduledTask schedule(Runnable task, long delay, TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("delay: " + delay + " (expected: 0+)");
+        }
+
+        // don't overflow for the very long delays, and round the deadline up, as the wheel time is truncated to the
+        // millisecond
+        long delayInNanos = Math.min(unit.toNanos(delay), Long.MAX_VALUE / 4);
+        long deadline = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() + delayInNanos) + 1;
+        LoopTask loopTask = new LoopTask(this, task, deadline);
+
+        // schedule it in the wheel
+        runInLoop(loopTask);
+
+        return loopTask;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
+    /**
+     * @return a monotonic time for the timer wheel, in milliseconds
+     */
+    private static long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Replace the selected key set of a JDK selector by an array backed one. This is done using reflection on the
+     * <code>sun.nio.ch.SelectorImpl</code> class, if it's not possible (other JDK, restricted access to the JDK
+     * internals), we keep the selector own set.
+     * 
+     * @param selector the selector to modify
+     * @return the installed key set, or <code>null</code> if the selector has not been modified
+     */
+    private static SelectedSelectionKeySet installSelectedKeySet(Selector selector) {
+        try {
+            Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false,
+                    ClassLoader.getSystemClassLoader());
+
+            if (!selectorImplClass.isAssignableFrom(selector.getClass())) {
+                return null;
+            }
+
+            Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+            Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+
+            SelectedSelectionKeySet keySet = new SelectedSelectionKeySet();
+            selectedKeysField.set(selector, keySet);
+            publicSelectedKeysField.set(selector, keySet);
+
+            if (IS_DEBUG) {
+                LOG.debug("installed an array backed selected key set on {}", selector);
+            }
+
+            return keySet;
+        } catch (ReflectiveOperationException e) {
+            LOG.debug("unable to install an array backed selected key set, using the default one", e);
+        } catch (RuntimeException e) {
+            // Thrown by setAccessible() when the JDK internals are not opened to us
+            LOG.debug("unable to install an array backed selected key set, using the default one", e);
+        }
+
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -134,8 +336,29 @@ public class NioSelectorLoop implements SelectorLoop {
             ops |= SelectionKey.OP_WRITE;
         }
 
-        // TODO : if it's the same selector/worker, we don't need to do that we could directly enqueue
-        registrationQueue.add(new Registration(ops, channel, listener, callback));
+        Registration registration = new Registration(ops, channel, listener, callback);
+
+        if (inLoop()) {
+            // We are in the worker thread, no need to go through the queue
+            try {
+                registration.register();
+
+                return;
+            } catch (final ClosedChannelException ex) {
+                // dead session..
+                LOG.error("socket is already dead", ex);
+
+                return;
+            } catch (CancelledKeyException e) {
+                // The channel has a cancelled key which will be flushed by the next select() : we have to wait for
+                // it before registering the channel again
+                if (IS_DEBUG) {
+                    LOG.debug("deferring the registration of {} after the next select", channel);
+                }
+            }
+        }
+
+        registrationQueue.add(registration);
 
         // Now, wakeup the selector in order to let it update the selectionKey status
         wakeup();
@@ -146,8 +369,29 @@ public class NioSelectorLoop implements SelectorLoop {
      */
     @Override
     public void runInLoop(Runnable task) {
-        runnableQueue.add(task);
-        wakeup();
+        if (inLoop()) {
+            // Already in the loop, run it now
+            task.run();
+        } else {
+            runnableQueue.add(task);
+            wakeup();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean inLoop() {
+        return Thread.currentThread() == worker;
     }
 
     /**
@@ -184,7 +428,7 @@ public class NioSelectorLoop implements SelectorLoop {
 
         key.interestOps(ops);
 
-        // we need to wakeup for the registration to be modified (TODO : not needed if we are in the worker thread)
+        // we need to wakeup for the registration to be modified (this is a no-op if we are in the worker thread)
         if (wakeup) {
             wakeup();
         }
@@ -233,55 +477,39 @@ public class NioSelectorLoop implements SelectorLoop {
                         LOG.debug("selecting...");
                     }
 
-                    final int readyCount = selector.select();
+                    final int readyCount = select();
 
                     if (IS_DEBUG) {
                         LOG.debug("... done selecting : {} events", readyCount);
                     }
 
-                    if (readyCount > 0) {
-                        final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
-
-                        while (it.hasNext()) {
-                            final SelectionKey key = it.next();
-                            final SelectorListener listener = (SelectorListener) key.attachment();
-                            int ops = key.readyOps();
-                            boolean isAcceptable = (ops & SelectionKey.OP_ACCEPT) == SelectionKey.OP_ACCEPT;
-                            boolean isConnectable = (ops & SelectionKey.OP_CONNECT) == SelectionKey.OP_CONNECT;
-                            boolean isReadable = (ops & SelectionKey.OP_READ) == SelectionKey.OP_READ;
-                            boolean isWritable = (ops & SelectionKey.OP_WRITE) == SelectionKey.OP_WRITE;
-                            listener.ready(isAcceptable, isConnectable, isReadable, isReadable ? readBuffer : null,
-                                    isWritable);
-                            // if you don't remove the event of the set, the selector will present you this event again
-                            // and again
-                            if (IS_DEBUG) {
-                                LOG.debug("remove");
-                            }
-
-                            it.remove();
-                        }
-                    }
+                    // timers : done first, so that the timers scheduled by this iteration are relative to the time we
+                    // woke up, and not to the time we blocked
+                    timerWheel.advance(currentTimeMillis());
 
-                    // new registration
-                    while (!registrationQueue.isEmpty()) {
-                        final Registration reg = registrationQueue.poll();
+                    // new registration : done before processing the selected keys, so that a channel registered
+                    // while processing them waits for the next select() to flush its former cancelled key
+                    Registration registration;
 
+                    while ((registration = registrationQueue.poll()) != null) {
                         try {
-                            SelectionKey selectionKey = reg.channel.register(selector, reg.ops, reg.listener);
-
-                            if (reg.getCallback() != null) {
-                                reg.getCallback().done(selectionKey);
-                            }
+                            registration.register();
                         } catch (final ClosedChannelException ex) {
                             // dead session..
                             LOG.error("socket is already dead", ex);
                         }
                     }
 
-                    // tasks
-                    while (!runnableQueue.isEmpty()) {
-                        runnableQueue.poll().run();
+                    if (readyCount > 0) {
+                        if (selectedKeys != null) {
+                            processSelectedKeysArray();
+                        } else {
+                            processSelectedKeysSet();
+                        }
                     }
+
+                    // tasks
+                    runTasks();
                 } catch (final Exception e) {
                     LOG.error("Unexpected exception : ", e);
                 }
@@ -289,12 +517,259 @@ public class NioSelectorLoop implements SelectorLoop {
         }
     }
 
+    /**
+     * Run the queued tasks, until the queue is empty or the task budget is exhausted. The tasks we left in the queue
+     * will be run after a non blocking select, so that the I/O events are not delayed by a flood of tasks.
+     */
+    private void runTasks() {
+        final long budget = maxTaskRunTimeNanos;
+        final long deadline = budget > 0 ? System.nanoTime() + budget : 0L;
+        Runnable task;
+
+        while ((task = runnableQueue.poll()) != null) {
+            task.run();
+
+            if ((budget > 0) && (System.nanoTime() - deadline >= 0)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Select the ready channels. We don't block if some registrations or tasks are pending, otherwise we tell the
+     * producers that they will have to wake us up. If some timers are scheduled, we don't block after the end of the
+     * current tick.
+     * 
+     * @return the number of selected keys
+     * @throws IOException if the select failed
+     */
+    private int select() throws IOException {
+        if (selectStrategy.isBusyPoll()) {
+            int selected = spin();
+
+            if (selected >= 0) {
+                return selected;
+            }
+        }
+
+        awake.set(false);
+
+        try {
+            // a producer may have queued something before seeing we were going to block
+            if (hasPendingWork()) {
+                return selector.selectNow();
+            }
+
+            long timeout = timerWheel.getNextTickDelay(currentTimeMillis());
+
+            if (timeout < 0) {
+                return selector.select();
+            }
+
+            // select(0) would block forever
+            return timeout > 0 ? selector.select(timeout) : selector.selectNow();
+        } finally {
+            awake.set(true);
+        }
+    }
+
+    /**
+     * Poll the selector until something is selected, some work is queued or the spinning budget is exhausted. The
+     * awake flag stays up while spinning, so the producers don't issue any wakeup() : we see their work on the next
+     * iteration.
+     * 
+     * @return the number of selected keys, or -1 if the budget is exhausted and we have to block
+     */
+    private int spin() throws IOException {
+        long spinTimeNanos = selectStrategy.getSpinTimeNanos();
+        int maxSpins = selectStrategy.getMaxSpins();
+        long deadline = spinTimeNanos > 0 ? System.nanoTime() + spinTimeNanos : 0L;
+
+        for (int spins = 1;; spins++) {
+            int selected = selector.selectNow();
+
+            if (selected > 0 || hasPendingWork()) {
+                return selected;
+            }
+
+            if ((maxSpins > 0) && (spins >= maxSpins)) {
+                return -1;
+            }
+
+            if ((spinTimeNanos > 0) && (System.nanoTime() - deadline >= 0)) {
+                return -1;
+            }
+
+            if (selectStrategy.isYield()) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if some registrations, tasks or timer ticks are waiting to be processed by the loop
+     */
+    private boolean hasPendingWork() {
+        return !registrationQueue.isEmpty() || !runnableQueue.isEmpty()
+                || (timerWheel.getNextTickDelay(currentTimeMillis()) == 0);
+    }
+
+    /**
+     * Dispatch the selected keys stored by the selector in our array backed key set.
+     */
+    private void processSelectedKeysArray() {
+        try {
+            for (int i = 0; i < selectedKeys.size(); i++) {
+                processSelectedKey(selectedKeys.get(i));
+            }
+        } finally {
+            // the selector will present us the same key again if we don't forget it
+            selectedKeys.reset();
+        }
+    }
+
+    /**
+     * Dispatch the selected keys stored by the selector in its own key set.
+     */
+    private void processSelectedKeysSet() {
+        final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+        while (it.hasNext()) {
+            final SelectionKey key = it.next();
+
+            // if you don't remove the event of the set, the selector will present you this event again
+            // and again
+            if (IS_DEBUG) {
+                LOG.debug("remove");
+            }
+
+            it.remove();
+            processSelectedKey(key);
+        }
+    }
+
+    /**
+     * Inform the listener attached to a selected key about the ready operations.
+     * 
+     * @param key the selected key
+     */
+    private void processSelectedKey(SelectionKey key) {
+        if (!key.isValid()) {
+            // cancelled while processing a previous key of the same selection
+            return;
+        }
+
+        final SelectorListener listener = (SelectorListener) key.attachment();
+        int ops = key.readyOps();
+        boolean isAcceptable = (ops & SelectionKey.OP_ACCEPT) == SelectionKey.OP_ACCEPT;
+        boolean isConnectable = (ops & SelectionKey.OP_CONNECT) == SelectionKey.OP_CONNECT;
+        boolean isReadable = (ops & SelectionKey.OP_READ) == SelectionKey.OP_READ;
+        boolean isWritable = (ops & SelectionKey.OP_WRITE) == SelectionKey.OP_WRITE;
+        listener.ready(isAcceptable, isConnectable, isReadable, isReadable ? readBuffer : null, isWritable);
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The selector is woken up only once for a given select() call, and never from the worker thread, which is not
+     * blocked.
+     */
     @Override
     public void wakeup() {
-        selector.wakeup();
+        if (!inLoop() && awake.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * A task scheduled in the loop timer wheel. When run as a {@link Runnable}, it applies its state to the wheel :
+     * it's scheduled if it's pending, or removed if it has been cancelled from another thread.
+     */
+    private static final class LoopTask extends TimerWheel.Timer implements ScheduledTask, Runnable {
+        private static final int PENDING = 0;
+
+        private static final int DONE = 1;
+
+        private static final int CANCELLED = 2;
+
+        private static final AtomicIntegerFieldUpdater<LoopTask> STATE_UPDATER = AtomicIntegerFieldUpdater
+                .newUpdater(LoopTask.class, "state");
+
+        private final NioSelectorLoop loop;
+
+        private final Runnable task;
+
+        /** The time the task is to be run at */
+        private final long deadline;
+
+        volatile int state = PENDING;
+
+        LoopTask(NioSelectorLoop loop, Runnable task, long deadline) {
+            this.loop = loop;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            if (state == PENDING) {
+                TimerWheel wheel = loop.timerWheel;
+                wheel.schedule(this, Math.max(0L, deadline - wheel.getCurrentTime()));
+            } else {
+                loop.timerWheel.cancel(this);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void expired() {
+            if (STATE_UPDATER.compareAndSet(this, PENDING, DONE)) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LOG.error("Exception while running a scheduled task : ", e);
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+
+            // free the wheel slot now, rather than at the deadline
+            loop.runInLoop(this);
+
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isDone() {
+            return state != PENDING;
+        }
     }
 
-    private static class Registration {
+    private class Registration {
 
         public Registration(int ops, SelectableChannel channel, SelectorListener listener, RegistrationCallback callback) {
             this.ops = ops;
@@ -315,6 +790,19 @@ public class NioSelectorLoop implements SelectorLoop {
             return callback;
         }
 
+        /**
+         * Register the channel on the selector, and inform the callback
+         * 
+         * @throws ClosedChannelException if the channel is closed
+         */
+        private void register() throws ClosedChannelException {
+            SelectionKey selectionKey = channel.register(selector, ops, listener);
+
+            if (callback != null) {
+                callback.done(selectionKey);
+            }
+        }
+
         @Override
         public String toString() {
             StringBuilder sb = new StringBuilder();
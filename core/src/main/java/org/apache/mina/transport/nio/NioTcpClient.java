@@ -32,7 +32,6 @@ import org.apache.mina.api.MinaRuntimeException;
 import org.apache.mina.service.executor.IoHandlerExecutor;
 import org.apache.mina.service.executor.OrderedHandlerExecutor;
 import org.apache.mina.service.idlechecker.IdleChecker;
-import org.apache.mina.service.idlechecker.IndexedIdleChecker;
 import org.apache.mina.transport.ConnectFuture;
 import org.apache.mina.transport.tcp.AbstractTcpClient;
 import org.apache.mina.transport.tcp.TcpSessionConfig;
@@ -100,7 +99,7 @@ public class NioTcpClient extends AbstractTcpClient {
         super(handlerExecutor);
         this.connectSelectorLoop = connectSelectorLoop;
         this.readWriteSelectorPool = readWriteSelectorLoop;
-        idleChecker = new IndexedIdleChecker();
+        idleChecker = new TimingWheelIdleChecker();
     }
 
     /**
@@ -140,6 +139,17 @@ public class NioTcpClient extends AbstractTcpClient {
         session.getConfig().setIdleTimeInMillis(IdleStatus.WRITE_IDLE,
                 config.getIdleTimeInMillis(IdleStatus.WRITE_IDLE));
 
+        // apply the loop iteration budgets
+        session.getConfig().setMaxWriteBytesPerTurn(config.getMaxWriteBytesPerTurn());
+        session.getConfig().setMaxWritesPerTurn(config.getMaxWritesPerTurn());
+        session.getConfig().setMaxReadsPerTurn(config.getMaxReadsPerTurn());
+        session.getConfig().setFlushAfterRead(config.isFlushAfterRead());
+        session.getConfig().setWriteQueueWaterMarks(config.getWriteQueueLowWaterMark(),
+                config.getWriteQueueHighWaterMark());
+        session.getConfig().setAdaptiveReadSize(config.isAdaptiveReadSize());
+        session.getConfig().setBufferAllocator(config.getBufferAllocator());
+        session.getConfig().setPooledReceivedBuffers(config.isPooledReceivedBuffers());
+
         // apply the default service socket configuration
         Boolean keepAlive = config.isKeepAlive();
 
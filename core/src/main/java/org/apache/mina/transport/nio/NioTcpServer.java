@@ -32,7 +32,6 @@ import org.apache.mina.api.MinaRuntimeException;
 import org.apache.mina.service.executor.IoHandlerExecutor;
 import org.apache.mina.service.executor.OrderedHandlerExecutor;
 import org.apache.mina.service.idlechecker.IdleChecker;
-import org.apache.mina.service.idlechecker.IndexedIdleChecker;
 import org.apache.mina.transport.tcp.AbstractTcpServer;
 import org.apache.mina.transport.tcp.TcpSessionConfig;
 import org.apache.mina.util.Assert;
@@ -192,7 +191,7 @@ public class NioTcpServer extends AbstractTcpServer implements SelectorListener
 
         acceptSelectorLoop.register(true, false, false, false, this, serverChannel, null);
 
-        idleChecker = new IndexedIdleChecker();
+        idleChecker = new TimingWheelIdleChecker();
         idleChecker.start();
 
         // it's the first address bound, let's fire the event
@@ -284,6 +283,17 @@ public class NioTcpServer extends AbstractTcpServer implements SelectorListener
         session.getConfig().setIdleTimeInMillis(IdleStatus.WRITE_IDLE,
                 config.getIdleTimeInMillis(IdleStatus.WRITE_IDLE));
 
+        // apply the loop iteration budgets
+        session.getConfig().setMaxWriteBytesPerTurn(config.getMaxWriteBytesPerTurn());
+        session.getConfig().setMaxWritesPerTurn(config.getMaxWritesPerTurn());
+        session.getConfig().setMaxReadsPerTurn(config.getMaxReadsPerTurn());
+        session.getConfig().setFlushAfterRead(config.isFlushAfterRead());
+        session.getConfig().setWriteQueueWaterMarks(config.getWriteQueueLowWaterMark(),
+                config.getWriteQueueHighWaterMark());
+        session.getConfig().setAdaptiveReadSize(config.isAdaptiveReadSize());
+        session.getConfig().setBufferAllocator(config.getBufferAllocator());
+        session.getConfig().setPooledReceivedBuffers(config.isPooledReceivedBuffers());
+
         // apply the default service socket configuration
         Boolean keepAlive = config.isKeepAlive();
 
@@ -348,8 +358,9 @@ public class NioTcpServer extends AbstractTcpServer implements SelectorListener
             }
         });
 
-        idleChecker.sessionRead(session, System.currentTimeMillis());
-        idleChecker.sessionWritten(session, System.currentTimeMillis());
+        final long now = getClock().currentTimeMillis();
+        idleChecker.sessionRead(session, now);
+        idleChecker.sessionWritten(session, now);
     }
 
 }
\ No newline at end of file
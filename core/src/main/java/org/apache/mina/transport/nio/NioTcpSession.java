@@ -27,6 +27,7 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 
 import org.apache.mina.api.IoService;
+import org.apache.mina.buffer.BufferAllocator;
 import org.apache.mina.service.idlechecker.IdleChecker;
 import org.apache.mina.session.WriteRequest;
 import org.apache.mina.transport.ConnectFuture;
@@ -58,19 +59,14 @@ public class NioTcpSession extends AbstractNioSession implements SelectorListene
     /** The associated selectionKey */
     private SelectionKey selectionKey;
 
-    /** The Direct Buffer used to send data */
-    private ByteBuffer sendBuffer;
-
-    /** The size of the buffer configured in the socket to send data */
-    private int sendBufferSize;
+    /** The read size predictor, if the session adapts its read size to the received data */
+    private AdaptiveReadSizePredictor readSizePredictor;
 
     /* No qualifier */NioTcpSession(final IoService service, final SocketChannel channel,
             final SelectorLoop selectorLoop, final IdleChecker idleChecker) {
         super(service, channel, idleChecker);
         this.selectorLoop = selectorLoop;
         this.configuration = new ProxyTcpSessionConfig(channel.socket());
-        sendBufferSize = configuration.getSendBufferSize();
-        sendBuffer = ByteBuffer.allocateDirect(sendBufferSize);
     }
 
     void setConnectFuture(ConnectFuture connectFuture) {
@@ -121,24 +117,6 @@ public class NioTcpSession extends AbstractNioSession implements SelectorListene
         return (InetSocketAddress) socket.getLocalSocketAddress();
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void suspendRead() {
-        // TODO
-        throw new RuntimeException("Not implemented");
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void suspendWrite() {
-        // TODO
-        throw new RuntimeException("Not implemented");
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -164,68 +142,26 @@ public class NioTcpSession extends AbstractNioSession implements SelectorListene
      * {@inheritDoc}
      */
     @Override
-    protected ByteBuffer convertToDirectBuffer(WriteRequest writeRequest, boolean createNew) {
+    protected ByteBuffer convertToDirectBuffer(WriteRequest writeRequest) {
         ByteBuffer message = (ByteBuffer) writeRequest.getMessage();
 
-        if (!message.isDirect()) {
-            int remaining = message.remaining();
+        final BufferAllocator allocator = configuration.getBufferAllocator();
 
-            if ((remaining > sendBufferSize) || createNew) {
-                ByteBuffer directBuffer = ByteBuffer.allocateDirect(remaining);
-                directBuffer.put(message);
-                directBuffer.flip();
-                writeRequest.setMessage(directBuffer);
+        // copying a heap message in another heap buffer would not spare the copy done by the channel
+        if (!message.isDirect() && allocator.isDirect()) {
+            // Copy the message in a buffer of the session allocator : the copy is released once written
+            ByteBuffer buffer = allocator.allocate(message.remaining());
+            buffer.put(message);
+            buffer.flip();
+            writeRequest.setMessage(buffer);
+            writeRequest.setAllocator(allocator);
 
-                return directBuffer;
-            } else {
-                sendBuffer.clear();
-                sendBuffer.put(message);
-                sendBuffer.flip();
-                writeRequest.setMessage(sendBuffer);
-
-                return sendBuffer;
-            }
+            return buffer;
         }
 
         return message;
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void resumeRead() {
-        // TODO
-        throw new RuntimeException("Not implemented");
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void resumeWrite() {
-        // TODO
-        throw new RuntimeException("Not implemented");
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean isReadSuspended() {
-        // TODO
-        return false;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean isWriteSuspended() {
-        // TODO
-        throw new RuntimeException("Not implemented");
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -267,13 +203,21 @@ public class NioTcpSession extends AbstractNioSession implements SelectorListene
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SelectorLoop getSelectorLoop() {
+        return selectorLoop;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void flushWriteQueue() {
         // register for write
-        selectorLoop.modifyRegistration(false, !isReadSuspended(), true, this, channel, true);
+        updateInterestOps(selectorLoop, true, true);
     }
 
     /**
@@ -285,19 +229,56 @@ public class NioTcpSession extends AbstractNioSession implements SelectorListene
         try {
             LOG.debug("readable session : {}", this);
 
-            // Read everything we can up to the buffer size
-            final int readCount = ((SocketChannel) channel).read(readBuffer);
+            // We may read more than once if the socket has more data than the buffer can hold,
+            // up to the session budget, so that we don't starve the other sessions
+            final int maxReads = configuration.getMaxReadsPerTurn();
+            boolean hasRead = false;
+            long now = 0L;
+
+            if (configuration.isAdaptiveReadSize() && (readSizePredictor == null)) {
+                readSizePredictor = new AdaptiveReadSizePredictor(AdaptiveReadSizePredictor.DEFAULT_MINIMUM,
+                        Math.min(AdaptiveReadSizePredictor.DEFAULT_INITIAL, readBuffer.capacity()),
+                        readBuffer.capacity());
+            }
+
+            for (int reads = 0; reads < maxReads; reads++) {
+                if (readSizePredictor != null) {
+                    readBuffer.limit(Math.min(readSizePredictor.nextReadSize(), readBuffer.capacity()));
+                }
+
+                final int bufferSize = readBuffer.remaining();
 
-            LOG.debug("read {} bytes", readCount);
+                // Read everything we can up to the buffer size
+                final int readCount = ((SocketChannel) channel).read(readBuffer);
+
+                LOG.debug("read {} bytes", readCount);
+
+                if ((readSizePredictor != null) && (readCount >= 0)) {
+                    readSizePredictor.record(readCount);
+                }
+
+                if (readCount < 0) {
+                    // session closed by the remote peer
+                    LOG.debug("session closed by the remote peer");
+                    readBuffer.clear();
+                    close(true);
+                    break;
+                }
+
+                if (readCount == 0) {
+                    readBuffer.clear();
+                    break;
+                }
 
-            if (readCount < 0) {
-                // session closed by the remote peer
-                LOG.debug("session closed by the remote peer");
-                close(true);
-            } else if (readCount > 0) {
                 // we have read some data
                 // limit at the current position & rewind buffer back to start &
                 // push to the chain
+                if (!hasRead) {
+                    // a single timestamp for the statistics and the idle checker of this turn
+                    now = currentTimeMillis();
+                    hasRead = true;
+                }
+
                 readBuffer.flip();
 
                 if (isSecured()) {
@@ -314,14 +295,26 @@ public class NioTcpSession extends AbstractNioSession implements SelectorListene
                     // We don't clear the buffer. It has been done by the sslHelper
                 } else {
                     // Plain message, not encrypted : go directly to the chain
-                    processMessageReceived(readBuffer);
+                    processMessageReceived(readBuffer, now);
 
                     // And now, clear the buffer
                     readBuffer.clear();
                 }
 
+                // The socket has no more data if it didn't fill the buffer
+                if ((readCount < bufferSize) || !isConnected() || isReadSuspended()) {
+                    break;
+                }
+            }
+
+            if (hasRead) {
                 // Update the session idle status
-                idleChecker.sessionRead(this, System.currentTimeMillis());
+                idleChecker.sessionRead(this, now);
+
+                // Write the messages the handler has queued while processing the read data
+                if (configuration.isFlushAfterRead()) {
+                    flush();
+                }
             }
         } catch (final IOException e) {
             LOG.error("Exception while reading : ", e);
@@ -368,7 +361,7 @@ public class NioTcpSession extends AbstractNioSession implements SelectorListene
             }
         }
 
-        if (read) {
+        if (read && !isReadSuspended()) {
             processRead(readBuffer);
         }
 
@@ -46,7 +46,7 @@ public class NioUdpClient extends AbstractUdpClient {
     // This is final, so that we know if it's not initialized
     private final SelectorLoopPool readWriteSelectorPool;
 
-    private final IndexedIdleChecker idleChecker = new IndexedIdleChecker();
+    private final IndexedIdleChecker idleChecker = new IndexedIdleChecker(serviceClock);
 
     /**
      * Create a new instance of NioUdpClient
@@ -97,8 +97,9 @@ public class NioUdpClient extends AbstractUdpClient {
                 config.getIdleTimeInMillis(IdleStatus.WRITE_IDLE));
 
         // Manage the Idle status
-        idleChecker.sessionRead(session, System.currentTimeMillis());
-        idleChecker.sessionWritten(session, System.currentTimeMillis());
+        final long now = getClock().currentTimeMillis();
+        idleChecker.sessionRead(session, now);
+        idleChecker.sessionWritten(session, now);
 
         // apply the default service socket configuration
 
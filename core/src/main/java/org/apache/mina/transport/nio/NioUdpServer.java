@@ -56,7 +56,7 @@ public class NioUdpServer extends AbstractUdpServer implements SelectorListener
     private SocketAddress address = null;
 
     // used for detecting idle sessions
-    private final IdleChecker idleChecker = new IndexedIdleChecker();
+    private final IdleChecker idleChecker = new IndexedIdleChecker(serviceClock);
 
     // the inner channel for read/write UDP datagrams
     private DatagramChannel datagramChannel = null;
@@ -234,7 +234,15 @@ public class NioUdpServer extends AbstractUdpServer implements SelectorListener
                 if (session == null) {
                     session = createSession(source, datagramChannel);
                 }
-                if (read) {
+                if (read && session.isReadSuspended()) {
+                    // The sessions share the server channel : we can't stop reading for one of them,
+                    // the datagram is dropped, as it would be by a full socket buffer
+                    if (IS_DEBUG) {
+                        LOG.debug("dropping datagram for read suspended session : {}", session);
+                    }
+
+                    readBuffer.clear();
+                } else if (read) {
                     if (IS_DEBUG) {
                         LOG.debug("readable datagram for UDP service : {}", this);
                     }
@@ -277,6 +285,10 @@ public class NioUdpServer extends AbstractUdpServer implements SelectorListener
         session.getConfig().setIdleTimeInMillis(IdleStatus.WRITE_IDLE,
                 config.getIdleTimeInMillis(IdleStatus.WRITE_IDLE));
 
+        // apply the buffer configuration
+        session.getConfig().setBufferAllocator(config.getBufferAllocator());
+        session.getConfig().setPooledReceivedBuffers(config.isPooledReceivedBuffers());
+
         // apply the default service socket configuration
 
         Boolean reuseAddress = config.isReuseAddress();
@@ -304,8 +316,9 @@ public class NioUdpServer extends AbstractUdpServer implements SelectorListener
         }
 
         // Manage the Idle status
-        idleChecker.sessionRead(session, System.currentTimeMillis());
-        idleChecker.sessionWritten(session, System.currentTimeMillis());
+        final long now = getClock().currentTimeMillis();
+        idleChecker.sessionRead(session, now);
+        idleChecker.sessionWritten(session, now);
 
         sessions.put(remoteAddress, session);
 
@@ -86,7 +86,7 @@ public class NioUdpSession extends AbstractNioSession implements SelectorListene
     protected void channelClose() {
         LOG.debug("channelClose");
         // No inner socket to close for UDP server, but some for UDP client
-        if (channel != null) {
+        if (selectorLoop != null) {
             try {
                 selectorLoop.unregister(this, channel);
                 channel.close();
@@ -98,14 +98,36 @@ public class NioUdpSession extends AbstractNioSession implements SelectorListene
         processSessionClosed();
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * Each message being a datagram, they can't be sent together : the message is written immediately.
+     */
+    @Override
+    public void writeWithoutFlush(Object message) {
+        write(message);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SelectorLoop getSelectorLoop() {
+        return selectorLoop;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void flushWriteQueue() {
-        // register for write
         if (selectorLoop != null) {
-            selectorLoop.modifyRegistration(false, !isReadSuspended(), true, this, channel, true);
+            // register for write
+            updateInterestOps(selectorLoop, true, true);
+        } else {
+            // the server sessions have no loop of their own : like the direct writes, the queue is written by the
+            // calling thread
+            processWrite(null);
         }
     }
 
@@ -137,60 +159,6 @@ public class NioUdpSession extends AbstractNioSession implements SelectorListene
      * closeFuture; }
      */
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void suspendRead() {
-        // TODO
-        throw new IllegalStateException("not implemented");
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void suspendWrite() {
-        // TODO
-        throw new IllegalStateException("not implemented");
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void resumeRead() {
-        // TODO
-        throw new IllegalStateException("not implemented");
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public void resumeWrite() {
-        // TODO
-        throw new IllegalStateException("not implemented");
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean isReadSuspended() {
-        // TODO
-        return false;
-    }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public boolean isWriteSuspended() {
-        // TODO
-        return false;
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -205,8 +173,10 @@ public class NioUdpSession extends AbstractNioSession implements SelectorListene
      * @param readBuffer the received datagram
      */
     void receivedDatagram(ByteBuffer readBuffer) {
-        processMessageReceived(readBuffer);
-        idleChecker.sessionRead(this, System.currentTimeMillis());
+        final long now = currentTimeMillis();
+
+        processMessageReceived(readBuffer, now);
+        idleChecker.sessionRead(this, now);
     }
 
     /**
@@ -217,15 +187,9 @@ public class NioUdpSession extends AbstractNioSession implements SelectorListene
         try {
             // Check that we can write into the channel
             if (!isRegisteredForWrite()) {
-                // We don't have pending writes
-                // First, connect if we aren't already connected
-                if (!((DatagramChannel) channel).isConnected()) {
-                    ((DatagramChannel) channel).connect(remoteAddress);
-                }
-
-                // And try to write the data. We will either write them all,
+                // We don't have pending writes : try to write the data. We will either write them all,
                 // or none
-                return ((DatagramChannel) channel).write((ByteBuffer) message);
+                return sendDatagram((ByteBuffer) message);
             } else {
                 LOG.debug("Cannot write");
                 return -1;
@@ -242,7 +206,37 @@ public class NioUdpSession extends AbstractNioSession implements SelectorListene
      * {@inheritDoc}
      */
     @Override
-    protected ByteBuffer convertToDirectBuffer(WriteRequest writeRequest, boolean createNew) {
+    protected int writeQueued(ByteBuffer buffer) throws IOException {
+        return sendDatagram(buffer);
+    }
+
+    /**
+     * Send a datagram to the remote peer. A client session connects its own channel, while the server sessions share
+     * the server channel, which stays unconnected.
+     * 
+     * @param buffer the datagram
+     * @return the number of sent bytes, 0 if the datagram could not be sent
+     * @throws IOException if the channel can't be written
+     */
+    private int sendDatagram(ByteBuffer buffer) throws IOException {
+        final DatagramChannel datagramChannel = (DatagramChannel) channel;
+
+        if (selectorLoop == null) {
+            return datagramChannel.send(buffer, remoteAddress);
+        }
+
+        if (!datagramChannel.isConnected()) {
+            datagramChannel.connect(remoteAddress);
+        }
+
+        return datagramChannel.write(buffer);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected ByteBuffer convertToDirectBuffer(WriteRequest writeRequest) {
         // Here, we don't create a new DirectBuffer. We let the underlying layer do the job for us
         return (ByteBuffer) writeRequest.getMessage();
     }
@@ -266,7 +260,7 @@ public class NioUdpSession extends AbstractNioSession implements SelectorListene
                                     connect, read, write });
         }
 
-        if (read) {
+        if (read && !isReadSuspended()) {
             if (IS_DEBUG) {
                 LOG.debug("readable datagram for UDP service : {}", this);
             }
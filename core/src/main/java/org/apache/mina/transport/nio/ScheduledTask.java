@@ -0,0 +1,45 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+/**
+ * The handle of a task scheduled with {@link SelectorLoop#schedule(Runnable, long, java.util.concurrent.TimeUnit)},
+ * for cancelling it.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public interface ScheduledTask {
+    /**
+     * Cancel the task, if it has not been run yet. Can be called from any thread.
+     * 
+     * @return <code>true</code> if the task won't be run
+     */
+    boolean cancel();
+
+    /**
+     * @return <code>true</code> if the task was cancelled before being run
+     */
+    boolean isCancelled();
+
+    /**
+     * @return <code>true</code> if the task was run or cancelled
+     */
+    boolean isDone();
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.transport.nio;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The way a {@link NioSelectorLoop} waits for I/O events. The default {@link #BLOCKING} strategy blocks in
+ * <code>select()</code> until an event occurs, which costs a thread wake up latency on each event. A busy polling
+ * strategy spins with <code>selectNow()</code> for a time and/or iteration budget before blocking, trading CPU for a
+ * lower latency.
+ *
+ * <pre>
+ * // spin for 50 microseconds before blocking
+ * SelectStrategy strategy = SelectStrategy.busyPoll(50, TimeUnit.MICROSECONDS, 0, false);
+ *
+ * NioTcpServer server = new NioTcpServer(new FixedSelectorLoopPool(&quot;Server&quot;, 2, strategy), null);
+ * </pre>
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public final class SelectStrategy {
+    /** Always block in select() : the default strategy */
+    public static final SelectStrategy BLOCKING = new SelectStrategy(false, 0L, 0, false);
+
+    /** Tells if we spin before blocking */
+    private final boolean busyPoll;
+
+    /** The maximum time spent spinning, in nanoseconds. 0 for no limit */
+    private final long spinTimeNanos;
+
+    /** The maximum number of selectNow() calls when spinning. 0 for no limit */
+    private final int maxSpins;
+
+    /** Tells if we yield the CPU between two selectNow() calls */
+    private final boolean yield;
+
+    private SelectStrategy(boolean busyPoll, long spinTimeNanos, int maxSpins, boolean yield) {
+        this.busyPoll = busyPoll;
+        this.spinTimeNanos = spinTimeNanos;
+        this.maxSpins = maxSpins;
+        this.yield = yield;
+    }
+
+    /**
+     * Create a busy polling strategy : the loop spins with <code>selectNow()</code> until an event occurs, or until
+     * one of the budgets is exhausted, and then blocks in <code>select()</code>. If both budgets are 0, the loop never
+     * blocks.
+     *
+     * @param spinTime the maximum time to spin before blocking, 0 for no limit
+     * @param unit the spin time unit
+     * @param maxSpins the maximum number of <code>selectNow()</code> calls before blocking, 0 for no limit
+     * @param yield <code>true</code> if the loop must yield the CPU between two <code>selectNow()</code> calls
+     * @return the busy polling strategy
+     */
+    public static SelectStrategy busyPoll(long spinTime, TimeUnit unit, int maxSpins, boolean yield) {
+        if (spinTime < 0) {
+            throw new IllegalArgumentException("spinTime: " + spinTime + " (expected: 0+)");
+        }
+
+        if (maxSpins < 0) {
+            throw new IllegalArgumentException("maxSpins: " + maxSpins + " (expected: 0+)");
+        }
+
+        return new SelectStrategy(true, unit.toNanos(spinTime), maxSpins, yield);
+    }
+
+    /**
+     * @return <code>true</code> if the loop spins before blocking
+     */
+    public boolean isBusyPoll() {
+        return busyPoll;
+    }
+
+    /**
+     * @return the maximum time spent spinning, in nanoseconds, 0 for no limit
+     */
+    public long getSpinTimeNanos() {
+        return spinTimeNanos;
+    }
+
+    /**
+     * @return the maximum number of <code>selectNow()</code> calls when spinning, 0 for no limit
+     */
+    public int getMaxSpins() {
+        return maxSpins;
+    }
+
+    /**
+     * @return <code>true</code> if the loop yields the CPU between two <code>selectNow()</code> calls
+     */
+    public boolean isYield() {
+        return yield;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        if (!busyPoll) {
+            return "SelectStrategy[blocking]";
+        }
+
+        return "SelectStrategy[busyPoll, spinTimeNanos=" + spinTimeNanos + ", maxSpins=" + maxSpins + ", yield="
+                + yield + "]";
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.transport.nio;
+
+import java.nio.channels.SelectionKey;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An array backed replacement for the <code>HashSet</code> a JDK {@link java.nio.channels.Selector} uses for storing
+ * its selected keys. The selector only ever calls {@link #add(SelectionKey)} on it, so we don't need any lookup : the
+ * {@link NioSelectorLoop} walks the array after each select and {@link #reset()} it, without creating any iterator or
+ * hash entry.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+final class SelectedSelectionKeySet extends AbstractSet<SelectionKey> {
+    /** The default number of keys we can store before growing the array */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** The selected keys */
+    private SelectionKey[] keys = new SelectionKey[DEFAULT_CAPACITY];
+
+    /** The number of selected keys */
+    private int size;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+
+        keys[size++] = key;
+
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The selector never removes a key from its selected set, this is the selector loop job, so this method is not
+     * supported.
+     */
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    /**
+     * The selector never checks the content of its selected set, this method is not supported.
+     */
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    /**
+     * Get the key stored at a given position
+     *
+     * @param index the key position, between 0 and {@link #size()} - 1
+     * @return the selected key
+     */
+    SelectionKey get(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Forget all the selected keys, so that they can be garbage collected if they are cancelled.
+     */
+    void reset() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return keys[index++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -28,6 +28,16 @@ import java.nio.ByteBuffer;
  */
 public interface SelectorListener {
 
+    /**
+     * Called by the {@link SelectorLoop} when the channel is ready for some operations.
+     * 
+     * @param accept the channel is ready for accepting a connection
+     * @param connect the channel is ready for finishing a connection
+     * @param read the channel is ready for reading
+     * @param readBuffer when ready for reading, the buffer shared by all the channels of the loop. The listener can
+     *        lower its limit for reading less bytes at once, and must clear it before returning.
+     * @param write the channel is ready for writing
+     */
     void ready(boolean accept, boolean connect, boolean read, ByteBuffer readBuffer, boolean write);
 
 }
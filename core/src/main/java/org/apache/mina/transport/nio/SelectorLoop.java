@@ -19,6 +19,10 @@
 package org.apache.mina.transport.nio;
 
 import java.nio.channels.SelectableChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.util.TimerWheel;
 
 /**
  * @author <a href="http://mina.apache.org">Apache MINA Project</a>
@@ -49,9 +53,43 @@ public interface SelectorLoop {
     void wakeup();
 
     /**
-     * Run a given runnable in the loop.
+     * Run a given runnable in the loop. If we are already in the loop thread, the task is run immediately.
      * 
      * @param task the task to be run in the main working loop.
      */
     void runInLoop(Runnable task);
-}
\ No newline at end of file
+
+    /**
+     * Gives an {@link Executor} running its tasks in the loop, like {@link #runInLoop(Runnable)}.
+     * 
+     * @return the loop executor
+     */
+    Executor getExecutor();
+
+    /**
+     * Tells if the current thread is the one running this loop. In this case, the registrations and tasks are
+     * processed immediately, without waking up the selector.
+     * 
+     * @return <code>true</code> if called from the loop thread
+     */
+    boolean inLoop();
+
+    /**
+     * Schedule a task to be run in the loop after a delay, with the precision of a tick of the loop timer wheel. Can be
+     * called from any thread.
+     * 
+     * @param task the task to run
+     * @param delay the delay before running the task
+     * @param unit the delay unit
+     * @return the handle for cancelling the task
+     */
+    ScheduledTask schedule(Runnable task, long delay, TimeUnit unit);
+
+    /**
+     * Gives the timers run by this loop, which are expired at the beginning of each loop iteration. The wheel is not
+     * thread safe : it must only be used from the loop thread, see {@link #inLoop()} and {@link #runInLoop(Runnable)}.
+     * 
+     * @return the loop timer wheel
+     */
+    TimerWheel getTimerWheel();
+}
@@ -0,0 +1,101 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.IoSession;
+
+/**
+ * Schedule the timers of a session, like request timeouts or retransmissions, on the session {@link SelectorLoop} :
+ * the tasks are run by the thread processing the session I/O, without any lock or extra thread.<br>
+ * 
+ * The sessions without a selector loop (UDP server sessions, sessions of other transports) use a scheduler thread
+ * shared by the whole application, started on demand.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public final class SessionScheduler {
+
+    private SessionScheduler() {
+    }
+
+    /**
+     * Schedule a task to be run after a delay
+     * 
+     * @param session the session the task is about
+     * @param task the task to run
+     * @param delay the delay before running the task
+     * @param unit the delay unit
+     * @return the handle for cancelling the task
+     */
+    public static ScheduledTask schedule(IoSession session, Runnable task, long delay, TimeUnit unit) {
+        if (session instanceof AbstractNioSession) {
+            SelectorLoop loop = ((AbstractNioSession) session).getSelectorLoop();
+
+            if (loop != null) {
+                return loop.schedule(task, delay, unit);
+            }
+        }
+
+        final ScheduledFuture<?> future = FallbackScheduler.EXECUTOR.schedule(task, delay, unit);
+
+        return new ScheduledTask() {
+            @Override
+            public boolean cancel() {
+                return future.cancel(false);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return future.isCancelled();
+            }
+
+            @Override
+            public boolean isDone() {
+                return future.isDone();
+            }
+        };
+    }
+
+    /**
+     * The holder of the scheduler of the sessions without selector loop, so it's only created when needed
+     */
+    private static class FallbackScheduler {
+        private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "SessionScheduler");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+
+        static {
+            // don't keep the cancelled timeouts until their deadline
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
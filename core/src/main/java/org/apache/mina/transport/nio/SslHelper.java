@@ -37,6 +37,7 @@ import javax.net.ssl.SSLSession;
 
 import org.apache.mina.api.IoClient;
 import org.apache.mina.api.IoSession;
+import org.apache.mina.buffer.BufferAllocator;
 import org.apache.mina.session.AbstractIoSession;
 import org.apache.mina.session.AttributeKey;
 import org.apache.mina.session.DefaultWriteRequest;
@@ -194,6 +195,13 @@ public class SslHelper {
         }
     }
 
+    /**
+     * @return the allocator for the buffers created by this helper
+     */
+    private BufferAllocator allocator() {
+        return session.getConfig().getBufferAllocator();
+    }
+
     /**
      * Duplicate a byte buffer for storing it into this context for future use.
      * 
@@ -201,7 +209,7 @@ public class SslHelper {
      * @return the newly allocated buffer
      */
     private ByteBuffer duplicate(ByteBuffer buffer) {
-        ByteBuffer newBuffer = ByteBuffer.allocateDirect(buffer.remaining() * 2);
+        ByteBuffer newBuffer = allocator().allocate(buffer.remaining() * 2);
         newBuffer.put(buffer);
         newBuffer.flip();
         return newBuffer;
@@ -221,10 +229,11 @@ public class SslHelper {
             previous.put(buffer);
             previous.position(oldPosition);
         } else {
-            ByteBuffer newPrevious = ByteBuffer.allocateDirect((previous.remaining() + buffer.remaining()) * 2);
+            ByteBuffer newPrevious = allocator().allocate((previous.remaining() + buffer.remaining()) * 2);
             newPrevious.put(previous);
             newPrevious.put(buffer);
             newPrevious.flip();
+            allocator().release(previous);
             previous = newPrevious;
         }
         return previous;
@@ -248,7 +257,8 @@ public class SslHelper {
 
         boolean done = false;
         SSLEngineResult result;
-        ByteBuffer appBuffer = ByteBuffer.allocateDirect(sslEngine.getSession().getApplicationBufferSize());
+        final BufferAllocator allocator = allocator();
+        ByteBuffer appBuffer = allocator.allocate(sslEngine.getSession().getApplicationBufferSize());
 
         HandshakeStatus handshakeStatus = sslEngine.getHandshakeStatus();
         while (!done) {
@@ -266,7 +276,8 @@ public class SslHelper {
                     break;
                 case BUFFER_OVERFLOW:
                     /* resize output buffer */
-                    appBuffer = ByteBuffer.allocateDirect(appBuffer.capacity() * 2);
+                    allocator.release(appBuffer);
+                    appBuffer = allocator.allocate(appBuffer.capacity() * 2);
                     break;
                 case OK:
                     if ((handshakeStatus == HandshakeStatus.NOT_HANDSHAKING) && (result.bytesProduced() > 0)) {
@@ -296,7 +307,8 @@ public class SslHelper {
                 processResult(session, handshakeStatus, result);
                 switch (result.getStatus()) {
                 case BUFFER_OVERFLOW:
-                    appBuffer = ByteBuffer.allocateDirect(appBuffer.capacity() * 2);
+                    allocator.release(appBuffer);
+                    appBuffer = allocator.allocate(appBuffer.capacity() * 2);
                     break;
                 case BUFFER_UNDERFLOW:
                     done = true;
@@ -307,7 +319,11 @@ public class SslHelper {
                     WriteRequest writeRequest = new DefaultWriteRequest(appBuffer);
                     writeRequest.setMessage(appBuffer);
                     writeRequest.setSecureInternal(true);
+                    writeRequest.setAllocator(allocator);
                     session.enqueueWriteRequest(writeRequest);
+
+                    // The buffer now belongs to the write queue
+                    appBuffer = allocator.allocate(appBuffer.capacity());
                     break;
                 }
                 if (sslEngine != null) {
@@ -320,11 +336,20 @@ public class SslHelper {
                 state = State.CREDENTAILS_AVAILABLE;
             }
         }
+        // the accumulated data have been copied or consumed
+        ByteBuffer consumed = previous;
+
         if (tempBuffer.remaining() > 0) {
             previous = duplicate(tempBuffer);
         } else {
             previous = null;
         }
+
+        if (consumed != null) {
+            allocator.release(consumed);
+        }
+
+        allocator.release(appBuffer);
         readBuffer.clear();
     }
 
@@ -397,7 +422,8 @@ public class SslHelper {
         switch (state) {
         case CREDENTAILS_AVAILABLE:
             ByteBuffer buf = (ByteBuffer) message;
-            ByteBuffer appBuffer = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+            final BufferAllocator allocator = allocator();
+            ByteBuffer appBuffer = allocator.allocate(sslEngine.getSession().getPacketBufferSize());
             try {
                 boolean done = false;
                 while (!done) {
@@ -407,9 +433,11 @@ public class SslHelper {
                     switch (result.getStatus()) {
                     case BUFFER_OVERFLOW:
                         // Increase the buffer size as needed
-                        appBuffer = ByteBuffer.allocate(appBuffer.capacity() + 4096);
+                        allocator.release(appBuffer);
+                        appBuffer = allocator.allocate(appBuffer.capacity() + 4096);
                         break;
                     case CLOSED:
+                        allocator.release(appBuffer);
                         switchToNoSecure(session);
                         done = true;
                         break;
@@ -421,9 +449,12 @@ public class SslHelper {
                         done = buf.remaining() == 0;
                         if (done) {
                             request = new DefaultWriteRequest(appBuffer, buf, done);
+                            request.setAllocator(allocator);
                         } else {
-                            writeQueue.offer(new DefaultWriteRequest(appBuffer, buf, done));
-                            appBuffer = ByteBuffer.allocateDirect(appBuffer.capacity());
+                            WriteRequest encrypted = new DefaultWriteRequest(appBuffer, buf, done);
+                            encrypted.setAllocator(allocator);
+                            writeQueue.offer(encrypted);
+                            appBuffer = allocator.allocate(appBuffer.capacity());
                         }
                         break;
                     }
@@ -0,0 +1,213 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import org.apache.mina.api.IdleStatus;
+import org.apache.mina.service.idlechecker.IdleChecker;
+import org.apache.mina.session.AbstractIoSession;
+import org.apache.mina.util.TimerWheel;
+
+/**
+ * An idle checker using the timer wheels of the sessions {@link SelectorLoop}s, in place of a dedicated thread.<br>
+ * 
+ * Each session holds a read and a write timer, created on the first I/O event. An I/O event only records its time,
+ * and schedules the timer if it's not already scheduled. When the timer expires, we look at the last event time : if
+ * the session was active meanwhile, the timer is scheduled again for the remaining idle time, otherwise the idle event
+ * is fired, and the timer waits for the next I/O event. So a busy session costs at most one wheel operation per idle
+ * time, and no allocation.<br>
+ * 
+ * The idle events are fired in the session loop, with the precision of a tick of the loop wheel (see
+ * {@link NioSelectorLoop#NioSelectorLoop(String, int, SelectStrategy, long)}). There is no limit to the idle time.
+ * 
+ * This checker only handles the {@link AbstractNioSession}s having a selector loop.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class TimingWheelIdleChecker implements IdleChecker {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionRead(AbstractIoSession session, long time) {
+        sessionEvent((AbstractNioSession) session, IdleStatus.READ_IDLE, time);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionWritten(AbstractIoSession session, long time) {
+        sessionEvent((AbstractNioSession) session, IdleStatus.WRITE_IDLE, time);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sessionClosed(AbstractIoSession session) {
+        final AbstractNioSession nioSession = (AbstractNioSession) session;
+        final SelectorLoop loop = nioSession.getSelectorLoop();
+
+        if (loop.inLoop()) {
+            cancelTimers(nioSession, loop.getTimerWheel());
+        } else {
+            loop.runInLoop(new Runnable() {
+                @Override
+                public void run() {
+                    cancelTimers(nioSession, loop.getTimerWheel());
+                }
+            });
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The idle sessions are detected by the selector loops, there is nothing to do.
+     */
+    @Override
+    public int processIdleSession(long time) {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The checker has no thread, there is nothing to do.
+     */
+    @Override
+    public void start() {
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The checker has no thread, there is nothing to do.
+     */
+    @Override
+    public void destroy() {
+    }
+
+    private void sessionEvent(final AbstractNioSession session, final IdleStatus status, final long time) {
+        final SelectorLoop loop = session.getSelectorLoop();
+
+        if (loop.inLoop()) {
+            arm(session, status, time, loop.getTimerWheel());
+        } else {
+            // the session creation : the timers are only accessed in the loop
+            loop.runInLoop(new Runnable() {
+                @Override
+                public void run() {
+                    arm(session, status, time, loop.getTimerWheel());
+                }
+            });
+        }
+    }
+
+    /**
+     * Record an I/O event, and schedule the timer if it's not already scheduled. To be called in the session loop.
+     */
+    private static void arm(AbstractNioSession session, IdleStatus status, long time, TimerWheel wheel) {
+        IdleTimer timer = status == IdleStatus.READ_IDLE ? session.readIdleTimer : session.writeIdleTimer;
+
+        if (timer != null && timer.isScheduled()) {
+            // the fast path : the expiration will look at the new time
+            timer.lastEventTime = Math.max(timer.lastEventTime, time);
+
+            return;
+        }
+
+        long idleTimeInMs = session.getConfig().getIdleTimeInMillis(status);
+
+        // is idle enabled ?
+        if (idleTimeInMs <= 0L) {
+            return;
+        }
+
+        if (timer == null) {
+            timer = new IdleTimer(session, status);
+
+            if (status == IdleStatus.READ_IDLE) {
+                session.readIdleTimer = timer;
+            } else {
+                session.writeIdleTimer = timer;
+            }
+        }
+
+        timer.lastEventTime = Math.max(timer.lastEventTime, time);
+        wheel.schedule(timer, idleTimeInMs);
+    }
+
+    private static void cancelTimers(AbstractNioSession session, TimerWheel wheel) {
+        if (session.readIdleTimer != null) {
+            wheel.cancel(session.readIdleTimer);
+        }
+
+        if (session.writeIdleTimer != null) {
+            wheel.cancel(session.writeIdleTimer);
+        }
+    }
+
+    /**
+     * The timer detecting a given idle status for a session
+     */
+    static final class IdleTimer extends TimerWheel.Timer {
+        private final AbstractNioSession session;
+
+        private final IdleStatus status;
+
+        /** The time of the last I/O event, in the session service clock */
+        private long lastEventTime;
+
+        IdleTimer(AbstractNioSession session, IdleStatus status) {
+            this.session = session;
+            this.status = status;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void expired() {
+            if (session.isClosing() || session.isClosed()) {
+                return;
+            }
+
+            long idleTimeInMs = session.getConfig().getIdleTimeInMillis(status);
+
+            // check if idle detection wasn't disabled since the timer was scheduled : the next I/O event will
+            // schedule it again if it's enabled
+            if (idleTimeInMs <= 0L) {
+                return;
+            }
+
+            long remaining = lastEventTime + idleTimeInMs - session.getService().getClock().currentTimeMillis();
+
+            if (remaining > 0) {
+                // some I/O occurred since the timer was scheduled
+                session.getSelectorLoop().getTimerWheel().schedule(this, remaining);
+            } else {
+                // the next I/O event will schedule the timer again
+                session.processSessionIdle(status);
+            }
+        }
+    }
+}
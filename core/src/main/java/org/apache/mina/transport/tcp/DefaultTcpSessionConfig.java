@@ -48,6 +48,9 @@ public class DefaultTcpSessionConfig extends AbstractIoSessionConfig implements
     /** The SO_LINGER socket option */
     private Integer soLinger;
 
+    /** Tells if the read size adapts to the received data */
+    private boolean adaptiveReadSize = false;
+
     /**
      * {@inheritDoc}
      */
@@ -139,4 +142,20 @@ public class DefaultTcpSessionConfig extends AbstractIoSessionConfig implements
     public boolean isSecured() {
         return sslContext != null;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAdaptiveReadSize() {
+        return adaptiveReadSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdaptiveReadSize(boolean adaptiveReadSize) {
+        this.adaptiveReadSize = adaptiveReadSize;
+    }
 }
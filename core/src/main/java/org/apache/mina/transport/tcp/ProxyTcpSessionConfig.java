@@ -25,6 +25,8 @@ import javax.net.ssl.SSLContext;
 
 import org.apache.mina.api.ConfigurationException;
 import org.apache.mina.api.IdleStatus;
+import org.apache.mina.buffer.BufferAllocator;
+import org.apache.mina.buffer.PooledBufferAllocator;
 import org.apache.mina.session.TrafficClassEnum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +50,33 @@ public class ProxyTcpSessionConfig implements TcpSessionConfig {
 
     private long idleTimeWrite = -1;
 
+    /** The maximum number of bytes written per selector loop iteration, 0 for no limit */
+    private int maxWriteBytesPerTurn = 0;
+
+    /** The maximum number of messages written per selector loop iteration, 0 for no limit */
+    private int maxWritesPerTurn = 0;
+
+    /** The maximum number of reads per selector loop iteration */
+    private int maxReadsPerTurn = 1;
+
+    /** Tells if we flush the session after each read */
+    private boolean flushAfterRead = true;
+
+    /** The number of queued bytes above which the session is not writable */
+    private int writeQueueHighWaterMark = 64 * 1024;
+
+    /** The number of queued bytes under which the session is writable again */
+    private int writeQueueLowWaterMark = 32 * 1024;
+
+    /** The allocator for the buffers created by the transport */
+    private BufferAllocator bufferAllocator = PooledBufferAllocator.DEFAULT;
+
+    /** Tells if the buffers handed to the handler executor are allocated by the buffer allocator */
+    private boolean pooledReceivedBuffers = false;
+
+    /** Tells if the read size adapts to the received data */
+    private boolean adaptiveReadSize = false;
+
     /**
      * {@inheritDoc}
      */
@@ -333,4 +362,158 @@ public class ProxyTcpSessionConfig implements TcpSessionConfig {
             throw new ConfigurationException(e);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxWriteBytesPerTurn() {
+        return maxWriteBytesPerTurn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMaxWriteBytesPerTurn(int maxWriteBytesPerTurn) {
+        if (maxWriteBytesPerTurn < 0) {
+            throw new IllegalArgumentException("maxWriteBytesPerTurn: " + maxWriteBytesPerTurn + " (expected: 0+)");
+        }
+        this.maxWriteBytesPerTurn = maxWriteBytesPerTurn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxWritesPerTurn() {
+        return maxWritesPerTurn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMaxWritesPerTurn(int maxWritesPerTurn) {
+        if (maxWritesPerTurn < 0) {
+            throw new IllegalArgumentException("maxWritesPerTurn: " + maxWritesPerTurn + " (expected: 0+)");
+        }
+        this.maxWritesPerTurn = maxWritesPerTurn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMaxReadsPerTurn() {
+        return maxReadsPerTurn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setMaxReadsPerTurn(int maxReadsPerTurn) {
+        if (maxReadsPerTurn <= 0) {
+            throw new IllegalArgumentException("maxReadsPerTurn: " + maxReadsPerTurn + " (expected: 1+)");
+        }
+        this.maxReadsPerTurn = maxReadsPerTurn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAdaptiveReadSize() {
+        return adaptiveReadSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAdaptiveReadSize(boolean adaptiveReadSize) {
+        this.adaptiveReadSize = adaptiveReadSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isFlushAfterRead() {
+        return flushAfterRead;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setFlushAfterRead(boolean flushAfterRead) {
+        this.flushAfterRead = flushAfterRead;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWriteQueueHighWaterMark() {
+        return writeQueueHighWaterMark;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getWriteQueueLowWaterMark() {
+        return writeQueueLowWaterMark;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setWriteQueueWaterMarks(int lowWaterMark, int highWaterMark) {
+        if ((lowWaterMark < 0) || (highWaterMark < 0) || ((highWaterMark > 0) && (lowWaterMark > highWaterMark))) {
+            throw new IllegalArgumentException("lowWaterMark: " + lowWaterMark + ", highWaterMark: " + highWaterMark
+                    + " (expected: 0 <= lowWaterMark <= highWaterMark)");
+        }
+        this.writeQueueLowWaterMark = lowWaterMark;
+        this.writeQueueHighWaterMark = highWaterMark;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BufferAllocator getBufferAllocator() {
+        return bufferAllocator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setBufferAllocator(BufferAllocator bufferAllocator) {
+        if (bufferAllocator == null) {
+            throw new IllegalArgumentException("bufferAllocator can not be null");
+        }
+
+        this.bufferAllocator = bufferAllocator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isPooledReceivedBuffers() {
+        return pooledReceivedBuffers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPooledReceivedBuffers(boolean pooledReceivedBuffers) {
+        this.pooledReceivedBuffers = pooledReceivedBuffers;
+    }
 }
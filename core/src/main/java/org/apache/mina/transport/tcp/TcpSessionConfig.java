@@ -99,4 +99,22 @@ public interface TcpSessionConfig extends IoSessionConfig {
      * @return The {@link SSLContext} instance stored in the configuration.
      */
     void setSslContext(SSLContext sslContext);
+
+    /**
+     * Tells if the session adapts the number of bytes it reads at once to the size of the data it receives, instead
+     * of always reading as much as the selector loop buffer can hold.
+     * 
+     * @return <code>true</code> if the read size is adaptive
+     */
+    boolean isAdaptiveReadSize();
+
+    /**
+     * Sets the adaptive read size mode. When enabled, the session predicts the size of the next read from the previous
+     * ones : sessions exchanging small messages read a few bytes at once, while bulk sessions read up to the selector
+     * loop buffer size, and read again as long as their read budget allows it.
+     * 
+     * @see #setMaxReadsPerTurn(int)
+     * @param adaptiveReadSize <code>true</code> for enabling the adaptive read size (default to <code>false</code>)
+     */
+    void setAdaptiveReadSize(boolean adaptiveReadSize);
 }
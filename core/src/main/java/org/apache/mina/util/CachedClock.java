@@ -0,0 +1,97 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.util;
+
+/**
+ * A {@link Clock} caching the system time, which is updated by a daemon ticker thread. Reading the time is a volatile
+ * read, at the cost of a precision of a few milliseconds.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class CachedClock implements Clock {
+    /** The default precision : 10 milliseconds */
+    public static final long DEFAULT_PRECISION_IN_MS = 10L;
+
+    /** The clock shared by all the services, unless they are given another one */
+    public static final CachedClock DEFAULT = new CachedClock("MinaClock", DEFAULT_PRECISION_IN_MS);
+
+    /** The delay between two updates of the time */
+    private final long precisionInMs;
+
+    /** The cached time */
+    private volatile long now = System.currentTimeMillis();
+
+    private volatile boolean running = true;
+
+    private final Thread ticker;
+
+    /**
+     * Create a cached clock, and start its ticker thread
+     * 
+     * @param name the ticker thread name
+     * @param precisionInMs the delay between two updates of the time, in milliseconds
+     */
+    public CachedClock(String name, long precisionInMs) {
+        if (precisionInMs <= 0) {
+            throw new IllegalArgumentException("precisionInMs: " + precisionInMs + " (expected: 1+)");
+        }
+
+        this.precisionInMs = precisionInMs;
+        ticker = new Thread(name) {
+            @Override
+            public void run() {
+                while (running) {
+                    now = System.currentTimeMillis();
+
+                    try {
+                        sleep(CachedClock.this.precisionInMs);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+        };
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * @return the delay between two updates of the time, in milliseconds
+     */
+    public long getPrecisionInMillis() {
+        return precisionInMs;
+    }
+
+    /**
+     * Stop the ticker thread : the time is not updated anymore.
+     */
+    public void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+}
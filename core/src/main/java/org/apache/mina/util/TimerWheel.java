@@ -0,0 +1,315 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.util;
+
+/**
+ * A hashed timing wheel, for managing a large number of timers with a coarse precision. The time is divided in ticks,
+ * and each timer is stored in the bucket of the tick it expires at, with the number of wheel rounds left before it
+ * expires, so the timeouts may be arbitrarily long :
+ * 
+ * <pre>
+ *               +--- Current tick
+ *               |
+ *               v
+ * +---+---+...+---+---+...+---+
+ * | 0 | 1 |   | T |T+1|   |511|
+ * +---+---+...+---+---+...+---+
+ *                   |
+ *                   +--> T1(0) &lt;-&gt; T2(3) &lt;-&gt; ... (timers expiring at tick T+1, after 0 and 3 more rounds)
+ * </pre>
+ * 
+ * The timers are intrusive nodes of the bucket lists : scheduling, rescheduling and cancelling a timer is done in
+ * constant time, without any allocation.<br>
+ * 
+ * This class is not thread safe : a wheel is owned by a single thread, for instance a selector loop, which calls
+ * {@link #advance(long)} regularly.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class TimerWheel {
+    /** The default number of buckets */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /** The bucket of a timer not scheduled */
+    private static final int NOT_SCHEDULED = -1;
+
+    /** The duration of a tick, in milliseconds */
+    private final long tickInMillis;
+
+    /** The bucket lists heads. The last one holds the timers expired during the current advance() call */
+    private final Timer[] buckets;
+
+    /** The mask giving the bucket of a tick */
+    private final int mask;
+
+    /** The index of the expired timers list */
+    private final int expiredBucket;
+
+    /** The time of the tick 0 */
+    private final long startTime;
+
+    /** The time given to the last advance() call, from which the delays are computed */
+    private long currentTime;
+
+    /** The last processed tick */
+    private long currentTick;
+
+    /** The number of scheduled timers */
+    private int size;
+
+    /**
+     * A timer, to be extended for implementing the expiration action. A timer can be scheduled again once expired, or
+     * while scheduled, in which case its previous deadline is forgotten.
+     */
+    public abstract static class Timer {
+        private Timer prev;
+
+        private Timer next;
+
+        private int bucket = NOT_SCHEDULED;
+
+        private long remainingRounds;
+
+        /**
+         * @return <code>true</code> if the timer is scheduled, and has not expired yet
+         */
+        public final boolean isScheduled() {
+            return bucket != NOT_SCHEDULED;
+        }
+
+        /**
+         * Called by the wheel owner thread when the timer expires. The timer is not scheduled anymore.
+         */
+        protected abstract void expired();
+    }
+
+    /**
+     * Create a timing wheel
+     * 
+     * @param tickInMillis the duration of a tick, which is the precision of the timers, in milliseconds
+     * @param wheelSize the number of buckets, rounded up to the next power of 2
+     * @param now the current time, in milliseconds
+     */
+    public TimerWheel(long tickInMillis, int wheelSize, long now) {
+        if (tickInMillis <= 0) {
+            throw new IllegalArgumentException("tickInMillis: " + tickInMillis + " (expected: 1+)");
+        }
+
+        if ((wheelSize <= 0) || (wheelSize > (1 << 30))) {
+            throw new IllegalArgumentException("wheelSize: " + wheelSize + " (expected: 1-1073741824)");
+        }
+
+        int normalizedSize = Integer.highestOneBit(wheelSize);
+
+        if (normalizedSize < wheelSize) {
+            normalizedSize <<= 1;
+        }
+
+        this.tickInMillis = tickInMillis;
+        buckets = new Timer[normalizedSize + 1];
+        mask = normalizedSize - 1;
+        expiredBucket = normalizedSize;
+        startTime = now;
+        currentTime = now;
+    }
+
+    /**
+     * Schedule a timer, or reschedule it if it's already scheduled. The timer expires during the first
+     * {@link #advance(long)} call given a time after the deadline, rounded up to the next tick.
+     * 
+     * @param timer the timer to schedule
+     * @param delayInMillis the delay before the expiration, from the time given to the last {@link #advance(long)}
+     *        call, in milliseconds
+     */
+    public void schedule(Timer timer, long delayInMillis) {
+        if (delayInMillis < 0) {
+            throw new IllegalArgumentException("delayInMillis: " + delayInMillis + " (expected: 0+)");
+        }
+
+        if (timer.isScheduled()) {
+            unlink(timer);
+        } else {
+            size++;
+        }
+
+        // don't overflow for the very long delays
+        long delay = Math.min(delayInMillis, Long.MAX_VALUE / 4);
+        long deadlineTick = (currentTime - startTime + delay + tickInMillis - 1) / tickInMillis;
+
+        if (deadlineTick <= currentTick) {
+            deadlineTick = currentTick + 1;
+        }
+
+        timer.remainingRounds = (deadlineTick - currentTick - 1) / (mask + 1);
+        link(timer, (int) (deadlineTick & mask));
+    }
+
+    /**
+     * Cancel a timer
+     * 
+     * @param timer the timer to cancel
+     * @return <code>true</code> if the timer was scheduled
+     */
+    public boolean cancel(Timer timer) {
+        if (!timer.isScheduled()) {
+            return false;
+        }
+
+        unlink(timer);
+        size--;
+
+        return true;
+    }
+
+    /**
+     * Process the ticks elapsed up to the given time, and call the expired timers.
+     * 
+     * @param now the current time, in milliseconds
+     * @return the number of expired timers
+     */
+    public int advance(long now) {
+        if (now > currentTime) {
+            currentTime = now;
+        }
+
+        long targetTick = (currentTime - startTime) / tickInMillis;
+
+        if (size == 0) {
+            // nothing to expire, just move forward
+            currentTick = Math.max(currentTick, targetTick);
+
+            return 0;
+        }
+
+        while (currentTick < targetTick) {
+            currentTick++;
+            Timer timer = buckets[(int) (currentTick & mask)];
+
+            while (timer != null) {
+                Timer next = timer.next;
+
+                if (timer.remainingRounds <= 0) {
+                    unlink(timer);
+                    link(timer, expiredBucket);
+                } else {
+                    timer.remainingRounds--;
+                }
+
+                timer = next;
+            }
+        }
+
+        // the expired timers may schedule or cancel any timer, including the other expired ones
+        int expired = 0;
+        Timer timer;
+
+        while ((timer = buckets[expiredBucket]) != null) {
+            unlink(timer);
+            size--;
+            expired++;
+            timer.expired();
+        }
+
+        return expired;
+    }
+
+    /**
+     * Tells how long the owner thread can wait before the next call to {@link #advance(long)}.
+     * 
+     * @param now the current time, in milliseconds
+     * @return the delay before the end of the current tick in milliseconds, 0 if a tick has to be processed now, or -1
+     *         if no timer is scheduled
+     */
+    public long getNextTickDelay(long now) {
+        if (size == 0) {
+            return -1L;
+        }
+
+        if (buckets[expiredBucket] != null) {
+            return 0L;
+        }
+
+        return Math.max(0L, startTime + (currentTick + 1) * tickInMillis - now);
+    }
+
+    /**
+     * @return the time given to the last {@link #advance(long)} call, from which the delays are computed
+     */
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * @return the number of scheduled timers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return <code>true</code> if no timer is scheduled
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the duration of a tick, in milliseconds
+     */
+    public long getTickInMillis() {
+        return tickInMillis;
+    }
+
+    /**
+     * @return the number of buckets
+     */
+    public int getWheelSize() {
+        return mask + 1;
+    }
+
+    private void link(Timer timer, int bucket) {
+        Timer head = buckets[bucket];
+        timer.bucket = bucket;
+        timer.prev = null;
+        timer.next = head;
+
+        if (head != null) {
+            head.prev = timer;
+        }
+
+        buckets[bucket] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+
+        timer.prev = null;
+        timer.next = null;
+        timer.bucket = NOT_SCHEDULED;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link PooledBufferAllocator}
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class PooledBufferAllocatorTest {
+
+    @Test
+    public void allocated_buffers_are_rounded_to_their_size_class() {
+        PooledBufferAllocator allocator = new PooledBufferAllocator(true);
+
+        ByteBuffer small = allocator.allocate(10);
+        assertTrue(small.isDirect());
+        assertEquals(0, small.position());
+        assertEquals(10, small.limit());
+        assertEquals(PooledBufferAllocator.MIN_SIZE, small.capacity());
+
+        ByteBuffer medium = allocator.allocate(1025);
+        assertEquals(1025, medium.limit());
+        assertEquals(2048, medium.capacity());
+
+        ByteBuffer big = allocator.allocate(PooledBufferAllocator.MAX_SIZE + 1);
+        assertEquals(PooledBufferAllocator.MAX_SIZE + 1, big.capacity());
+        assertEquals(1, allocator.getUnpooledAllocations());
+        assertEquals(2, allocator.getSlabCount());
+    }
+
+    @Test
+    public void released_buffers_are_reused() {
+        PooledBufferAllocator allocator = new PooledBufferAllocator(false);
+
+        ByteBuffer buffer = allocator.allocate(100);
+        assertFalse(buffer.isDirect());
+        buffer.put((byte) 1);
+        allocator.release(buffer);
+
+        ByteBuffer reused = allocator.allocate(200);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(200, reused.limit());
+
+        // the buffers of a slab don't overlap
+        ByteBuffer other = allocator.allocate(200);
+        assertNotSame(reused, other);
+        reused.put(0, (byte) 1);
+        assertEquals(0, other.get(0));
+        assertEquals(1, allocator.getSlabCount());
+    }
+
+    @Test
+    public void slab_buffers_are_shared_between_threads() throws InterruptedException {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(true);
+        final int count = PooledBufferAllocator.SLAB_SIZE / PooledBufferAllocator.MAX_SIZE;
+
+        allocator.allocate(PooledBufferAllocator.MAX_SIZE);
+        assertEquals(1, allocator.getSlabCount());
+
+        // the other buffers of the slab are available to the other threads
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i < count; i++) {
+                    allocator.allocate(PooledBufferAllocator.MAX_SIZE);
+                }
+            }
+        };
+        other.start();
+        other.join();
+
+        assertEquals(count - 1, allocator.getArenaAllocations());
+        assertEquals(1, allocator.getSlabCount());
+
+        allocator.allocate(PooledBufferAllocator.MAX_SIZE);
+        assertEquals(2, allocator.getSlabCount());
+    }
+
+    @Test
+    public void foreign_buffers_are_ignored() {
+        PooledBufferAllocator allocator = new PooledBufferAllocator(true);
+
+        allocator.release(ByteBuffer.allocate(1024));
+        allocator.release(ByteBuffer.allocateDirect(1000));
+
+        ByteBuffer buffer = allocator.allocate(1000);
+        assertEquals(1024, buffer.capacity());
+        assertEquals(1, allocator.getSlabCount());
+    }
+
+    @Test
+    public void foreign_buffers_of_a_pooled_size_are_not_adopted() {
+        PooledBufferAllocator allocator = new PooledBufferAllocator(true);
+        ByteBuffer foreign = ByteBuffer.allocateDirect(1024);
+
+        allocator.release(foreign);
+
+        assertNotSame(foreign, allocator.allocate(1024));
+    }
+
+    @Test
+    public void buffers_released_twice_have_a_single_owner() {
+        PooledBufferAllocator allocator = new PooledBufferAllocator(true);
+        ByteBuffer buffer = allocator.allocate(1024);
+
+        allocator.release(buffer);
+        allocator.release(buffer);
+
+        assertSame(buffer, allocator.allocate(1024));
+        assertNotSame(buffer, allocator.allocate(1024));
+    }
+
+    @Test
+    public void buffers_released_by_a_terminated_thread_are_reused() throws InterruptedException {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(true);
+        final int count = PooledBufferAllocator.SLAB_SIZE / PooledBufferAllocator.MAX_SIZE;
+        final ByteBuffer[] buffers = new ByteBuffer[count];
+
+        for (int i = 0; i < count; i++) {
+            buffers[i] = allocator.allocate(PooledBufferAllocator.MAX_SIZE);
+        }
+
+        // the buffers go in the cache of the releasing thread
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                for (ByteBuffer buffer : buffers) {
+                    allocator.release(buffer);
+                }
+            }
+        };
+        other.start();
+        other.join();
+
+        for (int i = 0; i < count; i++) {
+            allocator.allocate(PooledBufferAllocator.MAX_SIZE);
+        }
+
+        assertEquals(1, allocator.getSlabCount());
+    }
+}
@@ -0,0 +1,278 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.filter.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.AbstractIoFilter;
+import org.apache.mina.api.IoFilter;
+import org.apache.mina.api.IoFuture;
+import org.apache.mina.api.IoService;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.api.IoSessionConfig;
+import org.apache.mina.codec.StatelessProtocolDecoder;
+import org.apache.mina.filterchain.ReadFilterChainController;
+import org.apache.mina.session.AbstractIoSession;
+import org.apache.mina.session.WriteRequest;
+import org.apache.mina.util.SystemClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ParallelDecodeFilter}
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class ParallelDecodeFilterTest {
+    private static final int FRAMES = 200;
+
+    /** decode the frames in a random time, so they complete out of order */
+    private final StatelessProtocolDecoder<Integer, String> decoder = new StatelessProtocolDecoder<Integer, String>() {
+        @Override
+        public Void createDecoderState() {
+            return null;
+        }
+
+        @Override
+        public String decode(Integer input, Void context) {
+            try {
+                Thread.sleep((long) (Math.random() * 2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return "message " + input;
+        }
+
+        @Override
+        public void finishDecode(Void context) {
+        }
+    };
+
+    private ExecutorService pool;
+
+    /** the single thread playing the selector loop */
+    private ExecutorService loop;
+
+    @Before
+    public void setup() {
+        pool = Executors.newFixedThreadPool(4);
+        loop = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void shutdown() {
+        pool.shutdown();
+        loop.shutdown();
+    }
+
+    @Test
+    public void decode_in_order_in_the_read_thread() throws InterruptedException {
+        final ParallelDecodeFilter<Integer, String> filter = new ParallelDecodeFilter<Integer, String>(decoder, pool,
+                16);
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch done = new CountDownLatch(FRAMES);
+        final Thread[] loopThread = new Thread[1];
+
+        IoFilter collector = new AbstractIoFilter() {
+            @Override
+            public void messageReceived(IoSession session, Object message, ReadFilterChainController controller) {
+                received.add((String) message);
+                threads.add(Thread.currentThread());
+                done.countDown();
+            }
+        };
+
+        final DummySession session = new DummySession(filter, collector);
+
+        // the frames are received by the read thread
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                loopThread[0] = Thread.currentThread();
+
+                for (int i = 0; i < FRAMES; i++) {
+                    filter.messageReceived(session, i, session);
+                }
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < FRAMES; i++) {
+            assertEquals("message " + i, received.get(i));
+            assertEquals(loopThread[0], threads.get(i));
+        }
+
+        // more frames than the session queue size have been decoded at once
+        assertTrue(session.suspended > 0);
+        assertEquals(session.suspended, session.resumed);
+    }
+
+    @Test
+    public void decode_errors_are_processed_by_the_session() throws InterruptedException {
+        final IllegalStateException error = new IllegalStateException("bad frame");
+        final ParallelDecodeFilter<Integer, String> filter = new ParallelDecodeFilter<Integer, String>(
+                new StatelessProtocolDecoder<Integer, String>() {
+                    @Override
+                    public Void createDecoderState() {
+                        return null;
+                    }
+
+                    @Override
+                    public String decode(Integer input, Void context) {
+                        throw error;
+                    }
+
+                    @Override
+                    public void finishDecode(Void context) {
+                    }
+                }, pool, 16);
+
+        final DummySession session = new DummySession(filter);
+
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                filter.messageReceived(session, 1, session);
+            }
+        });
+
+        assertTrue(session.exceptionCaught.await(10, TimeUnit.SECONDS));
+        assertEquals(error, session.exception);
+    }
+
+    @Test
+    public void decode_in_place_without_read_thread() {
+        ParallelDecodeFilter<Integer, String> filter = new ParallelDecodeFilter<Integer, String>(decoder, pool, 16);
+        IoSession session = mock(IoSession.class);
+        ReadFilterChainController controller = mock(ReadFilterChainController.class);
+
+        filter.messageReceived(session, 1, controller);
+
+        verify(controller).callReadNextFilter("message 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void session_queue_size_check() {
+        new ParallelDecodeFilter<Integer, String>(decoder, pool, 0);
+    }
+
+    /** a session with its own read thread, counting the read suspensions */
+    private class DummySession extends AbstractIoSession {
+        private volatile int suspended;
+
+        private volatile int resumed;
+
+        private final CountDownLatch exceptionCaught = new CountDownLatch(1);
+
+        private volatile Exception exception;
+
+        private DummySession(IoFilter... filters) {
+            super(service(filters), null);
+        }
+
+        @Override
+        public Executor getReadExecutor() {
+            return loop;
+        }
+
+        @Override
+        public void processException(Exception t) {
+            exception = t;
+            exceptionCaught.countDown();
+        }
+
+        @Override
+        public IoFuture<Void> close(boolean immediately) {
+            return null;
+        }
+
+        @Override
+        public IoSessionConfig getConfig() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public boolean isReadSuspended() {
+            return false;
+        }
+
+        @Override
+        public boolean isWriteSuspended() {
+            return false;
+        }
+
+        @Override
+        public void resumeRead() {
+            resumed++;
+        }
+
+        @Override
+        public void resumeWrite() {
+        }
+
+        @Override
+        public void suspendRead() {
+            suspended++;
+        }
+
+        @Override
+        public void suspendWrite() {
+        }
+
+        @Override
+        public WriteRequest enqueueWriteRequest(WriteRequest writeRequest) {
+            return null;
+        }
+    }
+
+    private static IoService service(IoFilter... filters) {
+        IoService service = mock(IoService.class);
+        when(service.getClock()).thenReturn(SystemClock.INSTANCE);
+        when(service.getFilters()).thenReturn(filters);
+        return service;
+    }
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.apache.mina.api.IoSession;
 import org.apache.mina.codec.ProtocolDecoder;
@@ -118,6 +119,35 @@ public class ProtocolCodecFilterTest {
         verifyNoMoreInteractions(encoder, decoder, session, ctrl);
     }
 
+    @Test
+    public void loop_decode_batch() {
+        // prepare
+        filter = new ProtocolCodecFilter(encoder, decoder, true);
+        IoSession session = mock(IoSession.class);
+        ByteBuffer buff = ByteBuffer.wrap("test".getBytes());
+
+        Object decodingState = new Object();
+
+        when(session.getAttribute(new AttributeKey<Object>(Object.class, "internal_decoder")))
+                .thenReturn(decodingState);
+
+        Object decoded1 = new Object();
+        Object decoded2 = new Object();
+
+        when(decoder.decode(buff, decodingState)).thenReturn(decoded1).thenReturn(decoded2).thenReturn(null);
+
+        ReadFilterChainController ctrl = mock(ReadFilterChainController.class);
+
+        // run
+        filter.messageReceived(session, buff, ctrl);
+
+        // verify
+        verify(decoder, times(3)).decode(buff, decodingState);
+        verify(ctrl).callReadNextFilterBatch(Arrays.asList(decoded1, decoded2));
+        verify(session).getAttribute(new AttributeKey<Object>(Object.class, "internal_decoder"));
+        verifyNoMoreInteractions(encoder, decoder, session, ctrl);
+    }
+
     @Test
     public void encode() {
         // prepare
@@ -0,0 +1,167 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.IoSession;
+import org.apache.mina.session.AttributeKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test for {@link AdaptiveHandlerExecutor}.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class AdaptiveHandlerExecutorTest {
+    private ExecutorService pool;
+
+    private AdaptiveHandlerExecutor executor;
+
+    private IoSession session;
+
+    private final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+    private int index;
+
+    @Before
+    public void setup() {
+        pool = Executors.newSingleThreadExecutor();
+        executor = new AdaptiveHandlerExecutor(pool, 5, TimeUnit.MILLISECONDS, 1000);
+        session = mockSession();
+    }
+
+    @After
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void fast_events_run_inline() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            assertSame(Thread.currentThread(), run(0));
+        }
+    }
+
+    @Test
+    public void slow_session_is_offloaded_then_back_inline() throws InterruptedException {
+        // the first slow event is run inline, as the session was fast so far
+        assertSame(Thread.currentThread(), run(100));
+
+        // the next events are offloaded, until the average gets low again
+        assertNotSame(Thread.currentThread(), run(0));
+
+        boolean inline = false;
+
+        for (int i = 0; i < 50 && !inline; i++) {
+            inline = run(0) == Thread.currentThread();
+        }
+
+        assertTrue(inline);
+
+        for (int i = 0; i < index; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    /**
+     * Execute an event taking the given time, and wait for its completion
+     *
+     * @return the thread which ran the event
+     */
+    private Thread run(final long millis) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final Thread[] thread = new Thread[1];
+        final int eventIndex = index++;
+
+        executor.execute(new Event() {
+            @Override
+            public IoSession getSession() {
+                return session;
+            }
+
+            @Override
+            public void visit(EventVisitor visitor) {
+                order.add(eventIndex);
+                thread[0] = Thread.currentThread();
+
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // let the queue account for the event
+        Thread.sleep(10);
+
+        return thread[0];
+    }
+
+    /**
+     * @return a mocked session, storing its attributes
+     */
+    private static IoSession mockSession() {
+        IoSession session = mock(IoSession.class);
+        final Map<AttributeKey<?>, Object> attributes = new ConcurrentHashMap<AttributeKey<?>, Object>();
+
+        when(session.getAttribute(any(AttributeKey.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+
+        when(session.setAttribute(any(AttributeKey.class), any())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                return attributes.put((AttributeKey<?>) args[0], args[1]);
+            }
+        });
+
+        return session;
+    }
+}
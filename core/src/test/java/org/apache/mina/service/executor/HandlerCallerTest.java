@@ -24,6 +24,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.mina.api.IdleStatus;
 import org.apache.mina.api.IoHandler;
 import org.apache.mina.api.IoService;
@@ -125,6 +128,7 @@ public class HandlerCallerTest {
         // verify
         verify(event).getSession();
         verify(event).getMessage();
+        verify(event).getAllocator();
         verify(session).getService();
         verify(service).getIoHandler();
         verify(handler).messageReceived(session, msg);
@@ -132,6 +136,23 @@ public class HandlerCallerTest {
         verifyNoMoreInteractions(session, event, handler);
     }
 
+    @Test
+    public void call_receive_batch() {
+        // prepare
+        List<Object> messages = Arrays.asList(new Object(), new Object());
+        ReceiveBatchEvent event = new ReceiveBatchEvent(session, messages);
+
+        // run
+        caller.visit(event);
+
+        // verify
+        verify(session).getService();
+        verify(service).getIoHandler();
+        verify(handler).messagesReceived(session, messages);
+
+        verifyNoMoreInteractions(session, handler);
+    }
+
     @Test
     public void call_msg_sent() {
         // prepare
@@ -0,0 +1,185 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.IoSession;
+import org.apache.mina.session.AttributeKey;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test for {@link OrderedWorkStealingHandlerExecutor}.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class OrderedWorkStealingHandlerExecutorTest {
+
+    @Test
+    public void execute_session_events_in_order() throws InterruptedException {
+        OrderedWorkStealingHandlerExecutor executor = new OrderedWorkStealingHandlerExecutor(4, 1000);
+        IoSession session = mockSession();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new RecordingEvent(session, i, order, null, done));
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void slow_session_does_not_block_others() throws InterruptedException {
+        OrderedWorkStealingHandlerExecutor executor = new OrderedWorkStealingHandlerExecutor(2, 1000);
+        IoSession slow = mockSession();
+        IoSession fast = mockSession();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+        executor.execute(new RecordingEvent(slow, 0, order, release, null));
+        executor.execute(new RecordingEvent(fast, 1, order, null, fastDone));
+
+        try {
+            assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void saturated_session_reads_are_suspended() throws InterruptedException {
+        OrderedWorkStealingHandlerExecutor executor = new OrderedWorkStealingHandlerExecutor(1, 4);
+        IoSession session = mockSession();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+
+        // the first event blocks the session queue
+        executor.execute(new RecordingEvent(session, 0, order, release, done));
+
+        for (int i = 1; i < 4; i++) {
+            executor.execute(new RecordingEvent(session, i, order, null, done));
+        }
+
+        verify(session, never()).suspendRead();
+        executor.execute(new RecordingEvent(session, 4, order, null, done));
+        verify(session).suspendRead();
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        InOrder inOrder = inOrder(session);
+        inOrder.verify(session).suspendRead();
+        inOrder.verify(session).resumeRead();
+    }
+
+    /**
+     * @return a mocked session, storing its attributes
+     */
+    private static IoSession mockSession() {
+        IoSession session = mock(IoSession.class);
+        final Map<AttributeKey<?>, Object> attributes = new ConcurrentHashMap<AttributeKey<?>, Object>();
+
+        when(session.getAttribute(any(AttributeKey.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+
+        when(session.setAttribute(any(AttributeKey.class), any())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                return attributes.put((AttributeKey<?>) args[0], args[1]);
+            }
+        });
+
+        return session;
+    }
+
+    /** An event recording its execution */
+    private static class RecordingEvent implements Event {
+        private final IoSession session;
+
+        private final int index;
+
+        private final List<Integer> order;
+
+        private final CountDownLatch release;
+
+        private final CountDownLatch done;
+
+        RecordingEvent(IoSession session, int index, List<Integer> order, CountDownLatch release,
+                CountDownLatch done) {
+            this.session = session;
+            this.index = index;
+            this.order = order;
+            this.release = release;
+            this.done = done;
+        }
+
+        @Override
+        public IoSession getSession() {
+            return session;
+        }
+
+        @Override
+        public void visit(EventVisitor visitor) {
+            order.add(index);
+
+            try {
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (done != null) {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoService;
+import org.apache.mina.api.IoSession;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link RingBufferHandlerExecutor}.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class RingBufferHandlerExecutorTest {
+    private static final int SESSIONS = 3;
+
+    private static final int MESSAGES = 300;
+
+    @Test
+    public void busy_spin() throws InterruptedException {
+        executeInOrder(WaitStrategy.BUSY_SPIN);
+    }
+
+    @Test
+    public void yielding() throws InterruptedException {
+        executeInOrder(WaitStrategy.YIELDING);
+    }
+
+    @Test
+    public void sleeping() throws InterruptedException {
+        executeInOrder(WaitStrategy.SLEEPING);
+    }
+
+    @Test
+    public void blocking() throws InterruptedException {
+        executeInOrder(WaitStrategy.BLOCKING);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ring_size_must_be_a_power_of_two() {
+        new RingBufferHandlerExecutor(1, 12);
+    }
+
+    /**
+     * A handler publishing more events than the ring can hold, from the worker running it, must not wait for itself
+     */
+    @Test
+    public void events_published_by_a_worker_in_a_full_ring_are_run_in_order() throws InterruptedException {
+        final RingBufferHandlerExecutor executor = new RingBufferHandlerExecutor(1, 2, WaitStrategy.BLOCKING);
+        final CountDownLatch done = new CountDownLatch(MESSAGES + 1);
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final IoService service = mock(IoService.class);
+        final IoSession session = mock(IoSession.class);
+        when(session.getId()).thenReturn(0L);
+        when(session.getService()).thenReturn(service);
+
+        when(service.getIoHandler()).thenReturn(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                received.add((Integer) message);
+
+                if ((Integer) message == -1) {
+                    for (int i = 0; i < MESSAGES; i++) {
+                        executor.execute(new ReceiveEvent(session, i));
+                    }
+                }
+
+                done.countDown();
+            }
+        });
+
+        executor.execute(new ReceiveEvent(session, -1));
+
+        try {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i <= MESSAGES; i++) {
+            assertEquals(Integer.valueOf(i - 1), received.get(i));
+        }
+    }
+
+    /**
+     * Publish the messages of each session from its own thread, through a ring much smaller than the number of
+     * messages, and check each session received its messages in order, on a single worker thread
+     */
+    private void executeInOrder(WaitStrategy waitStrategy) throws InterruptedException {
+        final RingBufferHandlerExecutor executor = new RingBufferHandlerExecutor(2, 8, waitStrategy);
+        final CountDownLatch done = new CountDownLatch(SESSIONS * MESSAGES);
+        final List<List<Integer>> received = new ArrayList<List<Integer>>();
+        final List<List<String>> threads = new ArrayList<List<String>>();
+        final IoService service = mock(IoService.class);
+
+        when(service.getIoHandler()).thenReturn(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                received.get((int) session.getId()).add((Integer) message);
+                threads.get((int) session.getId()).add(Thread.currentThread().getName());
+                done.countDown();
+            }
+        });
+
+        List<Thread> publishers = new ArrayList<Thread>();
+
+        for (int i = 0; i < SESSIONS; i++) {
+            received.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            threads.add(Collections.synchronizedList(new ArrayList<String>()));
+
+            final IoSession session = mock(IoSession.class);
+            when(session.getId()).thenReturn((long) i);
+            when(session.getService()).thenReturn(service);
+
+            publishers.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < MESSAGES; j++) {
+                        executor.execute(new ReceiveEvent(session, j));
+                    }
+                }
+            });
+        }
+
+        for (Thread publisher : publishers) {
+            publisher.start();
+        }
+
+        try {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < SESSIONS; i++) {
+            for (int j = 0; j < MESSAGES; j++) {
+                assertEquals(Integer.valueOf(j), received.get(i).get(j));
+            }
+
+            assertEquals(1, new HashSet<String>(threads.get(i)).size());
+        }
+    }
+}
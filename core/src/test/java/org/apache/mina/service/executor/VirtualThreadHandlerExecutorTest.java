@@ -0,0 +1,141 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.service.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.IoSession;
+import org.apache.mina.session.AttributeKey;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test for {@link VirtualThreadHandlerExecutor}. Skipped on the JVMs without virtual threads.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class VirtualThreadHandlerExecutorTest {
+
+    @Before
+    public void checkVirtualThreads() {
+        assumeTrue(VirtualThreadHandlerExecutor.isSupported());
+    }
+
+    @Test
+    public void execute_session_events_in_order() throws InterruptedException {
+        VirtualThreadHandlerExecutor executor = new VirtualThreadHandlerExecutor(1000);
+        IoSession session = mockSession();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(100);
+
+        for (int i = 0; i < 100; i++) {
+            final int index = i;
+            executor.execute(new TestEvent(session) {
+                @Override
+                public void visit(EventVisitor visitor) {
+                    order.add(index);
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void report_stalled_events() throws InterruptedException {
+        VirtualThreadHandlerExecutor executor = new VirtualThreadHandlerExecutor(1000, 20);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(new TestEvent(mockSession()) {
+            @Override
+            public void visit(EventVisitor visitor) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(1, executor.getStalledEventCount());
+    }
+
+    /**
+     * @return a mocked session, storing its attributes
+     */
+    private static IoSession mockSession() {
+        IoSession session = mock(IoSession.class);
+        final Map<AttributeKey<?>, Object> attributes = new ConcurrentHashMap<AttributeKey<?>, Object>();
+
+        when(session.getAttribute(any(AttributeKey.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+
+        when(session.setAttribute(any(AttributeKey.class), any())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                Object[] args = invocation.getArguments();
+                return attributes.put((AttributeKey<?>) args[0], args[1]);
+            }
+        });
+
+        return session;
+    }
+
+    private abstract static class TestEvent implements Event {
+        private final IoSession session;
+
+        TestEvent(IoSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public IoSession getSession() {
+            return session;
+        }
+    }
+}
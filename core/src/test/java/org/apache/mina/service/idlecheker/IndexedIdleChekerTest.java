@@ -23,6 +23,7 @@ package org.apache.mina.service.idlecheker;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.net.SocketAddress;
 
@@ -35,6 +36,7 @@ import org.apache.mina.service.idlechecker.IndexedIdleChecker;
 import org.apache.mina.session.AbstractIoSession;
 import org.apache.mina.session.AbstractIoSessionConfig;
 import org.apache.mina.session.WriteRequest;
+import org.apache.mina.util.SystemClock;
 import org.junit.Test;
 
 /**
@@ -56,6 +58,7 @@ public class IndexedIdleChekerTest {
     @Test
     public void dont_send_premature_events() {
         IoService service = mock(IoService.class);
+        when(service.getClock()).thenReturn(SystemClock.INSTANCE);
         DummySession session = new DummySession(service, idleChecker);
 
         session.getConfig().setIdleTimeInMillis(IdleStatus.READ_IDLE, 2000L);
@@ -73,6 +76,7 @@ public class IndexedIdleChekerTest {
     @Test
     public void read_event() {
         IoService service = mock(IoService.class);
+        when(service.getClock()).thenReturn(SystemClock.INSTANCE);
         DummySession session = new DummySession(service, idleChecker);
 
         session.getConfig().setIdleTimeInMillis(IdleStatus.READ_IDLE, 1000L);
@@ -91,6 +95,7 @@ public class IndexedIdleChekerTest {
     @Test
     public void write_event() {
         IoService service = mock(IoService.class);
+        when(service.getClock()).thenReturn(SystemClock.INSTANCE);
         DummySession session = new DummySession(service, idleChecker);
 
         session.getConfig().setIdleTimeInMillis(IdleStatus.WRITE_IDLE, 1000L);
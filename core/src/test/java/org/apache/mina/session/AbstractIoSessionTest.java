@@ -23,6 +23,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -33,15 +34,19 @@ import static org.mockito.Mockito.when;
 
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.mina.api.AbstractIoFilter;
 import org.apache.mina.api.IoFilter;
 import org.apache.mina.api.IoFuture;
 import org.apache.mina.api.IoService;
 import org.apache.mina.api.IoSession;
+import org.apache.mina.api.IoSession.SessionState;
 import org.apache.mina.api.IoSessionConfig;
 import org.apache.mina.filterchain.ReadFilterChainController;
 import org.apache.mina.filterchain.WriteFilterChainController;
+import org.apache.mina.util.SystemClock;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -147,6 +152,7 @@ public class AbstractIoSessionTest {
     @Before
     public void setup() {
         service = mock(IoService.class);
+        when(service.getClock()).thenReturn(SystemClock.INSTANCE);
 
         when(service.getFilters()).thenReturn(new IoFilter[] { filter1, filter2, filter3 });
     }
@@ -204,6 +210,7 @@ public class AbstractIoSessionTest {
     @Test
     public void chain_reads_with_writeback() {
         service = mock(IoService.class);
+        when(service.getClock()).thenReturn(SystemClock.INSTANCE);
         when(service.getFilters()).thenReturn(new IoFilter[] { filter1, filterWriteBack, filter3 });
         final DummySession session = new DummySession(service);
         final ByteBuffer buffer = ByteBuffer.allocate(1024);
@@ -223,6 +230,7 @@ public class AbstractIoSessionTest {
     @Test
     public void chain_reads_with_writeback_final() {
         service = mock(IoService.class);
+        when(service.getClock()).thenReturn(SystemClock.INSTANCE);
         when(service.getFilters()).thenReturn(new IoFilter[] { filterWriteBack, filter2, filter3 });
         final DummySession session = new DummySession(service);
         final ByteBuffer buffer = ByteBuffer.allocate(1024);
@@ -237,6 +245,22 @@ public class AbstractIoSessionTest {
         verifyNoMoreInteractions(filter1, filter2, filter3, filterWriteBack);
     }
 
+    @Test
+    public void chain_resume_reads() {
+        final DummySession session = new DummySession(service);
+        final Object message = new Object();
+
+        session.resumeReadChain(filter1, message);
+        verify(filter2).messageReceived(eq(session), eq(message), any(ReadFilterChainController.class));
+        verify(filter3).messageReceived(eq(session), eq(message), any(ReadFilterChainController.class));
+        verifyNoMoreInteractions(filter1, filter2, filter3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chain_resume_reads_unknown_filter() {
+        new DummySession(service).resumeReadChain(new PassthruFilter(), new Object());
+    }
+
     @Test
     public void chain_writes() {
         final DummySession session = new DummySession(service);
@@ -273,6 +297,90 @@ public class AbstractIoSessionTest {
         assertEquals(1024, session.getWrittenBytes());
     }
 
+    @Test
+    public void valid_transitions_are_applied() {
+        final DummySession session = new DummySession(service);
+
+        session.changeState(SessionState.CONNECTED);
+        session.changeState(SessionState.SECURING);
+        session.changeState(SessionState.SECURED);
+        session.changeState(SessionState.CLOSING);
+        session.changeState(SessionState.CLOSED);
+
+        assertEquals(SessionState.CLOSED, session.state);
+    }
+
+    @Test
+    public void invalid_transitions_are_rejected() {
+        final DummySession session = new DummySession(service);
+        assertRejected(session, SessionState.SECURED);
+        assertRejected(session, SessionState.CLOSED);
+
+        session.changeState(SessionState.CONNECTED);
+        assertRejected(session, SessionState.CLOSED);
+        assertRejected(session, SessionState.CREATED);
+
+        session.changeState(SessionState.CLOSING);
+        assertRejected(session, SessionState.CONNECTED);
+
+        session.changeState(SessionState.CLOSED);
+        assertRejected(session, SessionState.CLOSING);
+        assertEquals(SessionState.CLOSED, session.state);
+    }
+
+    private static void assertRejected(AbstractIoSession session, SessionState to) {
+        final SessionState from = session.state;
+
+        try {
+            session.changeState(to);
+            fail(from + " -> " + to + " should be rejected");
+        } catch (IllegalStateException e) {
+            // the state is unchanged
+            assertEquals(from, session.state);
+        }
+    }
+
+    @Test
+    public void concurrent_transitions_are_applied_once() throws InterruptedException {
+        final int threadCount = 8;
+
+        for (int i = 0; i < 100; i++) {
+            final DummySession session = new DummySession(service);
+            session.changeState(SessionState.CONNECTED);
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicInteger closing = new AtomicInteger();
+            final Thread[] threads = new Thread[threadCount];
+
+            for (int j = 0; j < threadCount; j++) {
+                threads[j] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+
+                        if (session.compareAndSetState(SessionState.CONNECTED, SessionState.CLOSING)) {
+                            closing.incrementAndGet();
+                        }
+                    }
+                };
+                threads[j].start();
+            }
+
+            start.countDown();
+
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(1, closing.get());
+            assertEquals(SessionState.CLOSING, session.state);
+        }
+    }
+
     private class PassthruFilter extends AbstractIoFilter {
 
     }
@@ -225,4 +225,24 @@ public class AttributeContainerTest {
         exception.expectMessage("Parameter >key< must not be null!");
         container.removeAttribute(null);
     }
+
+    /**
+     * Test if the attributes of a key without index are set, returned and removed. 
+     * @throws Exception
+     */
+    @Test
+    public void attributeWithoutIndex() throws Exception {
+        AttributeKey<Integer> key = new AttributeKey<Integer>(Integer.class, "notIndexedKey", false);
+        assertThat(key.getIndex(), is(AttributeKey.NO_INDEX));
+
+        assertThat(container.setAttribute(key, 123), is(nullValue()));
+        container.setAttribute(ATTRIBUTE_KEY, 456);
+        assertThat(container.getAttribute(key, DEFAULT_VALUE), is(123));
+        assertThat(container.getAttributeKeys().contains(key), is(true));
+        assertThat(container.getAttributeKeys().size(), is(2));
+
+        assertThat(container.removeAttribute(key), is(123));
+        assertThat(container.getAttribute(key), is(nullValue()));
+        assertThat(container.getAttributeKeys().contains(key), is(false));
+    }
 }
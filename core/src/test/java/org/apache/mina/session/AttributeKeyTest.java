@@ -135,4 +135,33 @@ public class AttributeKeyTest {
 
         assertThat(key1.hashCode(), is(key2.hashCode()));
     }
+
+    /**
+     * Test if two equal {@link AttributeKey}s share the same index, and if different keys get different indexes
+     * @throws Exception
+     */
+    @Test
+    public void indexValue() throws Exception {
+        AttributeKey<Number> key1 = new AttributeKey<Number>(Number.class, "indexedKey");
+        AttributeKey<Number> key2 = new AttributeKey<Number>(Number.class, "indexedKey");
+        AttributeKey<Number> key3 = new AttributeKey<Number>(Number.class, "otherIndexedKey");
+
+        assertThat(key1.getIndex(), is(key2.getIndex()));
+        assertThat(key1.getIndex() == key3.getIndex(), is(false));
+        assertThat(AttributeKey.forIndex(key3.getIndex()).equals(key3), is(true));
+    }
+
+    /**
+     * Test if a key which can't be given a new index reuses the index of an equal key, or has no index
+     * @throws Exception
+     */
+    @Test
+    public void noIndexValue() throws Exception {
+        AttributeKey<Number> key1 = new AttributeKey<Number>(Number.class, "sharedIndexKey");
+        AttributeKey<Number> key2 = new AttributeKey<Number>(Number.class, "sharedIndexKey", false);
+        AttributeKey<Number> key3 = new AttributeKey<Number>(Number.class, "notIndexedKey", false);
+
+        assertThat(key2.getIndex(), is(key1.getIndex()));
+        assertThat(key3.getIndex(), is(AttributeKey.NO_INDEX));
+    }
 }
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests the class {@link DefaultWriteQueue}
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class DefaultWriteQueueTest {
+
+    @Test
+    public void pending_bytes_are_counted_until_written() {
+        DefaultWriteQueue queue = new DefaultWriteQueue();
+
+        assertTrue(queue.offer(new DefaultWriteRequest(ByteBuffer.allocate(10))));
+        assertTrue(queue.offer(new DefaultWriteRequest(ByteBuffer.allocate(5))));
+        assertEquals(15L, queue.getPendingBytes());
+
+        assertEquals(3L, queue.bytesWritten(12));
+    }
+
+    @Test
+    public void an_empty_queue_is_released_and_refuses_the_requests() {
+        DefaultWriteQueue queue = new DefaultWriteQueue();
+
+        assertTrue(queue.release());
+
+        assertFalse(queue.offer(new DefaultWriteRequest(ByteBuffer.allocate(10))));
+        assertTrue(queue.isEmpty());
+        assertEquals(0L, queue.getPendingBytes());
+    }
+
+    @Test
+    public void a_queue_with_pending_writes_is_not_released() {
+        DefaultWriteQueue queue = new DefaultWriteQueue();
+        WriteRequest first = new DefaultWriteRequest(ByteBuffer.allocate(10));
+        queue.offer(first);
+
+        assertFalse(queue.release());
+
+        WriteRequest second = new DefaultWriteRequest(ByteBuffer.allocate(5));
+        assertTrue(queue.offer(second));
+        assertEquals(15L, queue.getPendingBytes());
+        assertEquals(first, queue.poll());
+        assertEquals(second, queue.poll());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link AdaptiveReadSizePredictor}
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class AdaptiveReadSizePredictorTest {
+
+    @Test
+    public void grow_when_the_guess_is_filled() {
+        AdaptiveReadSizePredictor predictor = new AdaptiveReadSizePredictor(64, 1024, 64 * 1024);
+        assertEquals(1024, predictor.nextReadSize());
+
+        int previous = predictor.nextReadSize();
+        predictor.record(previous);
+        assertTrue(predictor.nextReadSize() > previous);
+
+        // never more than the maximum
+        for (int i = 0; i < 100; i++) {
+            predictor.record(predictor.nextReadSize());
+        }
+
+        assertEquals(64 * 1024, predictor.nextReadSize());
+    }
+
+    @Test
+    public void shrink_after_two_small_reads() {
+        AdaptiveReadSizePredictor predictor = new AdaptiveReadSizePredictor(64, 1024, 64 * 1024);
+
+        predictor.record(10);
+        assertEquals(1024, predictor.nextReadSize());
+
+        predictor.record(10);
+        assertTrue(predictor.nextReadSize() < 1024);
+
+        // never less than the minimum
+        for (int i = 0; i < 100; i++) {
+            predictor.record(10);
+        }
+
+        assertEquals(64, predictor.nextReadSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_sizes() {
+        new AdaptiveReadSizePredictor(1024, 64, 64 * 1024);
+    }
+}
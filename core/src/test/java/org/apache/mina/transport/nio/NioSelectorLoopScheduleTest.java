@@ -0,0 +1,114 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Check the tasks scheduled on a {@link NioSelectorLoop} are run by the loop thread, unless they are cancelled.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioSelectorLoopScheduleTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    @Test
+    public void scheduled_task_is_run_by_the_loop_after_its_delay() throws InterruptedException {
+        final NioSelectorLoop loop = new NioSelectorLoop("schedule");
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicBoolean inLoop = new AtomicBoolean();
+
+        long start = System.nanoTime();
+        ScheduledTask task = loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                inLoop.set(loop.inLoop());
+                latch.countDown();
+            }
+        }, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        assertTrue(inLoop.get());
+        assertTrue(task.isDone());
+        assertFalse(task.isCancelled());
+        assertFalse(task.cancel());
+    }
+
+    @Test
+    public void cancelled_task_is_not_run() throws InterruptedException {
+        final NioSelectorLoop loop = new NioSelectorLoop("schedule");
+        final AtomicBoolean run = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        ScheduledTask task = loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                run.set(true);
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(task.cancel());
+        assertTrue(task.isCancelled());
+        assertTrue(task.isDone());
+
+        // a later task, for knowing the first deadline is over
+        loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 300, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertFalse(run.get());
+        assertTrue(loop.getTimerWheel().isEmpty());
+    }
+
+    @Test
+    public void scheduled_task_is_run_with_the_loop_tick_precision() throws InterruptedException {
+        final NioSelectorLoop loop = new NioSelectorLoop("schedule", -1, SelectStrategy.BLOCKING, 1000L);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        loop.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+
+        // rounded up to the end of the first tick
+        assertFalse(latch.await(300, TimeUnit.MILLISECONDS));
+        assertTrue(latch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loop_tick_must_be_positive() {
+        new NioSelectorLoop("schedule", -1, SelectStrategy.BLOCKING, 0L);
+    }
+}
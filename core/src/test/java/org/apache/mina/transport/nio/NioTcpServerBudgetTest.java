@@ -0,0 +1,127 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.junit.Test;
+
+/**
+ * Check that the sessions sharing a selector loop with a session having a lot of pending writes are still served when
+ * the loop iteration budgets are set, and that the budget limited session gets all its data.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioTcpServerBudgetTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    private static final int MESSAGE_COUNT = 200;
+
+    private static final int MESSAGE_SIZE = 4096;
+
+    @Test
+    public void budget_limited_writes_are_fully_delivered() throws IOException, InterruptedException {
+        final CountDownLatch openLatch = new CountDownLatch(2);
+        SelectorLoopPool selectorLoopPool = new FixedSelectorLoopPool("Server", 1);
+        final NioTcpServer server = new NioTcpServer(selectorLoopPool.getSelectorLoop(), selectorLoopPool, null);
+        server.setFilters();
+        server.getSessionConfig().setMaxWritesPerTurn(1);
+        server.getSessionConfig().setMaxWriteBytesPerTurn(1024);
+        server.getSessionConfig().setMaxReadsPerTurn(4);
+        server.getSessionConfig().setAdaptiveReadSize(true);
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                openLatch.countDown();
+            }
+
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                ByteBuffer buffer = (ByteBuffer) message;
+
+                if (buffer.get(0) == 'F') {
+                    // fire hose : queue a lot of data
+                    for (int i = 0; i < MESSAGE_COUNT; i++) {
+                        ByteBuffer data = ByteBuffer.allocate(MESSAGE_SIZE);
+
+                        while (data.hasRemaining()) {
+                            data.put((byte) i);
+                        }
+
+                        data.flip();
+                        session.write(data);
+                    }
+                } else {
+                    // echo
+                    ByteBuffer echo = ByteBuffer.allocate(buffer.remaining());
+                    echo.put(buffer);
+                    echo.flip();
+                    session.write(echo);
+                }
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket fireHose = new Socket("127.0.0.1", port);
+        Socket quiet = new Socket("127.0.0.1", port);
+        assertTrue(openLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        fireHose.getOutputStream().write('F');
+        fireHose.getOutputStream().flush();
+
+        // the quiet session is served while the fire hose session is being written
+        quiet.setSoTimeout(WAIT_TIME);
+        quiet.getOutputStream().write("ping".getBytes());
+        quiet.getOutputStream().flush();
+
+        byte[] echo = new byte[4];
+        new DataInputStream(quiet.getInputStream()).readFully(echo);
+        assertArrayEquals("ping".getBytes(), echo);
+
+        // and the fire hose gets all its data, in order
+        fireHose.setSoTimeout(WAIT_TIME);
+        DataInputStream in = new DataInputStream(fireHose.getInputStream());
+        byte[] data = new byte[MESSAGE_SIZE];
+
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            in.readFully(data);
+            assertEquals((byte) i, data[0]);
+            assertEquals((byte) i, data[MESSAGE_SIZE - 1]);
+        }
+
+        fireHose.close();
+        quiet.close();
+        server.unbind();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.junit.Test;
+
+/**
+ * Check that concurrent calls to {@link NioTcpSession#close(boolean)} run the close sequence once.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioTcpSessionCloseTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    private static final int SESSION_COUNT = 20;
+
+    @Test
+    public void concurrent_closes_run_the_close_sequence_once() throws Exception {
+        final List<IoSession> sessions = new CopyOnWriteArrayList<IoSession>();
+        final Map<Long, AtomicInteger> closedEvents = new ConcurrentHashMap<Long, AtomicInteger>();
+        final CountDownLatch openedLatch = new CountDownLatch(SESSION_COUNT);
+        final CountDownLatch closedLatch = new CountDownLatch(SESSION_COUNT);
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                closedEvents.put(session.getId(), new AtomicInteger());
+                sessions.add(session);
+                openedLatch.countDown();
+            }
+
+            @Override
+            public void sessionClosed(IoSession session) {
+                closedEvents.get(session.getId()).incrementAndGet();
+                closedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+        Socket[] clients = new Socket[SESSION_COUNT];
+
+        for (int i = 0; i < SESSION_COUNT; i++) {
+            clients[i] = new Socket("127.0.0.1", port);
+        }
+
+        assertTrue(openedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        for (final IoSession session : sessions) {
+            final CyclicBarrier barrier = new CyclicBarrier(2);
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        return;
+                    }
+
+                    session.close(true);
+                }
+            };
+            other.start();
+
+            barrier.await();
+            session.close(true);
+            other.join();
+        }
+
+        assertTrue(closedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        Thread.sleep(200);
+
+        for (AtomicInteger count : closedEvents.values()) {
+            assertEquals(1, count.get());
+        }
+
+        for (Socket client : clients) {
+            client.close();
+        }
+
+        server.unbind();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.api.AbstractIoFilter;
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.buffer.BufferAllocator;
+import org.apache.mina.filterchain.ReadFilterChainController;
+import org.apache.mina.service.executor.OrderedHandlerExecutor;
+import org.junit.Test;
+
+/**
+ * Check the buffers given to an {@link org.apache.mina.api.IoHandler} running in an executor only hold the received
+ * bytes, and are released to the allocator when they are pooled.
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioTcpSessionExecutorReceiveTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    @Test
+    public void received_buffer_is_a_copy_of_the_read_bytes() throws IOException, InterruptedException {
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+        final AtomicInteger capacity = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger();
+
+        final NioTcpServer server = new NioTcpServer(new FixedSelectorLoopPool("Server", 1),
+                new OrderedHandlerExecutor(1, 16));
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                capacity.set(((ByteBuffer) message).capacity());
+                remaining.set(((ByteBuffer) message).remaining());
+                receivedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.getOutputStream().write("hello".getBytes());
+        client.getOutputStream().flush();
+
+        assertTrue(receivedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertEquals(5, remaining.get());
+        assertEquals(5, capacity.get());
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void batched_read_buffer_is_a_copy_of_the_read_bytes() throws IOException, InterruptedException {
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+        final AtomicInteger capacity = new AtomicInteger();
+        final AtomicInteger remaining = new AtomicInteger();
+
+        final NioTcpServer server = new NioTcpServer(new FixedSelectorLoopPool("Server", 1),
+                new OrderedHandlerExecutor(1, 16));
+        // push the selector loop read buffer itself in a batch
+        server.setFilters(new AbstractIoFilter() {
+            @Override
+            public void messageReceived(IoSession session, Object message, ReadFilterChainController controller) {
+                controller.callReadNextFilterBatch(Collections.singletonList(message));
+            }
+        });
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messagesReceived(IoSession session, List<?> messages) {
+                capacity.set(((ByteBuffer) messages.get(0)).capacity());
+                remaining.set(((ByteBuffer) messages.get(0)).remaining());
+                receivedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.getOutputStream().write("hello".getBytes());
+        client.getOutputStream().flush();
+
+        assertTrue(receivedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertEquals(5, remaining.get());
+        assertEquals(5, capacity.get());
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void pooled_received_buffers_are_released() throws IOException, InterruptedException {
+        final int messageCount = 100;
+        final CountDownLatch receivedLatch = new CountDownLatch(messageCount);
+        final CountingAllocator allocator = new CountingAllocator();
+
+        final NioTcpServer server = new NioTcpServer(new FixedSelectorLoopPool("Server", 1),
+                new OrderedHandlerExecutor(1, 16));
+        server.getSessionConfig().setBufferAllocator(allocator);
+        server.getSessionConfig().setPooledReceivedBuffers(true);
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                ByteBuffer buffer = (ByteBuffer) message;
+
+                while (buffer.hasRemaining()) {
+                    buffer.get();
+                    receivedLatch.countDown();
+                }
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+
+        for (int i = 0; i < messageCount; i++) {
+            client.getOutputStream().write(i);
+            client.getOutputStream().flush();
+        }
+
+        assertTrue(receivedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        // the buffer is released after the handler returns
+        long deadline = System.currentTimeMillis() + WAIT_TIME;
+
+        while (allocator.released.get() < allocator.allocated.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(allocator.allocated.get() > 0);
+        assertEquals(allocator.allocated.get(), allocator.released.get());
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void pooled_received_buffers_can_be_echoed() throws IOException, InterruptedException {
+        final int messageCount = 100;
+        final CountingAllocator allocator = new CountingAllocator();
+
+        final NioTcpServer server = new NioTcpServer(new FixedSelectorLoopPool("Server", 1),
+                new OrderedHandlerExecutor(1, 16));
+        server.getSessionConfig().setBufferAllocator(allocator);
+        server.getSessionConfig().setPooledReceivedBuffers(true);
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                // the write takes the release of the buffer over
+                session.write(message);
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+
+        for (int i = 0; i < messageCount; i++) {
+            client.getOutputStream().write(i + 1);
+            client.getOutputStream().flush();
+        }
+
+        byte[] echoed = new byte[messageCount];
+        new DataInputStream(client.getInputStream()).readFully(echoed);
+
+        for (int i = 0; i < messageCount; i++) {
+            assertEquals(i + 1, echoed[i]);
+        }
+
+        // the buffers are released once written
+        long deadline = System.currentTimeMillis() + WAIT_TIME;
+
+        while (allocator.released.get() < allocator.allocated.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(allocator.allocated.get(), allocator.released.get());
+
+        client.close();
+        server.unbind();
+    }
+
+    private static class CountingAllocator implements BufferAllocator {
+        private final AtomicInteger allocated = new AtomicInteger();
+
+        private final AtomicInteger released = new AtomicInteger();
+
+        @Override
+        public ByteBuffer allocate(int capacity) {
+            allocated.incrementAndGet();
+
+            return ByteBuffer.allocate(capacity);
+        }
+
+        @Override
+        public void release(ByteBuffer buffer) {
+            released.incrementAndGet();
+
+            // a released buffer is reused : its content must not be read anymore
+            buffer.clear();
+
+            while (buffer.hasRemaining()) {
+                buffer.put((byte) 0);
+            }
+        }
+
+        @Override
+        public boolean isDirect() {
+            return false;
+        }
+    }
+}
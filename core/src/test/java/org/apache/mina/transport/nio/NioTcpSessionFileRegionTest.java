@@ -0,0 +1,184 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.mina.api.AbstractIoFilter;
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoFuture;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.file.DefaultFileRegion;
+import org.apache.mina.file.FileRegion;
+import org.apache.mina.filterchain.WriteFilterChainController;
+import org.apache.mina.session.WriteRequest;
+import org.junit.Test;
+
+/**
+ * Check that a {@link FileRegion} written to a {@link NioTcpSession} goes through the filter chain, is transferred in
+ * order with the other messages, and generates a message sent event once fully written.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioTcpSessionFileRegionTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    private static final int FILE_SIZE = 1024 * 1024;
+
+    private static final int OFFSET = 100;
+
+    @Test
+    public void file_region_is_transferred_after_the_queued_messages() throws IOException, InterruptedException {
+        final byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+
+        final File file = File.createTempFile("mina", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content);
+        out.close();
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final FileChannel fileChannel = raf.getChannel();
+        final FileRegion region = new DefaultFileRegion(fileChannel, OFFSET, FILE_SIZE - OFFSET);
+        final AtomicReference<Object> sent = new AtomicReference<Object>();
+        final AtomicReference<Object> filtered = new AtomicReference<Object>();
+        final CountDownLatch sentLatch = new CountDownLatch(1);
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters(new AbstractIoFilter() {
+            @Override
+            public void messageWriting(IoSession session, WriteRequest message, WriteFilterChainController controller) {
+                if (message.getMessage() instanceof FileRegion) {
+                    filtered.set(message.getMessage());
+                }
+
+                super.messageWriting(session, message, controller);
+            }
+        });
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                ByteBuffer header = ByteBuffer.allocate(4);
+                header.putInt(FILE_SIZE - OFFSET);
+                header.flip();
+                session.write(header);
+                session.write(region);
+            }
+
+            @Override
+            public void messageSent(IoSession session, Object message) {
+                if (message instanceof FileRegion) {
+                    sent.set(message);
+                    sentLatch.countDown();
+                }
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+
+        DataInputStream in = new DataInputStream(client.getInputStream());
+        assertEquals(FILE_SIZE - OFFSET, in.readInt());
+
+        byte[] data = new byte[FILE_SIZE - OFFSET];
+        in.readFully(data);
+
+        byte[] expected = new byte[FILE_SIZE - OFFSET];
+        System.arraycopy(content, OFFSET, expected, 0, expected.length);
+        assertArrayEquals(expected, data);
+
+        assertTrue(sentLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertSame(region, filtered.get());
+        assertSame(region, sent.get());
+        assertEquals(0, region.getRemainingBytes());
+        assertEquals(FILE_SIZE - OFFSET, region.getWrittenBytes());
+
+        client.close();
+        server.unbind();
+        raf.close();
+    }
+
+    @Test
+    public void write_future_is_completed_with_the_exception_of_the_chain() throws IOException, InterruptedException {
+        final File file = File.createTempFile("mina", ".bin");
+        file.deleteOnExit();
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final FileRegion region = new DefaultFileRegion(raf.getChannel(), 0, 0);
+        final AtomicReference<IoFuture<Void>> future = new AtomicReference<IoFuture<Void>>();
+        final CountDownLatch writtenLatch = new CountDownLatch(1);
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters(new AbstractIoFilter() {
+            @Override
+            public void messageWriting(IoSession session, WriteRequest message, WriteFilterChainController controller) {
+                throw new IllegalStateException("can't write " + message.getMessage());
+            }
+        });
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                future.set(session.writeWithFuture(region));
+                writtenLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+        Socket client = new Socket("127.0.0.1", port);
+
+        assertTrue(writtenLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertTrue(future.get().isDone());
+
+        try {
+            future.get().get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        client.close();
+        server.unbind();
+        raf.close();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoFuture;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.buffer.BufferAllocator;
+import org.apache.mina.filter.flowcontrol.WritabilityFlowControlFilter;
+import org.junit.Test;
+
+/**
+ * Check that the reads and writes of a {@link NioTcpSession} can be suspended and resumed from any thread.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioTcpSessionSuspendTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    @Test
+    public void no_message_is_received_while_the_reads_are_suspended() throws IOException, InterruptedException {
+        final AtomicReference<IoSession> serverSession = new AtomicReference<IoSession>();
+        final CountDownLatch openedLatch = new CountDownLatch(1);
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+        final AtomicInteger receivedBytes = new AtomicInteger();
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                session.suspendRead();
+                serverSession.set(session);
+                openedLatch.countDown();
+            }
+
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                receivedBytes.addAndGet(((ByteBuffer) message).remaining());
+                receivedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        assertTrue(openedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertTrue(serverSession.get().isReadSuspended());
+
+        client.getOutputStream().write("hello".getBytes());
+        client.getOutputStream().flush();
+
+        Thread.sleep(200);
+        assertEquals(0, receivedBytes.get());
+
+        // resume from a foreign thread
+        serverSession.get().resumeRead();
+        assertFalse(serverSession.get().isReadSuspended());
+        assertTrue(receivedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void reads_are_resumed_once_every_suspension_is_released() throws IOException, InterruptedException {
+        final List<IoSession> serverSessions = new CopyOnWriteArrayList<IoSession>();
+        final CountDownLatch openedLatch = new CountDownLatch(2);
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+        final AtomicInteger receivedBytes = new AtomicInteger();
+        final WritabilityFlowControlFilter flowControl = new WritabilityFlowControlFilter();
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters(flowControl);
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                serverSessions.add(session);
+                openedLatch.countDown();
+            }
+
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                receivedBytes.addAndGet(((ByteBuffer) message).remaining());
+                receivedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        Socket peerClient = new Socket("127.0.0.1", port);
+        assertTrue(openedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        // the sessions may be opened in any order
+        final boolean clientFirst = ((InetSocketAddress) serverSessions.get(0).getRemoteAddress()).getPort() == client
+                .getLocalPort();
+        final IoSession session = serverSessions.get(clientFirst ? 0 : 1);
+        final IoSession peer = serverSessions.get(clientFirst ? 1 : 0);
+
+        // two sources : the flow control of the peer, and a filter of our own
+        WritabilityFlowControlFilter.addPeer(peer, session);
+        flowControl.writabilityChanged(peer, false);
+        session.suspendRead();
+        assertTrue(session.isReadSuspended());
+
+        client.getOutputStream().write("hello".getBytes());
+        client.getOutputStream().flush();
+
+        // the peer is writable again, but our own suspension is still there
+        flowControl.writabilityChanged(peer, true);
+        assertTrue(session.isReadSuspended());
+
+        Thread.sleep(200);
+        assertEquals(0, receivedBytes.get());
+
+        session.resumeRead();
+        assertFalse(session.isReadSuspended());
+        assertTrue(receivedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        client.close();
+        peerClient.close();
+        server.unbind();
+    }
+
+    @Test
+    public void messages_are_queued_while_the_writes_are_suspended() throws IOException, InterruptedException {
+        final AtomicReference<IoSession> serverSession = new AtomicReference<IoSession>();
+        final CountDownLatch openedLatch = new CountDownLatch(1);
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                session.suspendWrite();
+                serverSession.set(session);
+                openedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+        assertTrue(openedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < 10; i++) {
+            ByteBuffer data = ByteBuffer.allocate(4);
+            data.putInt(i);
+            data.flip();
+            serverSession.get().write(data);
+        }
+
+        Thread.sleep(200);
+        assertEquals(0, client.getInputStream().available());
+
+        serverSession.get().resumeWrite();
+
+        DataInputStream in = new DataInputStream(client.getInputStream());
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, in.readInt());
+        }
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void queued_buffers_are_released_when_the_session_is_closed() throws IOException, InterruptedException {
+        final AtomicInteger allocated = new AtomicInteger();
+        final AtomicInteger released = new AtomicInteger();
+        final List<IoFuture<Void>> futures = new CopyOnWriteArrayList<IoFuture<Void>>();
+        final CountDownLatch closedLatch = new CountDownLatch(1);
+
+        final NioTcpServer server = new NioTcpServer();
+        server.getSessionConfig().setBufferAllocator(new BufferAllocator() {
+            @Override
+            public ByteBuffer allocate(int capacity) {
+                allocated.incrementAndGet();
+                return ByteBuffer.allocateDirect(capacity);
+            }
+
+            @Override
+            public void release(ByteBuffer buffer) {
+                released.incrementAndGet();
+            }
+
+            @Override
+            public boolean isDirect() {
+                return true;
+            }
+        });
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                // the heap messages are copied in allocated buffers, and wait in the queue
+                session.suspendWrite();
+
+                for (int i = 0; i < 3; i++) {
+                    futures.add(session.writeWithFuture(ByteBuffer.allocate(10)));
+                }
+
+                session.close(true);
+            }
+
+            @Override
+            public void sessionClosed(IoSession session) {
+                closedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+        Socket client = new Socket("127.0.0.1", port);
+
+        assertTrue(closedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        Thread.sleep(100);
+
+        assertEquals(3, allocated.get());
+        assertEquals(3, released.get());
+
+        for (IoFuture<Void> future : futures) {
+            assertTrue(future.isDone());
+
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                // expected : the message has not been written
+            }
+        }
+
+        client.close();
+        server.unbind();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.junit.Test;
+
+/**
+ * Check that a {@link NioTcpSession} becomes not writable when its write queue grows above the high watermark, and
+ * writable again when the queue is drained below the low watermark.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioTcpSessionWritabilityTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    private static final int MESSAGE_COUNT = 200;
+
+    private static final int MESSAGE_SIZE = 1024;
+
+    @Test
+    public void writability_follows_the_watermarks() throws IOException, InterruptedException {
+        final List<Boolean> events = new CopyOnWriteArrayList<Boolean>();
+        final List<Boolean> writableAfterWrites = new CopyOnWriteArrayList<Boolean>();
+        final CountDownLatch writableLatch = new CountDownLatch(1);
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.getSessionConfig().setWriteQueueWaterMarks(4 * 1024, 16 * 1024);
+        server.getSessionConfig().setSendBufferSize(4 * 1024);
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                // the client is not reading yet : most of these messages are queued
+                for (int i = 0; i < MESSAGE_COUNT; i++) {
+                    session.write(ByteBuffer.allocate(MESSAGE_SIZE));
+                }
+
+                writableAfterWrites.add(session.isWritable());
+            }
+
+            @Override
+            public void writabilityChanged(IoSession session, boolean writable) {
+                events.add(writable);
+
+                if (writable) {
+                    writableLatch.countDown();
+                }
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+        client.setReceiveBufferSize(1024);
+
+        // let the server fill its socket buffer
+        Thread.sleep(200);
+        assertEquals(1, writableAfterWrites.size());
+        assertFalse(writableAfterWrites.get(0));
+
+        // now read everything
+        byte[] data = new byte[MESSAGE_SIZE * MESSAGE_COUNT];
+        new DataInputStream(client.getInputStream()).readFully(data);
+
+        assertTrue(writableLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertEquals(2, events.size());
+        assertFalse(events.get(0));
+        assertTrue(events.get(1));
+
+        client.close();
+        server.unbind();
+    }
+}
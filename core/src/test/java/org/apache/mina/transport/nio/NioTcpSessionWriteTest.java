@@ -0,0 +1,264 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.junit.Test;
+
+/**
+ * Check that the messages queued in a {@link NioTcpSession} are written in order, and that each of them generates a
+ * message sent event, when they are written several at once.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioTcpSessionWriteTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    private static final int MESSAGE_COUNT = 5000;
+
+    private static final int MESSAGE_SIZE = 100;
+
+    @Test
+    public void queued_small_messages_are_all_written_in_order() throws IOException, InterruptedException {
+        final CountDownLatch sentLatch = new CountDownLatch(MESSAGE_COUNT);
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                // the client is not reading yet : most of these messages are queued
+                for (int i = 0; i < MESSAGE_COUNT; i++) {
+                    ByteBuffer data = ByteBuffer.allocate(MESSAGE_SIZE);
+                    data.putInt(i);
+                    data.position(MESSAGE_SIZE);
+                    data.flip();
+                    session.write(data);
+                }
+            }
+
+            @Override
+            public void messageSent(IoSession session, Object message) {
+                sentLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+        client.setReceiveBufferSize(1024);
+
+        // let the server fill its socket buffer
+        Thread.sleep(200);
+
+        DataInputStream in = new DataInputStream(client.getInputStream());
+        byte[] data = new byte[MESSAGE_SIZE];
+
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            in.readFully(data);
+            assertEquals(i, ByteBuffer.wrap(data).getInt());
+        }
+
+        assertTrue(sentLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void messages_written_without_flush_are_sent_after_the_read() throws IOException, InterruptedException {
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                for (int i = 0; i < 20; i++) {
+                    ByteBuffer data = ByteBuffer.allocate(4);
+                    data.putInt(i);
+                    data.flip();
+                    session.writeWithoutFlush(data);
+                }
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+        client.getOutputStream().write('a');
+        client.getOutputStream().flush();
+
+        DataInputStream in = new DataInputStream(client.getInputStream());
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, in.readInt());
+        }
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void messages_written_without_flush_wait_for_flush() throws IOException, InterruptedException {
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.getSessionConfig().setFlushAfterRead(false);
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                ByteBuffer buffer = (ByteBuffer) message;
+
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    ByteBuffer data = ByteBuffer.allocate(1);
+                    data.put(b);
+                    data.flip();
+                    session.writeWithoutFlush(data);
+
+                    if (b == 'F') {
+                        session.flush();
+                    }
+                }
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+        client.getOutputStream().write("abc".getBytes());
+        client.getOutputStream().flush();
+
+        // nothing is sent until the flush
+        Thread.sleep(200);
+        assertEquals(0, client.getInputStream().available());
+
+        client.getOutputStream().write('F');
+        client.getOutputStream().flush();
+
+        byte[] data = new byte[4];
+        new DataInputStream(client.getInputStream()).readFully(data);
+        assertEquals("abcF", new String(data));
+
+        client.close();
+        server.unbind();
+    }
+
+    @Test
+    public void messages_written_by_foreign_threads_are_written_by_the_selector_loop() throws IOException,
+            InterruptedException {
+        final int threadCount = 4;
+        final int messagesPerThread = 1000;
+        final AtomicReference<IoSession> serverSession = new AtomicReference<IoSession>();
+        final CountDownLatch openedLatch = new CountDownLatch(1);
+        final CountDownLatch sentLatch = new CountDownLatch(threadCount * messagesPerThread);
+        final AtomicInteger foreignSentEvents = new AtomicInteger();
+        final Set<Thread> writers = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                serverSession.set(session);
+                openedLatch.countDown();
+            }
+
+            @Override
+            public void messageSent(IoSession session, Object message) {
+                // the messages are written, and the events generated, by the selector loop
+                if (writers.contains(Thread.currentThread())) {
+                    foreignSentEvents.incrementAndGet();
+                }
+
+                sentLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        client.setSoTimeout(WAIT_TIME);
+        assertTrue(openedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            final int id = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messagesPerThread; i++) {
+                        ByteBuffer data = ByteBuffer.allocate(8);
+                        data.putInt(id);
+                        data.putInt(i);
+                        data.flip();
+                        serverSession.get().write(data);
+                    }
+                }
+            };
+            writers.add(threads[t]);
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        // each thread messages are received in order
+        DataInputStream in = new DataInputStream(client.getInputStream());
+        int[] expected = new int[threadCount];
+
+        for (int i = 0; i < threadCount * messagesPerThread; i++) {
+            int id = in.readInt();
+            assertEquals(expected[id]++, in.readInt());
+        }
+
+        assertTrue(sentLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertEquals(0, foreignSentEvents.get());
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        client.close();
+        server.unbind();
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.file.DefaultFileRegion;
+import org.apache.mina.file.FileRegion;
+import org.junit.Test;
+
+/**
+ * Check that the messages queued in a {@link NioUdpSession} are written one datagram at a time, by the selector loop
+ * or by the thread resuming the writes of a server session, and that a {@link FileRegion} is read in datagrams.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class NioUdpSessionWriteTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    private static final int MESSAGE_COUNT = 3;
+
+    @Test
+    public void queued_datagrams_are_written_in_order() throws IOException, InterruptedException, ExecutionException {
+        final CountDownLatch sentLatch = new CountDownLatch(MESSAGE_COUNT);
+        DatagramSocket serverSocket = new DatagramSocket();
+        serverSocket.setSoTimeout(WAIT_TIME);
+
+        NioUdpClient client = new NioUdpClient();
+        client.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageSent(IoSession session, Object message) {
+                sentLatch.countDown();
+            }
+        });
+
+        IoSession session = client.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort())).get();
+
+        // the messages written while the writes are suspended are queued
+        session.suspendWrite();
+
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            ByteBuffer data = ByteBuffer.allocate(4);
+            data.putInt(i);
+            data.flip();
+            session.write(data);
+        }
+
+        Thread.sleep(100);
+        session.resumeWrite();
+
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            DatagramPacket packet = new DatagramPacket(new byte[4], 4);
+            serverSocket.receive(packet);
+            assertEquals(i, ByteBuffer.wrap(packet.getData()).getInt());
+        }
+
+        assertTrue(sentLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        session.close(true);
+        serverSocket.close();
+    }
+
+    @Test
+    public void queued_datagrams_of_server_sessions_are_written_on_resume() throws IOException, InterruptedException {
+        final List<IoSession> sessions = new CopyOnWriteArrayList<IoSession>();
+        final CountDownLatch receivedLatch = new CountDownLatch(2);
+
+        NioUdpServer server = new NioUdpServer();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                // the messages written while the writes are suspended are queued
+                session.suspendWrite();
+
+                for (int i = 0; i < MESSAGE_COUNT; i++) {
+                    ByteBuffer data = ByteBuffer.allocate(4);
+                    data.putInt(i);
+                    data.flip();
+                    session.write(data);
+                }
+
+                sessions.add(session);
+                receivedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        InetSocketAddress serverAddress = new InetSocketAddress("127.0.0.1", server.getDatagramChannel().socket()
+                .getLocalPort());
+
+        // the server sessions share the server channel
+        DatagramSocket[] peers = new DatagramSocket[2];
+
+        for (int i = 0; i < peers.length; i++) {
+            peers[i] = new DatagramSocket();
+            peers[i].setSoTimeout(WAIT_TIME);
+            peers[i].send(new DatagramPacket(new byte[1], 1, serverAddress));
+        }
+
+        assertTrue(receivedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        Thread.sleep(100);
+
+        // no loop of their own : the writes are resumed by the calling thread
+        for (IoSession session : sessions) {
+            session.resumeWrite();
+        }
+
+        for (DatagramSocket peer : peers) {
+            for (int i = 0; i < MESSAGE_COUNT; i++) {
+                DatagramPacket packet = new DatagramPacket(new byte[4], 4);
+                peer.receive(packet);
+                assertEquals(i, ByteBuffer.wrap(packet.getData()).getInt());
+            }
+
+            peer.close();
+        }
+
+        server.unbind();
+    }
+
+    @Test
+    public void file_region_is_written_as_datagrams() throws IOException, InterruptedException, ExecutionException {
+        final byte[] content = new byte[40000];
+        new Random(42).nextBytes(content);
+
+        final File file = File.createTempFile("mina", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content);
+        out.close();
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        final FileRegion region = new DefaultFileRegion(raf.getChannel(), 0, content.length);
+        final AtomicReference<Object> sent = new AtomicReference<Object>();
+        final CountDownLatch sentLatch = new CountDownLatch(1);
+        DatagramSocket serverSocket = new DatagramSocket();
+        serverSocket.setSoTimeout(WAIT_TIME);
+
+        NioUdpClient client = new NioUdpClient();
+        client.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageSent(IoSession session, Object message) {
+                if (message instanceof FileRegion) {
+                    sent.set(message);
+                    sentLatch.countDown();
+                }
+            }
+        });
+
+        IoSession session = client.connect(new InetSocketAddress("localhost", serverSocket.getLocalPort())).get();
+        session.write(region);
+
+        byte[] received = new byte[content.length];
+        int position = 0;
+
+        while (position < received.length) {
+            DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+            serverSocket.receive(packet);
+            System.arraycopy(packet.getData(), 0, received, position, packet.getLength());
+            position += packet.getLength();
+        }
+
+        assertArrayEquals(content, received);
+        assertTrue(sentLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertSame(region, sent.get());
+
+        session.close(true);
+        serverSocket.close();
+        raf.close();
+    }
+}
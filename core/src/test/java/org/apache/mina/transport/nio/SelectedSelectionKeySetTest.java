@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.nio.channels.SelectionKey;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SelectedSelectionKeySet}
+ *
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class SelectedSelectionKeySetTest {
+
+    @Test
+    public void add_and_get() {
+        SelectedSelectionKeySet set = new SelectedSelectionKeySet();
+        SelectionKey key1 = mock(SelectionKey.class);
+        SelectionKey key2 = mock(SelectionKey.class);
+
+        assertTrue(set.add(key1));
+        assertTrue(set.add(key2));
+        assertFalse(set.add(null));
+
+        assertEquals(2, set.size());
+        assertSame(key1, set.get(0));
+        assertSame(key2, set.get(1));
+
+        Iterator<SelectionKey> it = set.iterator();
+        assertSame(key1, it.next());
+        assertSame(key2, it.next());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void grow_and_reset() {
+        SelectedSelectionKeySet set = new SelectedSelectionKeySet();
+        SelectionKey key = mock(SelectionKey.class);
+
+        for (int i = 0; i < 5000; i++) {
+            set.add(key);
+        }
+
+        assertEquals(5000, set.size());
+        assertSame(key, set.get(4999));
+
+        set.reset();
+        assertEquals(0, set.size());
+        assertTrue(set.isEmpty());
+        assertFalse(set.iterator().hasNext());
+    }
+}
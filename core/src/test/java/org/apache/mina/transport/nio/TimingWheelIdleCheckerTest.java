@@ -0,0 +1,210 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IdleStatus;
+import org.apache.mina.api.IoSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the {@link TimingWheelIdleChecker} fires the idle events from the timer wheels of the selector loops.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class TimingWheelIdleCheckerTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    private static final long TICK = 10;
+
+    private static final long IDLE_TIME = 300;
+
+    private final AtomicReference<AbstractNioSession> serverSession = new AtomicReference<AbstractNioSession>();
+
+    private final AtomicLong openedAt = new AtomicLong();
+
+    private final AtomicLong idleAt = new AtomicLong();
+
+    private final AtomicInteger idleEvents = new AtomicInteger();
+
+    private final CountDownLatch openedLatch = new CountDownLatch(1);
+
+    private final CountDownLatch idleLatch = new CountDownLatch(1);
+
+    private final CountDownLatch closedLatch = new CountDownLatch(1);
+
+    private NioTcpServer server;
+
+    private Socket client;
+
+    @Before
+    public void setup() {
+        server = new NioTcpServer(new FixedSelectorLoopPool("Server", 1, SelectStrategy.BLOCKING, TICK), null);
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void sessionOpened(IoSession session) {
+                openedAt.set(System.currentTimeMillis());
+                serverSession.set((AbstractNioSession) session);
+                openedLatch.countDown();
+            }
+
+            @Override
+            public void sessionIdle(IoSession session, IdleStatus status) {
+                idleAt.compareAndSet(0, System.currentTimeMillis());
+                idleEvents.incrementAndGet();
+                idleLatch.countDown();
+            }
+
+            @Override
+            public void sessionClosed(IoSession session) {
+                closedLatch.countDown();
+            }
+        });
+    }
+
+    @After
+    public void teardown() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+
+        server.unbind();
+    }
+
+    private void connect() throws IOException, InterruptedException {
+        server.bind(0);
+        client = new Socket("127.0.0.1", server.getServerSocketChannel().socket().getLocalPort());
+        assertTrue(openedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void idle_event_is_fired_after_the_idle_time() throws IOException, InterruptedException {
+        server.getSessionConfig().setIdleTimeInMillis(IdleStatus.READ_IDLE, IDLE_TIME);
+        connect();
+
+        assertTrue(idleLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertTrue(idleAt.get() - openedAt.get() >= IDLE_TIME - TICK);
+        assertEquals(1, idleEvents.get());
+    }
+
+    @Test
+    public void timer_is_rescheduled_after_an_io_event() throws IOException, InterruptedException {
+        server.getSessionConfig().setIdleTimeInMillis(IdleStatus.READ_IDLE, IDLE_TIME);
+        connect();
+
+        // keep the session busy for more than the idle time
+        OutputStream out = client.getOutputStream();
+        long lastWrite = 0;
+
+        for (int i = 0; i < 8; i++) {
+            out.write(i);
+            out.flush();
+            lastWrite = System.currentTimeMillis();
+            Thread.sleep(IDLE_TIME / 3);
+        }
+
+        assertEquals(0, idleEvents.get());
+
+        assertTrue(idleLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertTrue(idleAt.get() - lastWrite >= IDLE_TIME - TICK);
+    }
+
+    @Test
+    public void closed_session_timers_are_cancelled() throws IOException, InterruptedException {
+        server.getSessionConfig().setIdleTimeInMillis(IdleStatus.READ_IDLE, IDLE_TIME);
+        connect();
+
+        AbstractNioSession session = serverSession.get();
+        assertTrue(timerScheduled(session, IdleStatus.READ_IDLE));
+
+        session.close(true);
+        assertTrue(closedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        assertFalse(timerScheduled(session, IdleStatus.READ_IDLE));
+        Thread.sleep(IDLE_TIME * 2);
+        assertEquals(0, idleEvents.get());
+    }
+
+    @Test
+    public void calls_from_outside_the_loop_are_run_in_the_loop() throws IOException, InterruptedException {
+        // no idle detection when the session is created : no timer
+        connect();
+
+        AbstractNioSession session = serverSession.get();
+        assertFalse(timerScheduled(session, IdleStatus.WRITE_IDLE));
+
+        session.getConfig().setIdleTimeInMillis(IdleStatus.WRITE_IDLE, IDLE_TIME);
+        TimingWheelIdleChecker checker = new TimingWheelIdleChecker();
+        checker.sessionWritten(session, session.getService().getClock().currentTimeMillis());
+
+        assertTrue(timerScheduled(session, IdleStatus.WRITE_IDLE));
+
+        checker.sessionClosed(session);
+
+        assertFalse(timerScheduled(session, IdleStatus.WRITE_IDLE));
+        Thread.sleep(IDLE_TIME * 2);
+        assertEquals(0, idleEvents.get());
+    }
+
+    /**
+     * Tells if a timer of a session is scheduled, looking at it in the session loop
+     */
+    private static boolean timerScheduled(final AbstractNioSession session, final IdleStatus status)
+            throws InterruptedException {
+        final SelectorLoop loop = session.getSelectorLoop();
+        assertNotNull(loop);
+
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        loop.runInLoop(new Runnable() {
+            @Override
+            public void run() {
+                TimingWheelIdleChecker.IdleTimer timer = status == IdleStatus.READ_IDLE ? session.readIdleTimer
+                        : session.writeIdleTimer;
+                scheduled.set((timer != null) && timer.isScheduled());
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        return scheduled.get();
+    }
+}
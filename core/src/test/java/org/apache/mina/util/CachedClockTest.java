@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.mina.api.AbstractIoHandler;
+import org.apache.mina.api.IoSession;
+import org.apache.mina.transport.nio.NioTcpServer;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CachedClock}, and for the use of the service {@link Clock} by the sessions.
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class CachedClockTest {
+
+    private static final int WAIT_TIME = 5000;
+
+    @Test
+    public void cached_time_follows_the_system_time() throws InterruptedException {
+        CachedClock clock = new CachedClock("TestClock", 5);
+
+        try {
+            long start = clock.currentTimeMillis();
+            assertTrue(Math.abs(System.currentTimeMillis() - start) < 1000);
+
+            Thread.sleep(100);
+            assertTrue(clock.currentTimeMillis() > start);
+        } finally {
+            clock.stop();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void precision_must_be_positive() {
+        new CachedClock("TestClock", 0);
+    }
+
+    @Test
+    public void sessions_use_the_service_clock() throws IOException, InterruptedException {
+        final AtomicLong now = new AtomicLong(1000000L);
+        final AtomicLong lastReadTime = new AtomicLong();
+        final AtomicLong creationTime = new AtomicLong();
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+
+        final NioTcpServer server = new NioTcpServer();
+        server.setClock(new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now.get();
+            }
+        });
+        server.setFilters();
+        server.setIoHandler(new AbstractIoHandler() {
+            @Override
+            public void messageReceived(IoSession session, Object message) {
+                creationTime.set(session.getCreationTime());
+                lastReadTime.set(session.getLastReadTime());
+                receivedLatch.countDown();
+            }
+        });
+        server.bind(0);
+
+        final int port = server.getServerSocketChannel().socket().getLocalPort();
+
+        Socket client = new Socket("127.0.0.1", port);
+        Thread.sleep(100);
+        now.set(2000000L);
+
+        client.getOutputStream().write(1);
+        client.getOutputStream().flush();
+
+        assertTrue(receivedLatch.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        assertEquals(1000000L, creationTime.get());
+        assertEquals(2000000L, lastReadTime.get());
+
+        client.close();
+        server.unbind();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.mina.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link TimerWheel}
+ * 
+ * @author <a href="http://mina.apache.org">Apache MINA Project</a>
+ */
+public class TimerWheelTest {
+
+    @Test
+    public void timer_expires_after_its_delay() {
+        TimerWheel wheel = new TimerWheel(10, 8, 0);
+        CountingTimer timer = new CountingTimer();
+
+        wheel.schedule(timer, 25);
+        assertTrue(timer.isScheduled());
+        assertEquals(1, wheel.size());
+        assertEquals(10, wheel.getNextTickDelay(0));
+
+        assertEquals(0, wheel.advance(20));
+        assertEquals(0, timer.count);
+
+        assertEquals(1, wheel.advance(30));
+        assertEquals(1, timer.count);
+        assertFalse(timer.isScheduled());
+        assertTrue(wheel.isEmpty());
+        assertEquals(-1, wheel.getNextTickDelay(30));
+    }
+
+    @Test
+    public void long_timeouts_wait_for_several_rounds() {
+        TimerWheel wheel = new TimerWheel(10, 8, 0);
+        CountingTimer timer = new CountingTimer();
+
+        // 100 ticks, on a 8 buckets wheel
+        wheel.schedule(timer, 1000);
+
+        for (long now = 10; now < 1000; now += 10) {
+            wheel.advance(now);
+            assertEquals(0, timer.count);
+        }
+
+        wheel.advance(1000);
+        assertEquals(1, timer.count);
+    }
+
+    @Test
+    public void delays_are_relative_to_the_last_advance() {
+        TimerWheel wheel = new TimerWheel(10, 8, 0);
+        CountingTimer timer = new CountingTimer();
+
+        // a long time without any timer
+        wheel.advance(100005);
+        wheel.schedule(timer, 10);
+
+        wheel.advance(100010);
+        assertEquals(0, timer.count);
+
+        wheel.advance(100020);
+        assertEquals(1, timer.count);
+    }
+
+    @Test
+    public void reschedule_and_cancel() {
+        TimerWheel wheel = new TimerWheel(10, 8, 0);
+        CountingTimer timer = new CountingTimer();
+        CountingTimer other = new CountingTimer();
+
+        wheel.schedule(timer, 10);
+        wheel.schedule(other, 10);
+        wheel.schedule(timer, 50);
+        assertEquals(2, wheel.size());
+
+        wheel.advance(10);
+        assertEquals(0, timer.count);
+        assertEquals(1, other.count);
+
+        assertTrue(wheel.cancel(timer));
+        assertFalse(wheel.cancel(timer));
+        assertTrue(wheel.isEmpty());
+
+        wheel.advance(100);
+        assertEquals(0, timer.count);
+    }
+
+    @Test
+    public void expired_timer_can_cancel_another_expired_timer() {
+        final TimerWheel wheel = new TimerWheel(10, 8, 0);
+        final CountingTimer first = new CountingTimer();
+        final CountingTimer second = new CountingTimer();
+
+        TimerWheel.Timer canceller = new TimerWheel.Timer() {
+            @Override
+            protected void expired() {
+                wheel.cancel(first);
+                wheel.cancel(second);
+            }
+        };
+
+        // the timers of a tick expire in the scheduling order
+        wheel.schedule(canceller, 10);
+        wheel.schedule(first, 10);
+        wheel.schedule(second, 10);
+
+        assertEquals(1, wheel.advance(10));
+        assertEquals(0, first.count + second.count);
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void expired_timer_can_schedule_itself_again() {
+        final TimerWheel wheel = new TimerWheel(10, 8, 0);
+        final CountingTimer timer = new CountingTimer() {
+            @Override
+            protected void expired() {
+                super.expired();
+                wheel.schedule(this, 10);
+            }
+        };
+
+        wheel.schedule(timer, 10);
+        wheel.advance(10);
+        wheel.advance(20);
+        wheel.advance(30);
+
+        assertEquals(3, timer.count);
+        assertTrue(timer.isScheduled());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_delay() {
+        new TimerWheel(10, 8, 0).schedule(new CountingTimer(), -1);
+    }
+
+    private static class CountingTimer extends TimerWheel.Timer {
+        int count;
+
+        @Override
+        protected void expired() {
+            count++;
+        }
+    }
+}